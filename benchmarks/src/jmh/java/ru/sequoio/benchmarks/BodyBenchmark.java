@@ -0,0 +1,63 @@
+package ru.sequoio.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.sequoio.library.services.parsing.SqlLexer;
+import ru.sequoio.library.services.parsing.StatementBoundaries;
+import ru.sequoio.library.utils.HashingUtils;
+
+/**
+ * Per-body costs: hashing and splitting into statements
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BodyBenchmark {
+
+    @Param({"1024", "65536"})
+    public int bodySize;
+
+    private String body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var random = new Random(42);
+        var sql = new StringBuilder("CREATE TABLE t (id BIGINT PRIMARY KEY, payload TEXT);\n");
+        for (int row = 0; sql.length() < bodySize; row++) {
+            sql.append("INSERT INTO t VALUES (").append(row).append(", 'value; ").append(random.nextInt()).append("');\n");
+        }
+        body = sql.toString();
+    }
+
+    @Benchmark
+    public String md5() {
+        return HashingUtils.md5(body);
+    }
+
+    @Benchmark
+    public StatementBoundaries split() {
+        return SqlLexer.split(body);
+    }
+
+    @Benchmark
+    public List<String> statements() {
+        return SqlLexer.split(body).statements(body);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.sequoio.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Writes synthetic changelog into a temporary directory <br/>
+ * Changelog is a 'sequoio config' directory with 'configuration.seq' and migration files listed in it.
+ * 'runAfter' refers to a random preceding migration and 'runBefore' to a random following one,
+ * so the graph never has cycles. Random is seeded, so the same parameters give the same changelog
+ */
+public class ChangelogGenerator {
+
+    public static final String RESOURCES_DIRECTORY = "benchmark_changelog";
+
+    private static final long SEED = 42;
+
+    private final int files;
+    private final int migrationsPerFile;
+    private final int bodySize;
+    private final double dependencyDensity;
+
+    /**
+     * @param bodySize approximate size of migration body in bytes
+     * @param dependencyDensity share of migrations with 'runAfter' and, separately, with 'runBefore' parameter
+     */
+    public ChangelogGenerator(int files, int migrationsPerFile, int bodySize, double dependencyDensity) {
+        this.files = files;
+        this.migrationsPerFile = migrationsPerFile;
+        this.bodySize = bodySize;
+        this.dependencyDensity = dependencyDensity;
+    }
+
+    /**
+     * @return root directory, which must be added to classpath for changelog to be found
+     */
+    public Path generate() {
+        try {
+            var root = Files.createTempDirectory("sequoio-benchmark");
+            var changelog = Files.createDirectories(root.resolve(RESOURCES_DIRECTORY));
+            var random = new Random(SEED);
+            int total = files * migrationsPerFile;
+            List<String> configuration = new ArrayList<>();
+            configuration.add("--sequoio-configuration-file");
+            for (int file = 0; file < files; file++) {
+                var fileName = String.format("migrations_%05d.sql", file);
+                var content = new StringBuilder("--sequoio-migration-file\n\n");
+                for (int i = 0; i < migrationsPerFile; i++) {
+                    int order = file * migrationsPerFile + i;
+                    appendMigration(content, order, total, random);
+                }
+                Files.writeString(changelog.resolve(fileName), content);
+                configuration.add(fileName);
+            }
+            Files.write(changelog.resolve("configuration.seq"), configuration);
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void appendMigration(StringBuilder content, int order, int total, Random random) {
+        content.append("--migration benchmark:").append(name(order));
+        if (order > 0 && random.nextDouble() < dependencyDensity) {
+            content.append(" runAfter:").append(name(random.nextInt(order)));
+        }
+        if (order < total - 1 && random.nextDouble() < dependencyDensity) {
+            content.append(" runBefore:").append(name(order + 1 + random.nextInt(total - order - 1)));
+        }
+        content.append('\n');
+
+        var table = "table_" + order;
+        content.append("CREATE TABLE ").append(table).append(" (id BIGINT PRIMARY KEY, payload TEXT);\n");
+        int start = content.length();
+        for (int row = 0; content.length() - start < bodySize; row++) {
+            content.append("INSERT INTO ").append(table)
+                    .append(" VALUES (").append(row).append(", 'value; ").append(random.nextInt()).append("');\n");
+        }
+        content.append('\n');
+    }
+
+    public static String name(int order) {
+        return "migration_" + order;
+    }
+
+    public static void delete(Path root) {
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
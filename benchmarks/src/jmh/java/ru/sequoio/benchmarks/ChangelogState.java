@@ -0,0 +1,62 @@
+package ru.sequoio.benchmarks;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.services.parsing.ChangelogParsingService;
+import ru.sequoio.library.services.parsing.MigrationParsingService;
+
+/**
+ * Synthetic changelog, generated once per trial <br/>
+ * Classpath is replaced by the changelog root, so that parsing does not walk benchmark's own class directories
+ */
+@State(Scope.Benchmark)
+public class ChangelogState {
+
+    private static final String CLASS_PATH_PROPERTY = "java.class.path";
+
+    @Param({"10", "1000"})
+    public int files;
+
+    @Param({"10"})
+    public int migrationsPerFile;
+
+    @Param({"1024"})
+    public int bodySize;
+
+    @Param({"0.1"})
+    public double dependencyDensity;
+
+    public Path root;
+    public Path firstFile;
+    public List<Migration> migrations;
+
+    private String classPath;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        root = new ChangelogGenerator(files, migrationsPerFile, bodySize, dependencyDensity).generate();
+        firstFile = root.resolve(ChangelogGenerator.RESOURCES_DIRECTORY).resolve("migrations_00000.sql");
+        classPath = System.getProperty(CLASS_PATH_PROPERTY);
+        System.setProperty(CLASS_PATH_PROPERTY, root.toString());
+        migrations = new ArrayList<>(newChangelogParser().parseChangelog().getNodes());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setProperty(CLASS_PATH_PROPERTY, classPath);
+        ChangelogGenerator.delete(root);
+    }
+
+    public ChangelogParsingService newChangelogParser() {
+        return new ChangelogParsingService(new MigrationParsingService(), ChangelogGenerator.RESOURCES_DIRECTORY);
+    }
+}
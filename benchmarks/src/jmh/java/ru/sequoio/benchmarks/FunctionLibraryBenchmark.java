@@ -0,0 +1,74 @@
+package ru.sequoio.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.sequoio.library.services.parsing.SqlLexer;
+import ru.sequoio.library.services.parsing.StatementBoundaries;
+
+/**
+ * Lexing of a multi-megabyte function library: dollar-quoted PL/pgSQL bodies, string literals,
+ * quoted identifiers and nested comments, all with semicolons inside <br/>
+ * Former split on ';' is kept for reference only, it breaks every function body
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunctionLibraryBenchmark {
+
+    @Param({"1048576", "8388608"})
+    public int librarySize;
+
+    private String library;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var sql = new StringBuilder("-- function library; generated for benchmark\n");
+        for (int function = 0; sql.length() < librarySize; function++) {
+            sql.append("CREATE OR REPLACE FUNCTION \"lib;fn_").append(function).append("\"(a INT) RETURNS INT AS $fn$\n")
+                    .append("DECLARE\n")
+                    .append("    note TEXT := 'value; with ''quotes''; and $$ inside';\n")
+                    .append("BEGIN\n")
+                    .append("    /* outer; /* nested; */ still comment; */\n")
+                    .append("    IF a > ").append(function).append(" THEN\n")
+                    .append("        RAISE NOTICE 'a = %; note = %', a, note;\n")
+                    .append("    END IF;\n")
+                    .append("    RETURN a + ").append(function).append(";\n")
+                    .append("END;\n")
+                    .append("$fn$ LANGUAGE plpgsql;\n\n")
+                    .append("COMMENT ON FUNCTION \"lib;fn_").append(function).append("\"(INT) IS 'adds; ")
+                    .append(function).append("';\n\n");
+        }
+        library = sql.toString();
+    }
+
+    @Benchmark
+    public StatementBoundaries split() {
+        return SqlLexer.split(library);
+    }
+
+    @Benchmark
+    public List<String> statements() {
+        return SqlLexer.split(library).statements(library);
+    }
+
+    @Benchmark
+    public String[] formerSplit() {
+        return library.split(";");
+    }
+}
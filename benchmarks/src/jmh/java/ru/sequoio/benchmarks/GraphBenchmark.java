@@ -0,0 +1,46 @@
+package ru.sequoio.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.sequoio.library.domain.graph.Graph;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.RunStatus;
+import ru.sequoio.library.services.db.application.sieve.SieveChain;
+
+/**
+ * Ordering and sifting of already parsed migrations
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Benchmark
+    public Graph<Migration> buildGraph(ChangelogState changelog) {
+        return new Graph<>(changelog.migrations);
+    }
+
+    /**
+     * Every other migration is new, the rest are applied
+     */
+    @Benchmark
+    public void sift(ChangelogState changelog, Blackhole blackhole) {
+        var sieve = new SieveChain(null);
+        var migrations = changelog.migrations;
+        for (int i = 0; i < migrations.size(); i++) {
+            var migration = migrations.get(i);
+            migration.setRunStatus(i % 2 == 0 ? RunStatus.NEW : RunStatus.APPLIED);
+            blackhole.consume(sieve.sift(migration));
+        }
+    }
+}
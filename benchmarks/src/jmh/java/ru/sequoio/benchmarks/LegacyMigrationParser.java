@@ -0,0 +1,104 @@
+package ru.sequoio.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Scanner;
+import java.util.regex.MatchResult;
+import java.util.stream.Collectors;
+
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
+
+/**
+ * Former migration file parser, kept as the baseline of parsing throughput <br/>
+ * File is scanned twice with the header regular expression, header is split with 'String.split' several times
+ * and parameters are looked up by a stream over all of them. Logging is left out
+ */
+class LegacyMigrationParser {
+
+    private static final String USER_DEFINED_PARAM_NAME_PREFIX = "#";
+    private static final String HEADER_START_TEMPLATE = "--migration %s:%s";
+    private static final String PARAMS_SPLIT_REGEXP = " ";
+    private static final String MIGRATION_FILE_HEADER = "--sequoio-migration-file";
+    private static final String MIGRATION_HEADER_REGEXP = "(--migration )([a-zA-Z0-9_\\- :#]+)";
+    private static final String MIGRATION_HEADER_REGEXP_CR = MIGRATION_HEADER_REGEXP + "(\n)";
+    private static final String PARAMS_KEY_VALUE_SEPARATOR = ":";
+
+    List<Migration> parseMigrations(Path path, int firstOrder) {
+        List<String> headers;
+        try (var s = new Scanner(Files.newInputStream(path))) {
+            headers = s.findAll(MIGRATION_HEADER_REGEXP_CR)
+                    .map(MatchResult::group)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (headers.isEmpty()) {
+            return List.of();
+        }
+
+        List<Migration> migrations = new ArrayList<>();
+        try (var s = new Scanner(Files.newInputStream(path))) {
+            s.useDelimiter(MIGRATION_HEADER_REGEXP_CR);
+            validateMigrationFileHeader(s.next());
+            int idx = 0;
+            while (s.hasNext()) {
+                String header = headers.get(idx++).strip();
+                String body = s.next().strip();
+                var migrationBuilder = Migration.builder();
+                parseMigrationHeader(header, migrationBuilder);
+                migrations.add(migrationBuilder.build(path, firstOrder++, body));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return migrations;
+    }
+
+    private void parseMigrationHeader(String header, Migration.MigrationBuilder migrationBuilder) {
+        String author = header.split(PARAMS_KEY_VALUE_SEPARATOR)[0].split(PARAMS_SPLIT_REGEXP)[1];
+        String title = header.split(PARAMS_KEY_VALUE_SEPARATOR)[1].split(PARAMS_SPLIT_REGEXP)[0];
+        String startOfHeader = String.format(HEADER_START_TEMPLATE, author, title);
+        String paramsOnlyHeader = header.substring(startOfHeader.length()).strip();
+
+        var params = MigrationParameter.getDefaultValuesParametersMap();
+        Map<String, String> userDefinedParams = new HashMap<>();
+
+        Arrays.stream(paramsOnlyHeader.split(PARAMS_SPLIT_REGEXP))
+                .filter(p -> p.contains(PARAMS_KEY_VALUE_SEPARATOR))
+                .forEach(p -> {
+                    String[] ps = p.split(PARAMS_KEY_VALUE_SEPARATOR);
+                    String paramName = ps[0];
+                    String paramValue = ps[1];
+                    Optional<MigrationParameter> maybeMigrationParameter = Arrays.stream(MigrationParameter.values())
+                            .filter(mp -> mp.getName().equals(paramName))
+                            .findFirst();
+                    if (maybeMigrationParameter.isPresent()) {
+                        var migrationParameter = maybeMigrationParameter.get();
+                        params.remove(migrationParameter);
+                        params.put(migrationParameter, migrationParameter.parseValue(paramValue));
+                    } else if (paramName.startsWith(USER_DEFINED_PARAM_NAME_PREFIX)) {
+                        userDefinedParams.put(paramName, paramValue);
+                    } else {
+                        throw new IllegalArgumentException("Unknown parameter: " + paramName);
+                    }
+                });
+
+        migrationBuilder.header(title, author, params, userDefinedParams);
+    }
+
+    private void validateMigrationFileHeader(String header) {
+        header = header == null ? null : header.strip();
+        if (!MIGRATION_FILE_HEADER.equals(header)) {
+            throw new IllegalStateException("Migration file must have header " + MIGRATION_FILE_HEADER);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.sequoio.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.sequoio.library.domain.graph.Graph;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.services.parsing.MigrationParsingService;
+
+/**
+ * Startup cost of reading a changelog: whole changelog and a single migration file,
+ * the latter also with the former parser as the baseline
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Benchmark
+    public Graph<Migration> parseChangelog(ChangelogState changelog) {
+        return changelog.newChangelogParser().parseChangelog();
+    }
+
+    @Benchmark
+    public List<Migration> parseMigrations(ChangelogState changelog) {
+        return new MigrationParsingService().parseMigrations(changelog.firstFile, new AtomicInteger())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Migration> parseMigrationsLegacy(ChangelogState changelog) {
+        return new LegacyMigrationParser().parseMigrations(changelog.firstFile, 0);
+    }
+}
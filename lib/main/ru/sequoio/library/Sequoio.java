@@ -1,18 +1,31 @@
 package ru.sequoio.library;
 
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.sql.DataSource;
 
+import ru.sequoio.library.domain.migration.MigrationPlan;
+import ru.sequoio.library.services.db.application.ApplicationSettings;
 import ru.sequoio.library.services.db.application.MigrationApplicationService;
 import ru.sequoio.library.services.db.application.MigrationApplicationServiceImpl;
+import ru.sequoio.library.services.db.application.MigrationPlanner;
 import ru.sequoio.library.services.db.query.SupportedDatabases;
+import ru.sequoio.library.services.monitoring.MigrationListener;
+import ru.sequoio.library.services.monitoring.MigrationListeners;
 import ru.sequoio.library.services.parsing.ChangelogParsingService;
 import ru.sequoio.library.services.db.application.MigrationApplicationServiceDryRun;
 import ru.sequoio.library.services.parsing.MigrationParsingService;
+import ru.sequoio.library.utils.HashAlgorithm;
 
 public class Sequoio {
 
     private final ChangelogParsingService changelogParser;
     private final MigrationApplicationService migrationApplier;
+    private final MigrationPlanner migrationPlanner;
+    private final MigrationListener listener;
 
     public Sequoio(String resourcesDirectory,
                    String environment,
@@ -21,19 +34,15 @@ public class Sequoio {
                    SupportedDatabases database,
                    boolean dryRun
     ) {
-        this.changelogParser = new ChangelogParsingService(new MigrationParsingService(), resourcesDirectory);
-        if (dryRun) {
-            this.migrationApplier = new MigrationApplicationServiceDryRun();
-        } else {
-            this.migrationApplier = new MigrationApplicationServiceImpl(
-                    dataSource,
-                    defaultSchema,
-                    database.getQueryProvider(),
-                    environment
-            );
-        }
+        this(builder()
+                .resourcesDirectory(resourcesDirectory)
+                .environment(environment)
+                .defaultSchema(defaultSchema)
+                .dataSource(dataSource)
+                .database(database)
+                .dryRun(dryRun));
     }
-    
+
     public Sequoio(String resourcesDirectory,
                    String environment,
                    String defaultSchema,
@@ -43,11 +52,169 @@ public class Sequoio {
         this(resourcesDirectory, environment, defaultSchema, dataSource, database, false);
     }
 
+    /**
+     * Runs migrations on caller-supplied connection <br/>
+     * Connection is not closed by Sequoio, its auto-commit mode is restored after migration
+     */
+    public Sequoio(String resourcesDirectory,
+                   String environment,
+                   String defaultSchema,
+                   Connection connection,
+                   SupportedDatabases database
+    ) {
+        this(builder()
+                .resourcesDirectory(resourcesDirectory)
+                .environment(environment)
+                .defaultSchema(defaultSchema)
+                .connection(connection)
+                .database(database));
+    }
+
+    private Sequoio(SequoioBuilder builder) {
+        this.listener = MigrationListeners.of(builder.listeners);
+        var hashAlgorithm = builder.settings == null ? HashAlgorithm.MD5 : builder.settings.getHashAlgorithm();
+        this.changelogParser = new ChangelogParsingService(new MigrationParsingService(hashAlgorithm),
+                builder.resourcesDirectory,
+                builder.parseCacheFile);
+        boolean hasDatabase = builder.database != null && builder.settings != null
+                && (builder.dataSource != null || builder.connection != null);
+        this.migrationPlanner = !hasDatabase
+                ? null
+                : new MigrationPlanner(builder.dataSource,
+                    builder.connection,
+                    builder.defaultSchema,
+                    builder.database.getQueryProvider(),
+                    builder.environment,
+                    builder.settings);
+        if (builder.dryRun) {
+            this.migrationApplier = new MigrationApplicationServiceDryRun(migrationPlanner);
+        } else {
+            this.migrationApplier = new MigrationApplicationServiceImpl(
+                    builder.dataSource,
+                    builder.connection,
+                    builder.defaultSchema,
+                    builder.database.getQueryProvider(),
+                    builder.environment,
+                    builder.settings,
+                    listener
+            );
+        }
+    }
+
     /**
      * Runs migration process
      */
     public void migrate() {
-        migrationApplier.applyMigrationsFromGraph(changelogParser.parseChangelog());
+        listener.onParseStarted();
+        long start = System.nanoTime();
+        var migrationGraph = changelogParser.parseChangelog();
+        listener.onParseFinished(migrationGraph.getNodes().size(), System.nanoTime() - start);
+        migrationApplier.applyMigrationsFromGraph(migrationGraph);
+    }
+
+    /**
+     * Builds plan of migration against the current state of the database <br/>
+     * Database is only read and the lock is not taken, so plan is cheap enough for readiness probes
+     * and can be built concurrently with a running migration, if Sequoio has a data source
+     */
+    public MigrationPlan plan() {
+        if (migrationPlanner == null) {
+            throw new IllegalStateException("Database must be set to build migration plan");
+        }
+        var migrationGraph = changelogParser.parseChangelog();
+        return migrationPlanner.plan(migrationGraph);
+    }
+
+    /**
+     * @return 'UP_TO_DATE' if migration would apply nothing but 'run:always' migrations,
+     * 'PENDING' if it would apply something else and 'INVALID' if it would fail
+     */
+    public MigrationPlan.Status status() {
+        return plan().getStatus();
+    }
+
+    public static SequoioBuilder builder() {
+        return new SequoioBuilder();
+    }
+
+    public static class SequoioBuilder {
+
+        private String resourcesDirectory;
+        private String environment;
+        private String defaultSchema;
+        private DataSource dataSource;
+        private Connection connection;
+        private SupportedDatabases database;
+        private boolean dryRun;
+        private Path parseCacheFile;
+        private ApplicationSettings settings = ApplicationSettings.defaults();
+        private final List<MigrationListener> listeners = new ArrayList<>();
+
+        public SequoioBuilder resourcesDirectory(String resourcesDirectory) {
+            this.resourcesDirectory = resourcesDirectory;
+            return this;
+        }
+
+        public SequoioBuilder environment(String environment) {
+            this.environment = environment;
+            return this;
+        }
+
+        public SequoioBuilder defaultSchema(String defaultSchema) {
+            this.defaultSchema = defaultSchema;
+            return this;
+        }
+
+        public SequoioBuilder dataSource(DataSource dataSource) {
+            this.dataSource = dataSource;
+            return this;
+        }
+
+        /**
+         * Caller-supplied connection, used instead of data source, must be in auto-commit mode
+         */
+        public SequoioBuilder connection(Connection connection) {
+            this.connection = connection;
+            return this;
+        }
+
+        public SequoioBuilder database(SupportedDatabases database) {
+            this.database = database;
+            return this;
+        }
+
+        public SequoioBuilder dryRun(boolean dryRun) {
+            this.dryRun = dryRun;
+            return this;
+        }
+
+        /**
+         * Enables parse cache in the given file, only changed migration files are parsed on the next run
+         */
+        public SequoioBuilder parseCache(Path parseCacheFile) {
+            this.parseCacheFile = parseCacheFile;
+            return this;
+        }
+
+        /**
+         * Adds listener of migration process, see {@link ru.sequoio.library.services.monitoring.MigrationMetrics}
+         */
+        public SequoioBuilder listener(MigrationListener listener) {
+            this.listeners.add(listener);
+            return this;
+        }
+
+        public SequoioBuilder settings(ApplicationSettings settings) {
+            this.settings = settings;
+            return this;
+        }
+
+        public Sequoio build() {
+            if (!dryRun && (database == null || settings == null)) {
+                throw new IllegalStateException("Database and settings must be set");
+            }
+            return new Sequoio(this);
+        }
     }
 
 }
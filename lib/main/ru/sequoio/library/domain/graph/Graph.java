@@ -1,87 +1,340 @@
 package ru.sequoio.library.domain.graph;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.sequoio.library.services.monitoring.events.GraphBuildEvent;
 
+/**
+ * Migration graph, ordered by 'runBefore' and 'runAfter' parameters <br/>
+ * Nodes are indexed by natural order, edges are kept as compressed rows of int arrays
+ * and ordering is done by Kahn's algorithm in O(V log V + E). <br/>
+ * Clusters are never interleaved and ordered by their first migration. Inside of cluster nodes are taken
+ * breadth-first from its roots: node is queued, when its last previous node is taken, and next nodes are queued
+ * in the order, in which the former implementation resolved parameters, so graphs it accepted
+ * (every node runs after one node at most) keep their order
+ */
 public class Graph<T extends Node> {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(Graph.class);
 
-    private final Map<String, T> nameToNodeMap;
+    private final List<T> nodes;
+    private final Map<String, Integer> nameToIndexMap;
     private final TreeSet<Cluster<T>> orderedClusters;
     private final LinkedList<T> orderedNodes;
 
+    private int[] nextStart;
+    private int[] next;
+    private int[] previousStart;
+    private int[] previous;
+
     public Graph(List<T> nodes) {
-        this.nameToNodeMap = nodes.stream().collect(Collectors.toMap(Node::getName, Function.identity()));
+        this.nodes = new ArrayList<>(nodes);
+        this.nodes.sort(Comparator.comparing(Node::getNaturalOrder));
+        this.nameToIndexMap = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < this.nodes.size(); i++) {
+            var name = this.nodes.get(i).getName();
+            if (nameToIndexMap.putIfAbsent(name, i) != null) {
+                throw new IllegalStateException(String.format("Duplicate migration name '%s'", name));
+            }
+        }
         orderedClusters = new TreeSet<>();
-        orderedNodes = buildGraphAndGetOrderedNodes();
+        orderedNodes = buildGraphAndGetOrderedNodes(getLegacyResolutionOrder(nodes));
     }
 
-    private LinkedList<T> buildGraphAndGetOrderedNodes() {
+    /**
+     * Former implementation resolved parameters in iteration order of a hash map of names,
+     * filled in the order of given nodes, and kept next nodes in that order
+     *
+     * @return node indexes in that order
+     */
+    private int[] getLegacyResolutionOrder(List<T> givenNodes) {
+        Map<String, Integer> legacyMap = new HashMap<>();
+        for (var node : givenNodes) {
+            legacyMap.putIfAbsent(node.getName(), nameToIndexMap.get(node.getName()));
+        }
+        return legacyMap.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private LinkedList<T> buildGraphAndGetOrderedNodes(int[] resolutionOrder) {
         LOGGER.debug("Building migration graph");
+        var event = new GraphBuildEvent();
+        event.begin();
 
-        resolveNextNodesByRunAfterAndRunBeforeParamValues();
-        makeClustersByExplicitNextNodes();
-        var nodes = getOrderedNodesFromClusters();
+        resolveEdgesByRunAfterAndRunBeforeParamValues(resolutionOrder);
+        var nodes = sortTopologically(getClusters());
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.migrations = nodes.size();
+            event.edges = next.length;
+            event.clusters = orderedClusters.size();
+            event.commit();
+        }
         LOGGER.debug("Migration graph was built");
         return nodes;
     }
 
-    private void resolveNextNodesByRunAfterAndRunBeforeParamValues() {
-        LOGGER.debug("Resolving next nodes by RunAfter and RunBefore parameters");
-
-        nameToNodeMap.values().forEach(migration -> {
-            migration.getExplicitPreviousNodeNames().forEach(previousNodeName -> {
-                nameToNodeMap.get(previousNodeName).addNextNodeName(migration.getName());
-            });
-            var nextNodeNames = migration.getExplicitNextNodeNames();
-            migration.addNextNodeNames(nextNodeNames);
-        });
-
-        nameToNodeMap.values().forEach(migration -> migration.getAllNextNodeNames().forEach(
-                        nextNodeName -> {
-                            migration.addNextNode(nameToNodeMap.get(nextNodeName));
-                            nameToNodeMap.get(nextNodeName).addPreviousNode(migration);
-                        }
-                )
-        );
+    /**
+     * Edges are collected in resolution order, rows keep it, as they are filled by stable counting sort
+     */
+    private void resolveEdgesByRunAfterAndRunBeforeParamValues(int[] resolutionOrder) {
+        LOGGER.debug("Resolving edges by RunAfter and RunBefore parameters");
+
+        int n = nodes.size();
+        int[] from = new int[n];
+        int[] to = new int[n];
+        int edges = 0;
+        for (int i : resolutionOrder) {
+            var node = nodes.get(i);
+            for (var previousNodeName : node.getExplicitPreviousNodeNames()) {
+                if (edges == from.length) {
+                    from = Arrays.copyOf(from, edges * 2 + 1);
+                    to = Arrays.copyOf(to, edges * 2 + 1);
+                }
+                from[edges] = getIndex(previousNodeName, node);
+                to[edges++] = i;
+            }
+            for (var nextNodeName : node.getExplicitNextNodeNames()) {
+                if (edges == from.length) {
+                    from = Arrays.copyOf(from, edges * 2 + 1);
+                    to = Arrays.copyOf(to, edges * 2 + 1);
+                }
+                from[edges] = i;
+                to[edges++] = getIndex(nextNodeName, node);
+            }
+        }
+
+        nextStart = new int[n + 1];
+        next = new int[edges];
+        fillRows(from, to, edges, nextStart, next);
+        previousStart = new int[n + 1];
+        previous = new int[edges];
+        fillRows(to, from, edges, previousStart, previous);
+    }
+
+    private int getIndex(String name, T referencingNode) {
+        var index = nameToIndexMap.get(name);
+        if (index == null) {
+            throw new IllegalStateException(String.format("Migration '%s' refers to unknown migration '%s'",
+                    referencingNode.getName(), name));
+        }
+        return index;
+    }
+
+    /**
+     * Counting sort of edges by source node, row of node 'i' is 'targets[start[i]..start[i + 1])'
+     */
+    private static void fillRows(int[] sources, int[] destinations, int edges, int[] start, int[] targets) {
+        for (int e = 0; e < edges; e++) {
+            start[sources[e] + 1]++;
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        int[] position = Arrays.copyOf(start, start.length - 1);
+        for (int e = 0; e < edges; e++) {
+            targets[position[sources[e]]++] = destinations[e];
+        }
     }
 
-    private void makeClustersByExplicitNextNodes() {
+    /**
+     * @return index of the first node of cluster for every node
+     */
+    private int[] getClusters() {
         LOGGER.debug("Making clusters");
 
-        getNodes().forEach(node -> {
-           if (!node.isInCluster()) {
-             orderedClusters.add(new Cluster<>(node));
-           }
-        });
+        int n = nodes.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int e = nextStart[i]; e < nextStart[i + 1]; e++) {
+                int a = find(parent, i);
+                int b = find(parent, next[e]);
+                // root is always the least index, so it is the first node of cluster
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            parent[i] = find(parent, i);
+        }
+        return parent;
     }
 
-    private LinkedList<T> getOrderedNodesFromClusters() {
-        LOGGER.debug("Traversing graph (breadth first)");
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private LinkedList<T> sortTopologically(int[] cluster) {
+        LOGGER.debug("Sorting graph topologically");
+
+        int n = nodes.size();
+        int[] inDegree = new int[n];
+        for (int e = 0; e < next.length; e++) {
+            inDegree[next[e]]++;
+        }
+        var queue = new NodeQueue(n, cluster);
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0) {
+                queue.add(i);
+            }
+        }
 
         LinkedList<T> resultingList = new LinkedList<>();
-        for (var cluster : orderedClusters) {
-            resultingList.addAll(cluster.getNodes());
+        LinkedList<T> clusterNodes = null;
+        int currentCluster = -1;
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            if (cluster[i] != currentCluster) {
+                addCluster(clusterNodes);
+                clusterNodes = new LinkedList<>();
+                currentCluster = cluster[i];
+            }
+            clusterNodes.add(nodes.get(i));
+            resultingList.add(nodes.get(i));
+            for (int e = nextStart[i]; e < nextStart[i + 1]; e++) {
+                if (--inDegree[next[e]] == 0) {
+                    queue.add(next[e]);
+                }
+            }
+        }
+        addCluster(clusterNodes);
+
+        if (resultingList.size() < n) {
+            throw new IllegalStateException("Cycle found in migration graph: " + findCycle(inDegree));
         }
         return resultingList;
     }
 
+    private void addCluster(LinkedList<T> clusterNodes) {
+        if (clusterNodes != null) {
+            orderedClusters.add(new Cluster<>(clusterNodes));
+        }
+    }
+
+    /**
+     * Every node left after sorting has a previous node which is left too,
+     * so walking back by such nodes always comes to a cycle
+     */
+    private String findCycle(int[] inDegree) {
+        int n = nodes.size();
+        int[] pathIndex = new int[n];
+        Arrays.fill(pathIndex, -1);
+        List<Integer> path = new ArrayList<>();
+        int i = 0;
+        while (inDegree[i] == 0) {
+            i++;
+        }
+        while (pathIndex[i] < 0) {
+            pathIndex[i] = path.size();
+            path.add(i);
+            int e = previousStart[i];
+            while (inDegree[previous[e]] == 0) {
+                e++;
+            }
+            i = previous[e];
+        }
+
+        var cycle = new StringBuilder(nodes.get(i).getName());
+        for (int p = path.size() - 1; p >= pathIndex[i]; p--) {
+            cycle.append(" -> ").append(nodes.get(path.get(p)).getName());
+        }
+        return cycle.toString();
+    }
+
     public Collection<T> getNodes() {
-        return nameToNodeMap.values();
+        return Collections.unmodifiableList(nodes);
     }
 
     public LinkedList<T> getOrderedNodes() {
         return orderedNodes;
     }
 
+    /**
+     * @return clusters ordered by natural order of their first migration <br/>
+     * Clusters are not connected by 'runBefore' and 'runAfter' parameters
+     */
+    public SortedSet<Cluster<T>> getOrderedClusters() {
+        return Collections.unmodifiableSortedSet(orderedClusters);
+    }
+
+    /**
+     * Binary min-heap of node indexes, ordered by cluster and then by the time node was queued,
+     * so it is a FIFO queue inside of cluster
+     */
+    private static class NodeQueue {
+
+        private final int[] heap;
+        private final int[] cluster;
+        private final int[] ticket;
+        private int size;
+        private int tickets;
+
+        private NodeQueue(int capacity, int[] cluster) {
+            this.heap = new int[capacity];
+            this.cluster = cluster;
+            this.ticket = new int[capacity];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void add(int node) {
+            ticket[node] = tickets++;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!less(node, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = node;
+        }
+
+        private int poll() {
+            int result = heap[0];
+            int node = heap[--size];
+            int i = 0;
+            while (i * 2 + 1 < size) {
+                int child = i * 2 + 1;
+                if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!less(heap[child], node)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = node;
+            return result;
+        }
+
+        private boolean less(int a, int b) {
+            if (cluster[a] != cluster[b]) {
+                return cluster[a] < cluster[b];
+            }
+            return ticket[a] < ticket[b];
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package ru.sequoio.library.domain.migration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.sequoio.library.utils.HashingUtils;
+
+/**
+ * Merkle tree over ordered migration names and body hashes of a changelog for an environment <br/>
+ * Each migration is a leaf, every consecutive {@value SUBTREE_SIZE} migrations make a subtree
+ * and the root is a digest of environment and subtree hashes. <br/>
+ * Two processes with equal roots would apply exactly the same migrations in the same order.
+ * Subtree hashes of two changelogs narrow down which ranges of migrations differ
+ */
+public class ChangelogFingerprint {
+
+    public static final int SUBTREE_SIZE = 64;
+
+    public static final String id_ = "id";
+    public static final String fingerprint_ = "fingerprint";
+    public static final String subtrees_ = "subtrees";
+    public static final String migrations_ = "migrations";
+    public static final String appliedAt_ = "applied_at";
+
+    private static final String SHA_256 = "SHA-256";
+    private static final String SUBTREE_SEPARATOR = ",";
+
+    private final String root;
+    private final List<String> subtrees;
+    private final int migrationsCount;
+
+    private ChangelogFingerprint(String root, List<String> subtrees, int migrationsCount) {
+        this.root = root;
+        this.subtrees = subtrees;
+        this.migrationsCount = migrationsCount;
+    }
+
+    public static ChangelogFingerprint of(List<Migration> orderedMigrations, String environment) {
+        var md = newDigest();
+        List<String> subtrees = new ArrayList<>((orderedMigrations.size() + SUBTREE_SIZE - 1) / SUBTREE_SIZE);
+        var subtree = newDigest();
+        int inSubtree = 0;
+        for (var migration : orderedMigrations) {
+            subtree.update(leaf(md, migration));
+            if (++inSubtree == SUBTREE_SIZE) {
+                subtrees.add(HashingUtils.toHex(subtree.digest()));
+                inSubtree = 0;
+            }
+        }
+        if (inSubtree > 0) {
+            subtrees.add(HashingUtils.toHex(subtree.digest()));
+        }
+
+        md.update(String.valueOf(environment).getBytes(StandardCharsets.UTF_8));
+        for (var subtreeHash : subtrees) {
+            md.update((byte) '\n');
+            md.update(subtreeHash.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ChangelogFingerprint(HashingUtils.toHex(md.digest()), subtrees, orderedMigrations.size());
+    }
+
+    /**
+     * Leaf covers everything, which decides whether and how migration is applied,
+     * except the state of the database
+     */
+    private static byte[] leaf(MessageDigest md, Migration migration) {
+        md.update(migration.getName().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) ':');
+        md.update(migration.getHashAlgorithm().getName().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) ':');
+        md.update(migration.getHash().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) ':');
+        md.update(migration.getRunModifier().getValueAsString().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) ':');
+        md.update(String.valueOf(migration.getEnvironment()).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) ':');
+        md.update(String.valueOf(migration.getIgnored()).getBytes(StandardCharsets.UTF_8));
+        return md.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    public List<String> getSubtrees() {
+        return subtrees;
+    }
+
+    public int getMigrationsCount() {
+        return migrationsCount;
+    }
+
+    public String getSubtreesAsString() {
+        return String.join(SUBTREE_SEPARATOR, subtrees);
+    }
+
+    public static List<String> parseSubtrees(String subtrees) {
+        return subtrees == null || subtrees.isEmpty()
+                ? List.of()
+                : Arrays.asList(subtrees.split(SUBTREE_SEPARATOR));
+    }
+
+    /**
+     * @param previousSubtrees subtree hashes of another changelog
+     * @return ranges of actual orders of migrations, which differ from the other changelog, as 'first-last' <br/>
+     * Subtrees, which are missing in one of changelogs, are reported as changed as well
+     */
+    public List<String> getChangedRanges(List<String> previousSubtrees) {
+        List<String> ranges = new ArrayList<>();
+        int subtreesCount = Math.max(subtrees.size(), previousSubtrees.size());
+        int lastOrder = Math.max(migrationsCount, previousSubtrees.size() * SUBTREE_SIZE) - 1;
+        int rangeStart = -1;
+        for (int i = 0; i <= subtreesCount; i++) {
+            boolean changed = i < subtreesCount
+                    && (i >= subtrees.size() || i >= previousSubtrees.size()
+                        || !subtrees.get(i).equals(previousSubtrees.get(i)));
+            if (changed && rangeStart < 0) {
+                rangeStart = i;
+            } else if (!changed && rangeStart >= 0) {
+                ranges.add(rangeStart * SUBTREE_SIZE + "-" + Math.min(i * SUBTREE_SIZE - 1, lastOrder));
+                rangeStart = -1;
+            }
+        }
+        return ranges;
+    }
+
+    @Override
+    public String toString() {
+        return root;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.sequoio.library.domain.migration;
+
+/**
+ * Index built by 'CREATE INDEX CONCURRENTLY' statement <br/>
+ * Names are kept as written in the statement, quoted names keep their quotes
+ */
+public class IndexBuild {
+
+    private final String indexName;
+    private final String schemaName;
+    private final String tableName;
+
+    /**
+     * @param indexName 'null' for index without explicit name
+     * @param schemaName 'null' if table is not qualified by schema
+     */
+    public IndexBuild(String indexName, String schemaName, String tableName) {
+        this.indexName = indexName;
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public boolean isNamed() {
+        return indexName != null;
+    }
+
+    /**
+     * Index is always created in the schema of its table
+     */
+    public String getQualifiedIndexName() {
+        return schemaName == null ? indexName : schemaName + "." + indexName;
+    }
+
+    /**
+     * @return qualified table name, unquoted names are folded to lower case
+     */
+    public String getQualifiedTableName() {
+        var table = fold(tableName);
+        return schemaName == null ? table : fold(schemaName) + "." + table;
+    }
+
+    private static String fold(String name) {
+        return name.startsWith("\"") ? name : name.toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return (isNamed() ? getQualifiedIndexName() : "unnamed index") + " on " + getQualifiedTableName();
+    }
+}
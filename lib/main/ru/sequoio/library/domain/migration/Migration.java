@@ -1,16 +1,21 @@
 package ru.sequoio.library.domain.migration;
 
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import ru.sequoio.library.domain.graph.Node;
+import ru.sequoio.library.exception.InvalidFileFormatException;
 import ru.sequoio.library.domain.migration.migration_paramters.BooleanParameterValue;
+import ru.sequoio.library.domain.migration.migration_paramters.LoadParameterValue;
 import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
 import ru.sequoio.library.domain.migration.migration_paramters.ParameterValue;
 import ru.sequoio.library.domain.migration.migration_paramters.RunParameterValue;
+import ru.sequoio.library.services.parsing.SqlLexer;
+import ru.sequoio.library.services.parsing.StatementBoundaries;
+import ru.sequoio.library.utils.HashAlgorithm;
 import ru.sequoio.library.utils.HashingUtils;
 
 /**
@@ -18,39 +23,39 @@ import ru.sequoio.library.utils.HashingUtils;
  */
 public class Migration extends Node {
 
-    private final static String STATEMENT_SPLIT_CHAR = ";";
-
     private Path path;
     private String title;
     private String author;
-    private String body;
+    private MigrationBody body;
     private Map<MigrationParameter, ParameterValue> params;
     private Map<String, String> userDefinedParams;
     private RunStatus runStatus = RunStatus.UNKNOWN;
     private MigrationLog loggedMigration;
     private Long actualOrder;
+    private StatementBoundaries statementBoundaries;
+    private final HashAlgorithm hashAlgorithm;
+    private String hash;
 
     private Migration(Path path,
                      Integer naturalOrder,
-                     String body,
+                     MigrationBody body,
                      String title,
                      String author,
                      Map<MigrationParameter, ParameterValue> params,
-                     Map<String, String> userDefinedParams) {
+                     Map<String, String> userDefinedParams,
+                     HashAlgorithm hashAlgorithm,
+                     String hash,
+                     StatementBoundaries statementBoundaries) {
         super(naturalOrder, title);
+        this.hashAlgorithm = hashAlgorithm;
+        this.hash = hash;
+        this.statementBoundaries = statementBoundaries;
         this.path = path;
         this.title = title;
         this.author = author;
         this.params = params;
         this.userDefinedParams = userDefinedParams;
-        setBody(body);
-    }
-
-    private void setBody(String body) {
-        body = body.stripTrailing();
-        this.body = body.charAt(body.length() - 1) == ';'
-                        ? body
-                        : body + ";";
+        this.body = body;
     }
 
     public RunStatus getRunStatus() {
@@ -69,6 +74,32 @@ public class Migration extends Node {
         this.loggedMigration = loggedMigration;
     }
 
+    /**
+     * Run status is 'new' without migration log record, otherwise logged hash is compared
+     * with the hash of the body by the logged algorithm, so change of hash algorithm does not change status
+     */
+    public void setRunStatusAndMigrationLog(MigrationLog loggedMigration) {
+        if (loggedMigration == null) {
+            runStatus = RunStatus.NEW;
+        }
+        else if (loggedMigration.getHash().equals(getHash(HashAlgorithm.byName(loggedMigration.getHashAlgorithm())))) {
+            runStatus = RunStatus.APPLIED;
+        }
+        else {
+            runStatus = RunStatus.BODY_CHANGED;
+        }
+        this.loggedMigration = loggedMigration;
+    }
+
+    /**
+     * @return migration with the same header, body, hash and statement boundaries,
+     * but without run status, migration log and actual order
+     */
+    public Migration copy() {
+        return new Migration(path, getNaturalOrder(), body, title, author, params, userDefinedParams,
+                hashAlgorithm, hash, statementBoundaries);
+    }
+
     @Override
     public List<String> getExplicitPreviousNodeNames() {
         return Optional.ofNullable(params.get(MigrationParameter.RUN_AFTER))
@@ -85,8 +116,62 @@ public class Migration extends Node {
                 .orElse(List.of());
     }
 
+    /**
+     * Hash of the body, followed by data file content for 'load' migrations <br/>
+     * Hash is calculated once, migrations of a changelog are hashed in parallel right after parsing
+     */
     public String getHash() {
-        return HashingUtils.md5(body);
+        if (hash == null) {
+            hash = calculateHash(hashAlgorithm);
+        }
+        return hash;
+    }
+
+    /**
+     * Hash with another algorithm, used to compare with hashes stored before the algorithm was changed <br/>
+     * Only hash with migration algorithm is kept
+     */
+    public String getHash(HashAlgorithm algorithm) {
+        return algorithm == hashAlgorithm ? getHash() : calculateHash(algorithm);
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    private String calculateHash(HashAlgorithm algorithm) {
+        if (!isLoad()) {
+            return HashingUtils.hash(algorithm, body.getBytes());
+        }
+        try {
+            return HashingUtils.hash(algorithm, body.getBytes(), getLoadFile());
+        } catch (IOException e) {
+            throw new InvalidFileFormatException(path.toString(),
+                    String.format("data file %s of migration %s is not readable", getLoadFile(), getName()), e);
+        }
+    }
+
+    public LoadParameterValue getLoadFormat() {
+        return (LoadParameterValue) params.getOrDefault(MigrationParameter.LOAD, LoadParameterValue.NONE);
+    }
+
+    public boolean isLoad() {
+        return getLoadFormat() != LoadParameterValue.NONE;
+    }
+
+    /**
+     * @return data file of 'load' migration, named after migration title and placed next to migration file
+     */
+    public Path getLoadFile() {
+        return path.resolveSibling(title + getLoadFormat().getFileExtension());
+    }
+
+    /**
+     * @return target table and optional column list of 'load' migration, e.g. 'countries (code, name)'
+     */
+    public String getLoadTarget() {
+        var target = body.getText().strip();
+        return target.substring(0, target.length() - 1).strip();
     }
 
     public RunParameterValue getRunModifier() {
@@ -147,13 +232,58 @@ public class Migration extends Node {
             loggedMigration.setAuthor(getAuthor());
             loggedMigration.setFilename(getPath().toString());
             loggedMigration.setHash(getHash());
+            loggedMigration.setHashAlgorithm(hashAlgorithm.getName());
             loggedMigration.setRunOrder(getActualOrder());
             loggedMigration.setUserDefinedParams(getUserDefinedParams());
         }
     }
 
+    /**
+     * Body is decoded on every call and is not kept by migration, lexed boundaries are kept
+     *
+     * @return statements of the body, split by SQL lexer
+     */
     public List<String> getStatements() {
-        return Arrays.asList(body.split(STATEMENT_SPLIT_CHAR));
+        var text = body.getText();
+        if (statementBoundaries == null) {
+            statementBoundaries = SqlLexer.split(text);
+        }
+        return statementBoundaries.statements(text);
+    }
+
+    /**
+     * @return offsets of statements in body text, body is lexed on first call
+     */
+    public StatementBoundaries getStatementBoundaries() {
+        if (statementBoundaries == null) {
+            statementBoundaries = SqlLexer.split(body.getText());
+        }
+        return statementBoundaries;
+    }
+
+    /**
+     * Concurrent index commands can not run in a transaction block, so migration with them is applied
+     * outside of transaction. Transactional migration may consist of such commands only,
+     * otherwise its other statements would be applied without transaction as well
+     *
+     * @return 'true' if migration has concurrent index commands, known from lexed boundaries without decoding body
+     * @throws IllegalStateException if transactional migration mixes concurrent index commands with other statements
+     */
+    public boolean hasConcurrentIndexCommands() {
+        if (isLoad()) {
+            return false;
+        }
+        var boundaries = getStatementBoundaries();
+        int concurrentIndexCommands = boundaries.concurrentIndexCommandsCount();
+        if (concurrentIndexCommands > 0 && concurrentIndexCommands < boundaries.count() && isTransactional()) {
+            throw new IllegalStateException(String.format("Migration %s mixes concurrent index commands " +
+                    "with other statements, it must have 'transactional:false' parameter", getName()));
+        }
+        return concurrentIndexCommands > 0;
+    }
+
+    public Map<MigrationParameter, ParameterValue> getParams() {
+        return Map.copyOf(params);
     }
 
     public boolean isTransactional() {
@@ -180,6 +310,11 @@ public class Migration extends Node {
         private Map<MigrationParameter, ParameterValue> params;
 
         private Map<String, String> userDefinedParams;
+
+        private HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
+        private String hash;
+        private StatementBoundaries statementBoundaries;
+
         public MigrationBuilder header(String title,
                                        String author,
                                        Map<MigrationParameter, ParameterValue> params,
@@ -191,13 +326,37 @@ public class Migration extends Node {
             return this;
         }
 
+        public MigrationBuilder hashAlgorithm(HashAlgorithm hashAlgorithm) {
+            this.hashAlgorithm = hashAlgorithm;
+            return this;
+        }
+
+        /**
+         * Known hash and statement boundaries of the body, e.g. from parse cache
+         *
+         * @param hash hash with builder algorithm, calculated on demand if 'null'
+         * @param statementBoundaries lexed on demand if 'null'
+         */
+        public MigrationBuilder parsed(String hash, StatementBoundaries statementBoundaries) {
+            this.hash = hash;
+            this.statementBoundaries = statementBoundaries;
+            return this;
+        }
+
         public Migration build(Path path,
                                Integer naturalOrder,
                                String body) {
+            return build(path, naturalOrder, MigrationBody.of(body));
+        }
+
+        public Migration build(Path path,
+                               Integer naturalOrder,
+                               MigrationBody body) {
             if (title == null || author == null || params == null || userDefinedParams == null) {
                 throw new IllegalStateException("Header is not set");
             }
-            return new Migration(path, naturalOrder, body, title, author, params, userDefinedParams);
+            return new Migration(path, naturalOrder, body, title, author, params, userDefinedParams,
+                    hashAlgorithm, hash, statementBoundaries);
         }
 
     }
@@ -0,0 +1,113 @@
+package ru.sequoio.library.domain.migration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * SQL body of migration, always terminated by ';' <br/>
+ * Body is either a string or a region of a memory-mapped migration file. Region is decoded on every
+ * {@link #getText()} call and is never kept on heap, so large migration files do not grow the heap
+ */
+public abstract class MigrationBody {
+
+    private static final char TERMINATOR = ';';
+    private static final ByteBuffer TERMINATOR_BYTES = ByteBuffer.wrap(new byte[] {TERMINATOR}).asReadOnlyBuffer();
+
+    /**
+     * @return body text, decoded from UTF-8 for file regions
+     */
+    public abstract String getText();
+
+    /**
+     * @return UTF-8 bytes of body text, split in parts to avoid copying of file regions
+     */
+    public abstract List<ByteBuffer> getBytes();
+
+    /**
+     * @param text body text, trailing whitespace is stripped and missing terminator is appended
+     */
+    public static MigrationBody of(String text) {
+        return new StringBody(text);
+    }
+
+    /**
+     * @param buffer migration file content
+     * @param start offset of the first non-whitespace byte of body
+     * @param end offset after the last non-whitespace byte of body
+     */
+    public static MigrationBody of(ByteBuffer buffer, int start, int end) {
+        return new FileRegionBody(() -> buffer, start, end);
+    }
+
+    /**
+     * @param buffer migration file content, requested only when body is read
+     */
+    public static MigrationBody of(Supplier<ByteBuffer> buffer, int start, int end) {
+        return new FileRegionBody(buffer, start, end);
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+
+    private static class StringBody extends MigrationBody {
+
+        private final String text;
+
+        private StringBody(String text) {
+            text = text.stripTrailing();
+            this.text = text.charAt(text.length() - 1) == TERMINATOR
+                    ? text
+                    : text + TERMINATOR;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public List<ByteBuffer> getBytes() {
+            return List.of(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static class FileRegionBody extends MigrationBody {
+
+        private final Supplier<ByteBuffer> buffer;
+        private final int start;
+        private final int end;
+
+        private FileRegionBody(Supplier<ByteBuffer> buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String getText() {
+            var region = region();
+            var text = StandardCharsets.UTF_8.decode(region.duplicate()).toString();
+            return isTerminated(region) ? text : text + TERMINATOR;
+        }
+
+        @Override
+        public List<ByteBuffer> getBytes() {
+            var region = region();
+            return isTerminated(region)
+                    ? List.of(region)
+                    : List.of(region, TERMINATOR_BYTES.duplicate());
+        }
+
+        private ByteBuffer region() {
+            return buffer.get().duplicate().position(start).limit(end).slice();
+        }
+
+        private static boolean isTerminated(ByteBuffer region) {
+            return region.get(region.limit() - 1) == TERMINATOR;
+        }
+    }
+}
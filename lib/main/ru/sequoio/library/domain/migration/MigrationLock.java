@@ -3,5 +3,8 @@ package ru.sequoio.library.domain.migration;
 public class MigrationLock {
 
     public static final String locked_ = "locked";
+    public static final String ownerId_ = "owner_id";
+    public static final String expiresAt_ = "expires_at";
+    public static final String fencingToken_ = "fencing_token";
 
 }
@@ -14,10 +14,12 @@ public class MigrationLog {
     private String name;
     private String filename;
     private String hash;
+    private String hashAlgorithm;
     private Long runOrder;
     private String userDefinedParamsJson;
 
     private boolean applied;
+    private boolean linked;
 
     public static final String createdAt_ = "created_at";
     public static final String lastExecutedAt_ = "last_executed_at";
@@ -26,6 +28,7 @@ public class MigrationLog {
     public static final String name_ = "name";
     public static final String filename_ = "filename";
     public static final String hash_ = "hash";
+    public static final String hashAlgorithm_ = "hash_algorithm";
     public static final String runOrder_ = "run_order";
     public static final String userDefinedParamsJson_ = "user_params";
 
@@ -67,6 +70,19 @@ public class MigrationLog {
         this(null, null, runModifier, author, name, filename, hash, runOrder, userDefinedParams);
     }
 
+    /**
+     * Projection of a stored record, loaded to order and compare migrations <br/>
+     * Other columns are not loaded, they are overwritten from the migration, if the record is updated
+     */
+    public MigrationLog(String runModifier,
+                        String name,
+                        String hash,
+                        String hashAlgorithm,
+                        Long runOrder) {
+        this(null, null, runModifier, null, name, null, hash, runOrder);
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
     public MigrationLog(Instant createdAt,
                         Instant lastRunAt,
                         String runModifier,
@@ -93,6 +109,14 @@ public class MigrationLog {
         return hash;
     }
 
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(String hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
     public String getRunModifier() {
         return runModifier;
     }
@@ -109,6 +133,17 @@ public class MigrationLog {
         return !applied;
     }
 
+    /**
+     * Marks record as linked to unchanged migration, which keeps its order
+     */
+    public void setLinked() {
+        linked = true;
+    }
+
+    public boolean isLinked() {
+        return linked;
+    }
+
     public String getFilename() {
         return filename;
     }
@@ -148,4 +183,15 @@ public class MigrationLog {
     public String getUserDefinedParamsJson() {
         return userDefinedParamsJson;
     }
+
+    @Override
+    public String toString() {
+        return "MigrationLog{" +
+                "name='" + name + '\'' +
+                ", hash='" + hash + '\'' +
+                ", hashAlgorithm='" + hashAlgorithm + '\'' +
+                ", runOrder=" + runOrder +
+                ", runModifier='" + runModifier + '\'' +
+                '}';
+    }
 }
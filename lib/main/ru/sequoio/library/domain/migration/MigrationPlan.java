@@ -0,0 +1,194 @@
+package ru.sequoio.library.domain.migration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * What migration would do against the current state of the database, built without taking the lock <br/>
+ * Migrations are in actual order, each with the action, which the runner would take on it
+ */
+public class MigrationPlan {
+
+    public enum Action {
+        /** New migration, which would be applied */
+        APPLY_NEW,
+        /** 'run:onchange' migration with changed body, which would be applied again */
+        APPLY_CHANGED,
+        /** 'run:always' migration, which is applied on every run */
+        APPLY_ALWAYS,
+        /** Applied migration without changes */
+        UP_TO_DATE,
+        /** Migration with 'ignore' parameter */
+        IGNORED,
+        /** Migration for another environment */
+        OTHER_ENVIRONMENT,
+        /** Migration, which would fail the run, e.g. changed body of a 'run:once' migration */
+        INVALID
+    }
+
+    public enum Status {
+        UP_TO_DATE,
+        PENDING,
+        INVALID
+    }
+
+    private final List<PlannedMigration> migrations;
+    private final List<String> orderViolations;
+
+    public MigrationPlan(List<PlannedMigration> migrations, List<String> orderViolations) {
+        this.migrations = Collections.unmodifiableList(migrations);
+        this.orderViolations = Collections.unmodifiableList(orderViolations);
+    }
+
+    public List<PlannedMigration> getMigrations() {
+        return migrations;
+    }
+
+    public List<PlannedMigration> getMigrations(Action action) {
+        return migrations.stream()
+                .filter(migration -> migration.getAction() == action)
+                .collect(Collectors.toList());
+    }
+
+    public List<PlannedMigration> getPending() {
+        return getMigrations(Action.APPLY_NEW);
+    }
+
+    public List<PlannedMigration> getChanged() {
+        return getMigrations(Action.APPLY_CHANGED);
+    }
+
+    public List<PlannedMigration> getAlways() {
+        return getMigrations(Action.APPLY_ALWAYS);
+    }
+
+    public List<PlannedMigration> getIgnored() {
+        return getMigrations(Action.IGNORED);
+    }
+
+    public List<PlannedMigration> getInvalid() {
+        return getMigrations(Action.INVALID);
+    }
+
+    /**
+     * @return deleted migrations and migrations, whose actual order differs from the logged run order
+     */
+    public List<String> getOrderViolations() {
+        return orderViolations;
+    }
+
+    /**
+     * @return migrations, which would be applied
+     */
+    public List<PlannedMigration> getToApply() {
+        return migrations.stream()
+                .filter(PlannedMigration::isToBeApplied)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 'run:always' migrations do not make changelog pending, as they are applied on every run
+     */
+    public Status getStatus() {
+        if (!orderViolations.isEmpty() || !getInvalid().isEmpty()) {
+            return Status.INVALID;
+        }
+        boolean pending = migrations.stream()
+                .anyMatch(migration -> migration.getAction() == Action.APPLY_NEW
+                        || migration.getAction() == Action.APPLY_CHANGED);
+        return pending ? Status.PENDING : Status.UP_TO_DATE;
+    }
+
+    /**
+     * @return sum of previous durations of migrations to be applied, migrations without history are not counted
+     */
+    public Duration getEstimatedDuration() {
+        return migrations.stream()
+                .filter(PlannedMigration::isToBeApplied)
+                .map(PlannedMigration::getEstimatedDuration)
+                .filter(duration -> duration != null)
+                .reduce(Duration.ZERO, Duration::plus);
+    }
+
+    @Override
+    public String toString() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Status: %s, %d to apply, estimated %s",
+                getStatus(), getToApply().size(), getEstimatedDuration()));
+        for (var migration : migrations) {
+            if (migration.getAction() != Action.UP_TO_DATE) {
+                lines.add(migration.toString());
+            }
+        }
+        orderViolations.forEach(violation -> lines.add("Order violation: " + violation));
+        return String.join("\n", lines);
+    }
+
+    public static class PlannedMigration {
+
+        private final String name;
+        private final long actualOrder;
+        private final RunStatus runStatus;
+        private final Action action;
+        private final String reason;
+        private final Duration estimatedDuration;
+
+        public PlannedMigration(String name,
+                                long actualOrder,
+                                RunStatus runStatus,
+                                Action action,
+                                String reason,
+                                Duration estimatedDuration) {
+            this.name = name;
+            this.actualOrder = actualOrder;
+            this.runStatus = runStatus;
+            this.action = action;
+            this.reason = reason;
+            this.estimatedDuration = estimatedDuration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getActualOrder() {
+            return actualOrder;
+        }
+
+        public RunStatus getRunStatus() {
+            return runStatus;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * @return why migration is invalid, 'null' for valid migrations
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * @return duration of the previous succeeded run, 'null' if migration was not run before
+         */
+        public Duration getEstimatedDuration() {
+            return estimatedDuration;
+        }
+
+        public boolean isToBeApplied() {
+            return action == Action.APPLY_NEW || action == Action.APPLY_CHANGED || action == Action.APPLY_ALWAYS;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s %s%s%s", actualOrder, name, action,
+                    estimatedDuration != null ? " ~" + estimatedDuration : "",
+                    reason != null ? ": " + reason : "");
+        }
+    }
+}
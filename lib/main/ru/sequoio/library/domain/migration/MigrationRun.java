@@ -0,0 +1,123 @@
+package ru.sequoio.library.domain.migration;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Single execution of a migration, appended to 'migration run' table <br/>
+ * Unlike 'migration log', which keeps the last state of each migration, runs are never updated
+ */
+public class MigrationRun {
+
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String runId;
+    private final String name;
+    private final String host;
+    private final Instant startedAt;
+    private final long startedAtNanos;
+    private final List<Long> rowsAffected = new ArrayList<>();
+
+    private Instant finishedAt;
+    private long durationMillis;
+    private Outcome outcome = Outcome.SUCCEEDED;
+    private boolean slow;
+
+    public static final String id_ = "id";
+    public static final String runId_ = "run_id";
+    public static final String name_ = "name";
+    public static final String startedAt_ = "started_at";
+    public static final String finishedAt_ = "finished_at";
+    public static final String durationMs_ = "duration_ms";
+    public static final String rowsAffected_ = "rows_affected";
+    public static final String outcome_ = "outcome";
+    public static final String slow_ = "slow";
+    public static final String host_ = "host";
+
+    public MigrationRun(String runId, String name, String host) {
+        this.runId = runId;
+        this.name = name;
+        this.host = host;
+        this.startedAt = Instant.now();
+        this.startedAtNanos = System.nanoTime();
+    }
+
+    public void addRowsAffected(int statement, long rows) {
+        while (rowsAffected.size() <= statement) {
+            rowsAffected.add(0L);
+        }
+        rowsAffected.set(statement, rows);
+    }
+
+    public void setFailed() {
+        this.outcome = Outcome.FAILED;
+    }
+
+    public void finish() {
+        this.finishedAt = Instant.now();
+        this.durationMillis = Duration.ofNanos(System.nanoTime() - startedAtNanos).toMillis();
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public void setSlow() {
+        this.slow = true;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public List<Long> getRowsAffected() {
+        return rowsAffected;
+    }
+
+    /**
+     * @return rows affected by each statement as JSON array, '-1' for statements without row count
+     */
+    public String getRowsAffectedJson() {
+        return rowsAffected.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isSucceeded() {
+        return outcome == Outcome.SUCCEEDED;
+    }
+
+    public boolean isSlow() {
+        return slow;
+    }
+}
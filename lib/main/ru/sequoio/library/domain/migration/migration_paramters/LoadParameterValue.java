@@ -0,0 +1,32 @@
+package ru.sequoio.library.domain.migration.migration_paramters;
+
+/**
+ * Format of data file, which is loaded into a table by the migration <br/>
+ * Data file is named after the migration title with format extension and is placed next to the migration file
+ */
+public enum LoadParameterValue implements ParameterValue<String> {
+    NONE("none"),
+    CSV("csv"),
+    TSV("tsv")
+    ;
+
+    private final String value;
+
+    LoadParameterValue(String value) {
+        this.value = value;
+    }
+
+    @Override
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public ParameterValue<String>[] parameterValues() {
+        return values();
+    }
+
+    public String getFileExtension() {
+        return "." + value;
+    }
+}
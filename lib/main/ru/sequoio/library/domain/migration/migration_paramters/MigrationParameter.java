@@ -1,7 +1,7 @@
 package ru.sequoio.library.domain.migration.migration_paramters;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -18,7 +18,8 @@ public enum MigrationParameter {
     FAIL_FAST("failFast", BooleanParameterValue.TRUE),
     RUN_AFTER("runAfter", StringParameterValue.EMPTY),
     RUN_BEFORE("runBefore", StringParameterValue.EMPTY),
-    ENVIRONMENT("env", StringParameterValue.EMPTY)
+    ENVIRONMENT("env", StringParameterValue.EMPTY),
+    LOAD("load", LoadParameterValue.NONE)
     ;
 
     /*
@@ -40,6 +41,10 @@ public enum MigrationParameter {
                     Arrays.stream(MigrationParameter.values())
                             .collect(Collectors.toMap(Function.identity(), MigrationParameter::getDefaultValue));
 
+    private final static Map<String, MigrationParameter> PARAMETERS_BY_NAME =
+                    Arrays.stream(MigrationParameter.values())
+                            .collect(Collectors.toMap(MigrationParameter::getName, Function.identity()));
+
     private final String name;
     private final ParameterValue defaultValue;
 
@@ -52,7 +57,14 @@ public enum MigrationParameter {
     }
 
     public static Map<MigrationParameter, ParameterValue> getDefaultValuesParametersMap() {
-        return new HashMap<>(DEFAULT_VALUE_PARAMETERS_MAP);
+        return new EnumMap<>(DEFAULT_VALUE_PARAMETERS_MAP);
+    }
+
+    /**
+     * @return parameter with the given name, 'null' if there is no such parameter
+     */
+    public static MigrationParameter byName(String name) {
+        return PARAMETERS_BY_NAME.get(name);
     }
 
     public ParameterValue parseValue(String paramValue) {
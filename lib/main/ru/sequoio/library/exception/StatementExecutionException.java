@@ -0,0 +1,25 @@
+package ru.sequoio.library.exception;
+
+public class StatementExecutionException extends SequoioException {
+
+    private final String migrationName;
+    private final int statementIndex;
+
+    public StatementExecutionException(String migrationName, int statementIndex, String statement, Throwable cause) {
+        super(String.format("Failed to execute statement #%d of migration %s: %s",
+                statementIndex + 1, migrationName, statement.strip()), cause);
+        this.migrationName = migrationName;
+        this.statementIndex = statementIndex;
+    }
+
+    public String getMigrationName() {
+        return migrationName;
+    }
+
+    /**
+     * @return zero-based index of the failed statement in the migration
+     */
+    public int getStatementIndex() {
+        return statementIndex;
+    }
+}
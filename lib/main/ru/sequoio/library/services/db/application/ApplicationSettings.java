@@ -0,0 +1,323 @@
+package ru.sequoio.library.services.db.application;
+
+import java.time.Duration;
+
+import ru.sequoio.library.services.db.application.execution.StatementExecutionMode;
+import ru.sequoio.library.services.db.lock.LockMode;
+import ru.sequoio.library.utils.HashAlgorithm;
+
+/**
+ * Tuning options of migration application
+ */
+public class ApplicationSettings {
+
+    private final StatementExecutionMode executionMode;
+    private final int parallelism;
+    private final int groupCommitMaxStatements;
+    private final Duration groupCommitMaxDuration;
+    private final LockMode lockMode;
+    private final Duration lockTimeout;
+    private final Duration lockLease;
+    private final int logFetchSize;
+    private final HashAlgorithm hashAlgorithm;
+    private final Duration followerTimeout;
+    private final boolean runHistoryEnabled;
+    private final double slowRunFactor;
+    private final Duration slowRunMinDuration;
+    private final boolean fingerprintEnabled;
+    private final int indexBuildParallelism;
+    private final String maintenanceWorkMem;
+    private final Integer maxParallelMaintenanceWorkers;
+
+    private ApplicationSettings(ApplicationSettingsBuilder builder) {
+        this.executionMode = builder.executionMode;
+        this.parallelism = builder.parallelism;
+        this.groupCommitMaxStatements = builder.groupCommitMaxStatements;
+        this.groupCommitMaxDuration = builder.groupCommitMaxDuration;
+        this.lockMode = builder.lockMode;
+        this.lockTimeout = builder.lockTimeout;
+        this.lockLease = builder.lockLease;
+        this.logFetchSize = builder.logFetchSize;
+        this.hashAlgorithm = builder.hashAlgorithm;
+        this.followerTimeout = builder.followerTimeout;
+        this.runHistoryEnabled = builder.runHistoryEnabled;
+        this.slowRunFactor = builder.slowRunFactor;
+        this.slowRunMinDuration = builder.slowRunMinDuration;
+        this.fingerprintEnabled = builder.fingerprintEnabled;
+        this.indexBuildParallelism = builder.indexBuildParallelism;
+        this.maintenanceWorkMem = builder.maintenanceWorkMem;
+        this.maxParallelMaintenanceWorkers = builder.maxParallelMaintenanceWorkers;
+    }
+
+    public StatementExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return groupCommitMaxStatements > 0;
+    }
+
+    public int getGroupCommitMaxStatements() {
+        return groupCommitMaxStatements;
+    }
+
+    public Duration getGroupCommitMaxDuration() {
+        return groupCommitMaxDuration;
+    }
+
+    public LockMode getLockMode() {
+        return lockMode;
+    }
+
+    public Duration getLockTimeout() {
+        return lockTimeout;
+    }
+
+    public Duration getLockLease() {
+        return lockLease;
+    }
+
+    public int getLogFetchSize() {
+        return logFetchSize;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public boolean isFollowerModeEnabled() {
+        return followerTimeout != null;
+    }
+
+    public Duration getFollowerTimeout() {
+        return followerTimeout;
+    }
+
+    public boolean isRunHistoryEnabled() {
+        return runHistoryEnabled;
+    }
+
+    public double getSlowRunFactor() {
+        return slowRunFactor;
+    }
+
+    public Duration getSlowRunMinDuration() {
+        return slowRunMinDuration;
+    }
+
+    public boolean isFingerprintEnabled() {
+        return fingerprintEnabled;
+    }
+
+    public int getIndexBuildParallelism() {
+        return indexBuildParallelism;
+    }
+
+    /**
+     * @return 'maintenance_work_mem' of index builds, 'null' keeps database setting
+     */
+    public String getMaintenanceWorkMem() {
+        return maintenanceWorkMem;
+    }
+
+    /**
+     * @return 'max_parallel_maintenance_workers' of index builds, 'null' keeps database setting
+     */
+    public Integer getMaxParallelMaintenanceWorkers() {
+        return maxParallelMaintenanceWorkers;
+    }
+
+    public static ApplicationSettings defaults() {
+        return builder().build();
+    }
+
+    public static ApplicationSettingsBuilder builder() {
+        return new ApplicationSettingsBuilder();
+    }
+
+    public static class ApplicationSettingsBuilder {
+
+        private StatementExecutionMode executionMode = StatementExecutionMode.SEQUENTIAL;
+        private int parallelism = 1;
+        private int groupCommitMaxStatements = 0;
+        private Duration groupCommitMaxDuration = Duration.ZERO;
+        private LockMode lockMode = LockMode.TABLE;
+        private Duration lockTimeout = MigrationApplicationServiceImpl.LOCK_WAIT_TIMEOUT;
+        private Duration lockLease = Duration.ofSeconds(30);
+        private int logFetchSize = 1000;
+        private HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
+        private Duration followerTimeout;
+        private boolean runHistoryEnabled = false;
+        private double slowRunFactor = 3;
+        private Duration slowRunMinDuration = Duration.ofSeconds(1);
+        private boolean fingerprintEnabled = false;
+        private int indexBuildParallelism = 1;
+        private String maintenanceWorkMem;
+        private Integer maxParallelMaintenanceWorkers;
+
+        /**
+         * Batch mode sends statements of a transactional migration as JDBC batches,
+         * statements which may return results are executed one by one between them. Default is sequential
+         */
+        public ApplicationSettingsBuilder executionMode(StatementExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Maximum number of connections used to apply independent migration clusters concurrently <br/>
+         * Clusters, which are not connected by 'runBefore' and 'runAfter' parameters and do not share a file,
+         * must not depend on each other. Default is 1, which applies all migrations serially
+         */
+        public ApplicationSettingsBuilder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Merges consecutive transactional migrations into one transaction,
+         * which is committed when it reaches either the number of statements or the duration
+         * (zero duration means no time limit) <br/>
+         * Disabled by default, each transactional migration is committed separately
+         */
+        public ApplicationSettingsBuilder groupCommit(int maxStatements, Duration maxDuration) {
+            this.groupCommitMaxStatements = maxStatements;
+            this.groupCommitMaxDuration = maxDuration;
+            return this;
+        }
+
+        public ApplicationSettingsBuilder lockMode(LockMode lockMode) {
+            this.lockMode = lockMode;
+            return this;
+        }
+
+        /**
+         * Maximum time to wait for migration lock held by another process
+         */
+        public ApplicationSettingsBuilder lockTimeout(Duration lockTimeout) {
+            this.lockTimeout = lockTimeout;
+            return this;
+        }
+
+        /**
+         * Duration of table lock lease, after which a lock of a dead process is taken over <br/>
+         * Lease is extended by heartbeat every third of its duration
+         */
+        public ApplicationSettingsBuilder lockLease(Duration lockLease) {
+            this.lockLease = lockLease;
+            return this;
+        }
+
+        /**
+         * Number of migration log rows fetched from database at once, while migration log is loaded
+         */
+        public ApplicationSettingsBuilder logFetchSize(int logFetchSize) {
+            this.logFetchSize = logFetchSize;
+            return this;
+        }
+
+        /**
+         * Algorithm of migration hashes, default is MD5 <br/>
+         * Records hashed with previous algorithm are compared by rehashing and are rewritten with the new one
+         */
+        public ApplicationSettingsBuilder hashAlgorithm(HashAlgorithm hashAlgorithm) {
+            this.hashAlgorithm = hashAlgorithm;
+            return this;
+        }
+
+        /**
+         * Enables follower mode: instance, which finds migration lock held by another instance,
+         * waits for its completion notification up to max wait and returns without re-processing the changelog,
+         * if the other instance applied the same changelog. Otherwise migrations are applied as usual,
+         * also right after the other instance failed or released the lock without notification
+         */
+        public ApplicationSettingsBuilder follower(Duration maxWait) {
+            this.followerTimeout = maxWait;
+            return this;
+        }
+
+        /**
+         * Enables 'migration run' table with a row per migration execution, which is used to estimate
+         * remaining time and to flag slow executions. The table is created on the first run with history enabled <br/>
+         * Disabled by default, so upgrade does not create new tables
+         */
+        public ApplicationSettingsBuilder runHistory(boolean enabled) {
+            this.runHistoryEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Execution is flagged as slow, if it took more than factor times its previous succeeded run
+         * and more than min duration, so fast migrations do not get flagged by noise <br/>
+         * Default is 3 times and 1 second
+         */
+        public ApplicationSettingsBuilder slowRun(double factor, Duration minDuration) {
+            this.slowRunFactor = factor;
+            this.slowRunMinDuration = minDuration;
+            return this;
+        }
+
+        /**
+         * Enables fast path: fingerprint of the applied changelog is stored after each successful run
+         * and startup returns without taking the lock, if the changelog has the same fingerprint. <br/>
+         * Changelog with 'run:always' migrations of the environment never takes the fast path.
+         * Fingerprint is kept in 'changelog fingerprint' table, which is created on the first run with fingerprint enabled.
+         * Followers recognize the applied changelog without notification only with fingerprint enabled <br/>
+         * Disabled by default, so upgrade does not create new tables
+         */
+        public ApplicationSettingsBuilder fingerprint(boolean enabled) {
+            this.fingerprintEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Tuning of concurrent index builds, which are always applied outside of transaction <br/>
+         * Builds of one migration on different tables are run on up to parallelism connections,
+         * which requires a data source. Memory (e.g. '1GB') and workers are set for the duration of builds,
+         * 'null' keeps database settings. Default is serial builds with database settings
+         */
+        public ApplicationSettingsBuilder indexBuilds(int parallelism,
+                                                      String maintenanceWorkMem,
+                                                      Integer maxParallelMaintenanceWorkers) {
+            this.indexBuildParallelism = parallelism;
+            this.maintenanceWorkMem = maintenanceWorkMem;
+            this.maxParallelMaintenanceWorkers = maxParallelMaintenanceWorkers;
+            return this;
+        }
+
+        public ApplicationSettings build() {
+            if (executionMode == null) {
+                throw new IllegalStateException("Execution mode is not set");
+            }
+            if (parallelism < 1) {
+                throw new IllegalStateException("Parallelism must be positive");
+            }
+            if (groupCommitMaxStatements < 0 || groupCommitMaxDuration == null || groupCommitMaxDuration.isNegative()) {
+                throw new IllegalStateException("Group commit limits must not be negative");
+            }
+            if (lockMode == null || lockTimeout == null || lockTimeout.isNegative()) {
+                throw new IllegalStateException("Lock mode and non-negative lock timeout must be set");
+            }
+            if (lockLease == null || lockLease.isNegative() || lockLease.isZero()) {
+                throw new IllegalStateException("Lock lease must be positive");
+            }
+            if (logFetchSize < 1) {
+                throw new IllegalStateException("Log fetch size must be positive");
+            }
+            if (hashAlgorithm == null) {
+                throw new IllegalStateException("Hash algorithm is not set");
+            }
+            if (slowRunFactor < 1 || slowRunMinDuration == null || slowRunMinDuration.isNegative()) {
+                throw new IllegalStateException("Slow run factor must be at least 1 and min duration must not be negative");
+            }
+            if (indexBuildParallelism < 1 || maxParallelMaintenanceWorkers != null && maxParallelMaintenanceWorkers < 0) {
+                throw new IllegalStateException("Index build parallelism must be positive and workers must not be negative");
+            }
+            return new ApplicationSettings(this);
+        }
+    }
+}
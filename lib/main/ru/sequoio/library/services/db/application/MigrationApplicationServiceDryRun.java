@@ -5,16 +5,34 @@ import org.slf4j.LoggerFactory;
 import ru.sequoio.library.domain.migration.Migration;
 import ru.sequoio.library.domain.graph.Graph;
 
+/**
+ * Logs migrations instead of applying them <br/>
+ * With a database, logs migration plan, which shows what would actually be applied
+ */
 public class MigrationApplicationServiceDryRun implements MigrationApplicationService {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(MigrationApplicationService.class);
 
+    private final MigrationPlanner migrationPlanner;
+
+    public MigrationApplicationServiceDryRun() {
+        this(null);
+    }
+
+    public MigrationApplicationServiceDryRun(MigrationPlanner migrationPlanner) {
+        this.migrationPlanner = migrationPlanner;
+    }
+
     private void applyMigration(Migration migration) {
         LOGGER.info("[DRY RUN] Processing migration: {}", migration.getName());
     }
 
     @Override
     public void applyMigrationsFromGraph(Graph<Migration> migrationGraph) {
+        if (migrationPlanner != null) {
+            LOGGER.info("[DRY RUN] {}", migrationPlanner.plan(migrationGraph));
+            return;
+        }
         migrationGraph.getOrderedNodes()
                 .forEach(this::applyMigration);
     }
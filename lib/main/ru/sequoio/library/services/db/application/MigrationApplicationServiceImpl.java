@@ -1,13 +1,27 @@
 package ru.sequoio.library.services.db.application;
 
-import java.sql.PreparedStatement;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -15,13 +29,25 @@ import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.ChangelogFingerprint;
 import ru.sequoio.library.domain.migration.Migration;
 import ru.sequoio.library.domain.migration.MigrationLock;
 import ru.sequoio.library.domain.migration.MigrationLog;
+import ru.sequoio.library.domain.migration.MigrationRun;
 import ru.sequoio.library.domain.migration.RunStatus;
+import ru.sequoio.library.domain.migration.migration_paramters.RunParameterValue;
 import ru.sequoio.library.domain.graph.Graph;
+import ru.sequoio.library.services.db.application.execution.ConcurrentIndexExecutor;
+import ru.sequoio.library.services.db.application.sieve.EnvironmentSieve;
 import ru.sequoio.library.services.db.application.sieve.SieveChain;
+import ru.sequoio.library.services.db.lock.AdvisoryLockStrategy;
+import ru.sequoio.library.services.db.lock.LockStrategy;
+import ru.sequoio.library.services.db.lock.TableLockStrategy;
 import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+import ru.sequoio.library.services.monitoring.MigrationListener;
+import ru.sequoio.library.services.monitoring.events.LockWaitEvent;
+import ru.sequoio.library.services.monitoring.events.LogLoadEvent;
 import ru.sequoio.library.utils.DBUtils;
 
 public class MigrationApplicationServiceImpl implements MigrationApplicationService {
@@ -30,15 +56,29 @@ public class MigrationApplicationServiceImpl implements MigrationApplicationServ
 
     public final static String MIGRATION_LOG_TABLE_NAME = "migration_log";
     public final static String MIGRATION_LOG_LOCK_TABLE_NAME = "migration_log_lock";
+    public final static String MIGRATION_RUN_TABLE_NAME = "migration_run";
+    public final static String CHANGELOG_FINGERPRINT_TABLE_NAME = "changelog_fingerprint";
     public final static Integer LOCK_WAIT_TIME_MS = 1000;
     public final static Integer LOCK_WAIT_COUNTER_THRESHOLD = 15;
+    public final static Duration LOCK_WAIT_TIMEOUT = Duration.ofMillis(LOCK_WAIT_TIME_MS * LOCK_WAIT_COUNTER_THRESHOLD);
+    public final static String FAILED_CHANGELOG_PAYLOAD_PREFIX = "failed:";
 
     private final QueryProvider queryProvider;
     private final SieveChain sieve;
+    private final EnvironmentSieve environmentSieve;
+    private final ApplicationSettings settings;
+    private final LockStrategy lockStrategy;
     private final DataSource dataSource;
+    private final Connection connection;
     private final String defaultSchema;
+    private final String environment;
+    private final MigrationListener listener;
+    private final ConcurrentIndexExecutor concurrentIndexExecutor;
 
     private Map<String, MigrationLog> migrationLog;
+    private MigrationSession session;
+    private MigrationRunHistory history;
+    private boolean lockHeld;
 
     public MigrationApplicationServiceImpl(
             DataSource dataSource,
@@ -46,32 +86,237 @@ public class MigrationApplicationServiceImpl implements MigrationApplicationServ
             QueryProvider queryProvider,
             String environment
     ) {
+        this(dataSource, null, defaultSchema, queryProvider, environment, ApplicationSettings.defaults());
+    }
+
+    /**
+     * Runs all migrations on caller-supplied connection, which is not closed afterwards
+     */
+    public MigrationApplicationServiceImpl(
+            Connection connection,
+            String defaultSchema,
+            QueryProvider queryProvider,
+            String environment
+    ) {
+        this(null, connection, defaultSchema, queryProvider, environment, ApplicationSettings.defaults());
+    }
+
+    /**
+     * Exactly one of data source and caller-supplied connection must be set
+     */
+    public MigrationApplicationServiceImpl(
+            DataSource dataSource,
+            Connection connection,
+            String defaultSchema,
+            QueryProvider queryProvider,
+            String environment,
+            ApplicationSettings settings
+    ) {
+        this(dataSource, connection, defaultSchema, queryProvider, environment, settings, MigrationListener.NONE);
+    }
+
+    public MigrationApplicationServiceImpl(
+            DataSource dataSource,
+            Connection connection,
+            String defaultSchema,
+            QueryProvider queryProvider,
+            String environment,
+            ApplicationSettings settings,
+            MigrationListener listener
+    ) {
+        if ((dataSource == null) == (connection == null)) {
+            throw new IllegalArgumentException("Either data source or connection must be set");
+        }
+        if (connection != null && settings.getParallelism() > 1) {
+            throw new IllegalArgumentException("Parallel application requires a data source");
+        }
         this.dataSource = dataSource;
+        this.connection = connection;
         this.defaultSchema = defaultSchema;
+        this.environment = environment;
         this.queryProvider = queryProvider;
         this.sieve = new SieveChain(environment);
+        this.environmentSieve = new EnvironmentSieve(environment);
+        this.settings = settings;
+        this.listener = listener;
+        this.lockStrategy = createLockStrategy();
+        this.concurrentIndexExecutor = new ConcurrentIndexExecutor(queryProvider, dataSource, settings);
+    }
+
+    private LockStrategy createLockStrategy() {
+        switch (settings.getLockMode()) {
+            case ADVISORY:
+                long lockKey = (defaultSchema + "." + MIGRATION_LOG_TABLE_NAME).hashCode();
+                return new AdvisoryLockStrategy(queryProvider, lockKey, settings.getLockTimeout());
+            case TABLE:
+                return new TableLockStrategy(queryProvider,
+                        MIGRATION_LOG_LOCK_TABLE_NAME,
+                        dataSource,
+                        Duration.ofMillis(LOCK_WAIT_TIME_MS),
+                        settings.getLockTimeout(),
+                        settings.getLockLease());
+            default:
+                throw new IllegalArgumentException("Unsupported lock mode: " + settings.getLockMode());
+        }
     }
 
     @Override
     public void applyMigrationsFromGraph(Graph<Migration> migrationGraph) {
         LOGGER.debug("Applying migrations from graph");
-        init();
-        setAndValidateActualOrder(migrationGraph);
-        tryApplyMigrations(migrationGraph);
-        validateNotAppliedMigrations();
-        terminate();
-    }
-
-    private void setAndValidateActualOrder(Graph<Migration> migrationGraph) {
-        AtomicLong idx = new AtomicLong(0);
-        var sortedOldMigrations = migrationGraph.getOrderedNodes().stream()
-                .peek(migration -> migration.setActualOrder(idx.getAndIncrement()))
-                .peek(this::setRunStatusAndMigrationLog)
-                .filter(Migration::isNotNew)
-                .sorted(Comparator.comparing(Migration::getActualOrder))
-                .map(Migration::getTitle)
-                .collect(Collectors.toList());
+        try (var session = openSession()) {
+            this.session = session;
+            this.lockHeld = false;
+            var changelogFingerprint = ChangelogFingerprint.of(migrationGraph.getOrderedNodes(), environment);
+            if (settings.isFingerprintEnabled() && isUpToDate(migrationGraph, changelogFingerprint)) {
+                return;
+            }
+            boolean succeeded = false;
+            String fingerprint = queryProvider.supportsNotifications() ? changelogFingerprint.getRoot() : null;
+            try {
+                if (settings.isFollowerModeEnabled() && fingerprint != null && awaitLeader(fingerprint)) {
+                    succeeded = true;
+                    return;
+                }
+                init();
+                var pendingMigrations = setAndValidateActualOrder(migrationGraph);
+                history = getMigrationRunHistory(pendingMigrations);
+                applyMigrations(migrationGraph, pendingMigrations);
+                validateNotAppliedMigrations();
+                if (settings.isFingerprintEnabled()) {
+                    storeFingerprint(changelogFingerprint);
+                }
+                if (fingerprint != null) {
+                    notifyFollowers(fingerprint);
+                }
+                succeeded = true;
+            } finally {
+                terminate(succeeded, fingerprint);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            this.session = null;
+            this.history = null;
+        }
+    }
+
+    private void applyMigrations(Graph<Migration> migrationGraph, List<Migration> pendingMigrations) {
+        listener.onRunStarted(pendingMigrations.size());
+        long runStartedAt = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            tryApplyMigrations(migrationGraph, pendingMigrations);
+            succeeded = true;
+        } finally {
+            listener.onRunFinished(succeeded, System.nanoTime() - runStartedAt);
+        }
+    }
+
+    /**
+     * Fast path: compares changelog with fingerprint of the last applied one by a single read without lock <br/>
+     * Changelog with 'run:always' migrations of the environment is never up to date.
+     * If fingerprints differ, changed ranges of migrations are found by subtree hashes
+     */
+    private boolean isUpToDate(Graph<Migration> migrationGraph, ChangelogFingerprint fingerprint) throws SQLException {
+        var alwaysRun = migrationGraph.getOrderedNodes().stream()
+                .filter(migration -> RunParameterValue.ALWAYS.equals(migration.getRunModifier())
+                        && !migration.getIgnored()
+                        && environmentSieve.sift(migration))
+                .findFirst();
+        if (alwaysRun.isPresent()) {
+            LOGGER.debug("Changelog has 'run:always' migration {}, fingerprint is not checked",
+                    alwaysRun.get().getName());
+            return false;
+        }
+
+        String appliedFingerprint;
+        List<String> appliedSubtrees;
+        var statement = session.prepare(queryProvider.getSelectChangelogFingerprintQuery(CHANGELOG_FINGERPRINT_TABLE_NAME));
+        try (var resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return false;
+            }
+            appliedFingerprint = resultSet.getString(ChangelogFingerprint.fingerprint_);
+            appliedSubtrees = ChangelogFingerprint.parseSubtrees(resultSet.getString(ChangelogFingerprint.subtrees_));
+        } catch (SQLException e) {
+            if (queryProvider.isUndefinedTable(e)) {
+                LOGGER.debug("'changelog fingerprint' table does not exist yet");
+                return false;
+            }
+            throw e;
+        }
+
+        if (fingerprint.getRoot().equals(appliedFingerprint)) {
+            LOGGER.info("[MIGRATION] Changelog {} is already applied, nothing to do", fingerprint);
+            return true;
+        }
+        var changedRanges = fingerprint.getChangedRanges(appliedSubtrees);
+        if (changedRanges.isEmpty()) {
+            LOGGER.info("[MIGRATION] Changelog was last applied for another environment");
+        } else {
+            LOGGER.info("[MIGRATION] Changelog differs from the last applied one in migrations {}", changedRanges);
+        }
+        return false;
+    }
+
+    /**
+     * Fingerprint is stored while the lock is held, after all migrations are applied and validated
+     */
+    private void storeFingerprint(ChangelogFingerprint fingerprint) throws SQLException {
+        if (!tableExists(CHANGELOG_FINGERPRINT_TABLE_NAME)) {
+            LOGGER.debug("Creating 'changelog fingerprint' table");
+            try (var statement = session.getConnection().createStatement()) {
+                statement.execute(queryProvider.getCreateChangelogFingerprintQuery(CHANGELOG_FINGERPRINT_TABLE_NAME));
+            }
+        }
+        LOGGER.debug("Storing changelog fingerprint {}", fingerprint);
+        var statement = session.prepare(queryProvider.getUpsertChangelogFingerprintPreparedQuery(CHANGELOG_FINGERPRINT_TABLE_NAME));
+        DBUtils.prepare(statement, List.of(
+                fingerprint.getRoot(),
+                fingerprint.getSubtreesAsString(),
+                (long) fingerprint.getMigrationsCount()));
+        statement.executeUpdate();
+    }
+
+    private MigrationSession openSession() throws SQLException {
+        return connection != null
+                ? MigrationSession.of(connection)
+                : MigrationSession.open(dataSource);
+    }
+
+    /**
+     * Migrations of the longest prefix of the graph, which is logged with the same order, hash and run modifier,
+     * are marked as applied without further checks. Only the rest of the graph is linked with migration log
+     * and validated against it, so boot cost depends on pending migrations rather than on changelog history
+     *
+     * @return migrations to be passed to the runner: 'run:always' migrations of the prefix and the rest of the graph
+     */
+    private List<Migration> setAndValidateActualOrder(Graph<Migration> migrationGraph) {
+        List<Migration> pendingMigrations = new ArrayList<>();
+        List<String> sortedOldMigrations = new ArrayList<>();
+        long idx = 0;
+        boolean inAppliedPrefix = true;
+        for (var migration : migrationGraph.getOrderedNodes()) {
+            migration.setActualOrder(idx++);
+            inAppliedPrefix = inAppliedPrefix && isLoggedUnchanged(migration);
+            if (inAppliedPrefix) {
+                linkUnchangedMigration(migration);
+                if (RunParameterValue.ALWAYS.equals(migration.getRunModifier())) {
+                    pendingMigrations.add(migration);
+                }
+                continue;
+            }
+            setRunStatusAndMigrationLog(migration);
+            if (migration.isNotNew()) {
+                sortedOldMigrations.add(migration.getTitle());
+            }
+            pendingMigrations.add(migration);
+        }
+        LOGGER.debug("{} of {} migrations are passed to the runner", pendingMigrations.size(), idx);
+
+        // log records of the prefix are linked to migrations, the rest have run order after the prefix
         var sortedLog = migrationLog.values().stream()
+                .filter(loggedMigration -> !loggedMigration.isLinked())
                 .sorted(Comparator.comparing(MigrationLog::getRunOrder))
                 .map(MigrationLog::getName)
                 .collect(Collectors.toList());
@@ -83,10 +328,208 @@ public class MigrationApplicationServiceImpl implements MigrationApplicationServ
             throw new IllegalStateException("Migration actual order have changed. " +
                     "Consider reviewing migrations with 'runBefore' and 'runAfter' parameters");
         }
+        return pendingMigrations;
+    }
+
+    /**
+     * @return true if migration is logged at its actual order with the same hash, hash algorithm and run modifier
+     */
+    private boolean isLoggedUnchanged(Migration migration) {
+        var loggedMigration = migrationLog.get(migration.getName());
+        return loggedMigration != null
+                && loggedMigration.getRunOrder() == migration.getActualOrder().longValue()
+                && migration.getHashAlgorithm().getName().equals(loggedMigration.getHashAlgorithm())
+                && migration.getRunModifier().getValueAsString().equals(loggedMigration.getRunModifier())
+                && migration.getHash().equals(loggedMigration.getHash());
+    }
+
+    /**
+     * Migration log record of unchanged migration is not rewritten, unless migration is run again
+     */
+    private void linkUnchangedMigration(Migration migration) {
+        var loggedMigration = migrationLog.get(migration.getName());
+        migration.setRunStatus(RunStatus.APPLIED);
+        migration.setLoggedMigration(loggedMigration);
+        loggedMigration.setLinked();
+        if (!RunParameterValue.ALWAYS.equals(migration.getRunModifier())) {
+            loggedMigration.setApplied();
+        }
+    }
+
+    private void tryApplyMigrations(Graph<Migration> migrationGraph, List<Migration> pendingMigrations) {
+        if (settings.getParallelism() > 1) {
+            tryApplyMigrationsInParallel(migrationGraph, pendingMigrations);
+        } else {
+            newRunner(session).run(pendingMigrations);
+        }
+    }
+
+    /**
+     * Applies independent parts of the graph concurrently, each on its own session <br/>
+     * Order inside each part is kept, actual order of migrations is already assigned,
+     * so 'run order' in migration log does not depend on scheduling
+     */
+    private void tryApplyMigrationsInParallel(Graph<Migration> migrationGraph, List<Migration> pendingMigrations) {
+        var units = getIndependentUnits(migrationGraph, new HashSet<>(pendingMigrations));
+        int threads = Math.min(settings.getParallelism(), units.size());
+        LOGGER.info("Applying {} independent migration sequences on {} connections", units.size(), threads);
+        if (threads <= 1) {
+            newRunner(session).run(pendingMigrations);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            for (var unit : units) {
+                completionService.submit(() -> {
+                    try (var unitSession = MigrationSession.open(dataSource)) {
+                        newRunner(unitSession).run(unit);
+                    }
+                    return null;
+                });
+            }
+            for (int i = 0; i < units.size(); i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // units still running after a failure are interrupted and awaited, as the lock is released next
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(LOCK_WAIT_TIME_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.info("Waiting for running migration sequences to stop...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits ordered graph into sequences, which can be applied independently <br/>
+     * Clusters are merged, if they have migrations from the same file,
+     * because migrations in a file implicitly depend on preceding ones <br/>
+     * Only pending migrations are kept in sequences, sequences without them are dropped
+     */
+    private List<List<Migration>> getIndependentUnits(Graph<Migration> migrationGraph, Set<Migration> pendingMigrations) {
+        var clusters = new ArrayList<>(migrationGraph.getOrderedClusters());
+        int[] parent = new int[clusters.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        Map<Path, Integer> fileToCluster = new HashMap<>();
+        for (int i = 0; i < clusters.size(); i++) {
+            for (var migration : clusters.get(i).getNodes()) {
+                Integer other = fileToCluster.putIfAbsent(migration.getPath(), i);
+                if (other != null) {
+                    parent[findUnit(parent, i)] = findUnit(parent, other);
+                }
+            }
+        }
+
+        Map<Integer, List<Migration>> units = new LinkedHashMap<>();
+        for (int i = 0; i < clusters.size(); i++) {
+            var unit = units.computeIfAbsent(findUnit(parent, i), k -> new ArrayList<>());
+            for (var migration : clusters.get(i).getNodes()) {
+                if (pendingMigrations.contains(migration)) {
+                    unit.add(migration);
+                }
+            }
+        }
+        return units.values().stream()
+                .filter(unit -> !unit.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private int findUnit(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
     }
 
-    private void tryApplyMigrations(Graph<Migration> migrationGraph) {
-        migrationGraph.getOrderedNodes().forEach(this::tryApplyMigration);
+    private MigrationRunner newRunner(MigrationSession session) {
+        return new MigrationRunner(session, queryProvider, sieve, lockStrategy, settings,
+                MIGRATION_LOG_TABLE_NAME, listener, history, concurrentIndexExecutor);
+    }
+
+    /**
+     * Creates 'migration run' table, if it does not exist, and loads the previous succeeded run
+     * of each migration, which is going to be applied. Estimated time of these migrations is logged
+     */
+    private MigrationRunHistory getMigrationRunHistory(List<Migration> pendingMigrations) throws SQLException {
+        if (!settings.isRunHistoryEnabled()) {
+            return MigrationRunHistory.disabled();
+        }
+        createMigrationRunIfNotExists();
+        var migrationsToApply = pendingMigrations.stream()
+                .filter(this::willBeApplied)
+                .collect(Collectors.toList());
+        Map<String, Long> previousDurations = new HashMap<>();
+        if (!migrationsToApply.isEmpty()) {
+            var conn = session.getConnection();
+            var statement = session.prepare(queryProvider.getSelectLastMigrationRunsPreparedQuery(MIGRATION_RUN_TABLE_NAME));
+            var names = migrationsToApply.stream().map(Migration::getName).toArray(String[]::new);
+            statement.setArray(1, conn.createArrayOf("text", names));
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    previousDurations.put(resultSet.getString(MigrationRun.name_),
+                            resultSet.getLong(MigrationRun.durationMs_));
+                }
+            }
+        }
+        var runHistory = new MigrationRunHistory(MIGRATION_RUN_TABLE_NAME,
+                UUID.randomUUID().toString(),
+                getHostName(),
+                previousDurations,
+                settings);
+        runHistory.logEstimate(migrationsToApply);
+        return runHistory;
+    }
+
+    /**
+     * Migration, which can not be sifted, fails the run, when it is reached, so it is not estimated
+     */
+    private boolean willBeApplied(Migration migration) {
+        try {
+            return sieve.sift(migration);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 'migration run' table is added to existing installations as well, so it is checked on every run
+     */
+    private void createMigrationRunIfNotExists() throws SQLException {
+        if (tableExists(MIGRATION_RUN_TABLE_NAME)) {
+            return;
+        }
+        LOGGER.debug("Creating 'migration run' table");
+        try (var statement = session.getConnection().createStatement()) {
+            statement.execute(queryProvider.getCreateMigrationRunQuery(MIGRATION_RUN_TABLE_NAME));
+        }
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
     }
 
     private void validateNotAppliedMigrations() {
@@ -113,61 +556,195 @@ public class MigrationApplicationServiceImpl implements MigrationApplicationServ
         }
     }
 
-    private void terminate() {
+    /**
+     * Lock is released after a failed run as well, as a pooled connection is not closed
+     * and would return to the pool still holding it <br/>
+     * Followers are notified about a failed run, so they take over without waiting for their timeout <br/>
+     * Failure to release the lock after a failed run does not hide the original failure
+     */
+    private void terminate(boolean succeeded, String fingerprint) {
         LOGGER.debug("Terminating Sequoio migration task");
+        if (!lockHeld) {
+            return;
+        }
         try {
-            releaseLock();
+            session.rollback();
+            lockStrategy.release(session);
+            lockHeld = false;
+            if (!succeeded && fingerprint != null) {
+                notifyFollowers(FAILED_CHANGELOG_PAYLOAD_PREFIX + fingerprint);
+            }
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            if (succeeded) {
+                throw new RuntimeException(e);
+            }
+            LOGGER.warn("Failed to release migration lock or to notify followers after failed run", e);
+        } catch (RuntimeException e) {
+            if (succeeded) {
+                throw e;
+            }
+            LOGGER.warn("Failed to release migration lock or to notify followers after failed run", e);
         }
     }
 
-    private void tryApplyMigration(Migration migration) {
-        LOGGER.info("[MIGRATION] Processing migration: {}", migration.getName());
+    /**
+     * Follower mode: if another process holds the lock, waits for its completion notification
+     * instead of waiting for the lock and re-processing the changelog <br/>
+     * Listening starts before the lock attempt, and the lock and the applied fingerprint are checked
+     * once more after it, so completion of the leader notified before listening can not be missed <br/>
+     * Lock is polled while waiting, so a leader, which failed without notification, is taken over
+     * as soon as its lock is released or expired
+     *
+     * @return 'true' if leader applied exactly the same changelog,
+     * 'false' if this process must apply migrations itself
+     */
+    private boolean awaitLeader(String fingerprint) throws SQLException {
+        if (lockStrategy.requiresLockTable()) {
+            if (!tableExists(MIGRATION_LOG_LOCK_TABLE_NAME)) {
+                return false;
+            }
+            upgradeMigrationLogLock();
+        }
+        var conn = session.getConnection();
+        String channel = getNotificationChannel();
+        try (var statement = conn.createStatement()) {
+            statement.execute(queryProvider.getListenQuery(channel));
+        }
         try {
-            boolean shouldBeApplied = sieve.sift(migration);
-            if (shouldBeApplied) {
-                applyMigration(migration);
+            if (lockStrategy.tryAcquire(session)) {
+                lockHeld = true;
+                return false;
             }
-            if (migration.getLoggedMigration() != null) {
-                updateMigrationLog(migration);
+            // leader could notify and release the lock between fast path and listening
+            if (settings.isFingerprintEnabled() && isFingerprintApplied(fingerprint)) {
+                LOGGER.info("Changelog {} was applied by another instance", fingerprint);
+                return true;
+            }
+            if (lockStrategy.tryAcquire(session)) {
+                lockHeld = true;
+                return false;
+            }
+            LOGGER.info("Migration lock is held by another instance, waiting for it to finish...");
+            long deadline = System.nanoTime() + settings.getFollowerTimeout().toNanos();
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                var payloads = queryProvider.awaitNotifications(conn,
+                        Duration.ofNanos(Math.min(remaining, Duration.ofMillis(LOCK_WAIT_TIME_MS).toNanos())));
+                if (payloads.isEmpty() && lockStrategy.tryAcquire(session)) {
+                    lockHeld = true;
+                    // leader could notify and release the lock between the wait and the lock attempt
+                    payloads = queryProvider.awaitNotifications(conn, Duration.ZERO);
+                    if (!payloads.contains(fingerprint)) {
+                        LOGGER.info("Migration lock was released without notification, applying changelog {}",
+                                fingerprint);
+                        return false;
+                    }
+                    lockStrategy.release(session);
+                    lockHeld = false;
+                }
+                if (payloads.contains(fingerprint)) {
+                    LOGGER.info("Changelog {} was applied by another instance", fingerprint);
+                    return true;
+                }
+                if (payloads.contains(FAILED_CHANGELOG_PAYLOAD_PREFIX + fingerprint)) {
+                    LOGGER.info("Another instance failed to apply changelog {}, taking over", fingerprint);
+                    return false;
+                }
+                if (!payloads.isEmpty()) {
+                    LOGGER.info("Another instance applied different changelog {}, " +
+                            "applying changelog {}", payloads, fingerprint);
+                    return false;
+                }
             }
-            else {
-                addMigrationLog(migration);
+            LOGGER.warn("Another instance did not finish in {}, applying changelog {}",
+                    settings.getFollowerTimeout(), fingerprint);
+            return false;
+        } finally {
+            try (var statement = conn.createStatement()) {
+                statement.execute(queryProvider.getUnlistenQuery(channel));
             }
-            migration.getLoggedMigration().setApplied();
+        }
+    }
+
+    private boolean isFingerprintApplied(String fingerprint) throws SQLException {
+        var statement = session.prepare(queryProvider.getSelectChangelogFingerprintQuery(CHANGELOG_FINGERPRINT_TABLE_NAME));
+        try (var resultSet = statement.executeQuery()) {
+            return resultSet.next() && fingerprint.equals(resultSet.getString(ChangelogFingerprint.fingerprint_));
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            if (queryProvider.isUndefinedTable(e)) {
+                return false;
+            }
+            throw e;
         }
     }
 
+    /**
+     * @param payload fingerprint of applied changelog or the one of failed changelog with 'failed:' prefix
+     */
+    private void notifyFollowers(String payload) throws SQLException {
+        LOGGER.debug("Notifying followers about changelog {}", payload);
+        var statement = session.prepare(queryProvider.getNotifyPreparedQuery());
+        DBUtils.prepare(statement, List.of(getNotificationChannel(), payload));
+        statement.execute();
+    }
+
+    private String getNotificationChannel() {
+        return "sequoio_" + defaultSchema;
+    }
+
+    private void acquireLock() throws SQLException, InterruptedException {
+        if (!lockHeld) {
+            var event = new LockWaitEvent();
+            event.begin();
+            long start = System.nanoTime();
+            lockStrategy.acquire(session);
+            lockHeld = true;
+            listener.onLockAcquired(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.lockMode = settings.getLockMode().name();
+                event.commit();
+            }
+        }
+    }
+
+    private boolean tableExists(String tableName) throws SQLException {
+        var statement = session.prepare(queryProvider.getTableExistsPreparedQuery());
+        DBUtils.prepare(statement, List.of(defaultSchema, tableName));
+        return DBUtils.executeIsPresentPreparedStatement(statement);
+    }
+
     /**
      * Checks if 'migration log' and 'migration log lock' tables exist <br/>
      * If they exist, acquire lock and return migration log <br/>
-     * Else create tables
+     * Else create tables <br/>
+     * Lock, which does not need lock table, is acquired before the check
      */
     private List<MigrationLog> getOrCreateMigrationLog() throws SQLException, InterruptedException {
+        if (!lockStrategy.requiresLockTable()) {
+            acquireLock();
+        }
         LOGGER.debug("Checking that 'migration log' and 'migration lock' exist...");
 
         boolean migrationLogExists, migrationLogLockExists;
 
-        try (var conn = dataSource.getConnection()) {
-            var statement = conn.prepareStatement(queryProvider.getTableExistsPreparedQuery());
-
-            DBUtils.prepare(statement, List.of(defaultSchema, MIGRATION_LOG_TABLE_NAME));
-            migrationLogExists = DBUtils.executeIsPresentPreparedStatement(statement);
-
-            DBUtils.prepare(statement, List.of(defaultSchema, MIGRATION_LOG_LOCK_TABLE_NAME));
-            migrationLogLockExists = DBUtils.executeIsPresentPreparedStatement(statement);
-        }
+        migrationLogExists = tableExists(MIGRATION_LOG_TABLE_NAME);
+        migrationLogLockExists = tableExists(MIGRATION_LOG_LOCK_TABLE_NAME);
 
         if (migrationLogExists && migrationLogLockExists) {
             LOGGER.debug("Both 'migration log' and 'migration lock' are present!");
-            acquireLock();
+            upgradeMigrationLogLock();
+            if (lockStrategy.requiresLockTable()) {
+                acquireLock();
+            }
+            upgradeMigrationLog();
             return getMigrationLog();
         } else if (!migrationLogExists && !migrationLogLockExists) {
             LOGGER.debug("Both 'migration log' and 'migration lock' are not present!");
             createMigrationLogAndLock();
+            if (lockStrategy.requiresLockTable()) {
+                acquireLock();
+            }
             return List.of();
         } else { // one missing
             String missingTable = migrationLogExists ? MIGRATION_LOG_LOCK_TABLE_NAME : MIGRATION_LOG_TABLE_NAME;
@@ -177,92 +754,71 @@ public class MigrationApplicationServiceImpl implements MigrationApplicationServ
     }
 
     /**
-     * Checks if lock is released now and, if so, acquires lock <br/>
-     * Runs in single transaction <br/>
-     *
-     * @return 'true' if lock acquired successfully, 'false' otherwise
+     * Streams migration log through a cursor, fetching configured number of rows at once <br/>
+     * Cursor requires a transaction, which is committed right after the log is read
      */
-    private boolean tryAcquireLock(int attempt) throws SQLException {
-        LOGGER.info("Trying to acquire lock. Attempt {}...", attempt);
-        try (var conn = dataSource.getConnection()) {
-            conn.setAutoCommit(false);
-            var isLockedPreparedQuery = queryProvider.getIsLockedPreparedQuery(MIGRATION_LOG_LOCK_TABLE_NAME);
-            var isLockedStatement = conn.prepareStatement(isLockedPreparedQuery);
-            var locked = DBUtils.executeBooleanPreparedStatement(isLockedStatement, MigrationLock.locked_);
-            if (locked) {
-                conn.commit();
-                LOGGER.debug("Failed to acquire lock. Already locked!");
-                return false;
+    private List<MigrationLog> getMigrationLog() throws SQLException {
+        LOGGER.debug("Getting migration log");
+        List<MigrationLog> migrationLog = new ArrayList<>();
+
+        var selectMigrationLogQuery = queryProvider.getSelectMigrationLogPreparedQuery(MIGRATION_LOG_TABLE_NAME);
+        var selectMigrationLogStatement = session.prepare(selectMigrationLogQuery);
+        selectMigrationLogStatement.setFetchSize(settings.getLogFetchSize());
+        var event = new LogLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        session.begin();
+        try (var resultSet = selectMigrationLogStatement.executeQuery()) {
+            while (resultSet.next()) {
+                migrationLog.add(
+                        new MigrationLog(
+                                resultSet.getString(MigrationLog.runModifier_),
+                                resultSet.getString(MigrationLog.name_),
+                                resultSet.getString(MigrationLog.hash_),
+                                resultSet.getString(MigrationLog.hashAlgorithm_),
+                                resultSet.getLong(MigrationLog.runOrder_)
+                        )
+                );
             }
-            var acquireLockStatement = conn.prepareStatement(queryProvider.getAcquireLockPreparedQuery(MIGRATION_LOG_LOCK_TABLE_NAME));
-            acquireLockStatement.execute();
-            conn.commit();
-            LOGGER.info("Lock acquired!");
-            return true;
         }
-    }
-
-    /**
-     * Acquires lock with some number of retries and some delay time between tries
-     */
-    private void acquireLock() throws SQLException, InterruptedException {
-        LOGGER.debug("Acquiring lock");
-        int attempt = 0;
-        while (!tryAcquireLock(attempt)) {
-            attempt++;
-            if (attempt >= LOCK_WAIT_COUNTER_THRESHOLD) {
-                throw new IllegalStateException(String.format("Could not acquire lock in %d seconds", attempt * LOCK_WAIT_TIME_MS / 1000));
-            }
-            Thread.sleep(LOCK_WAIT_TIME_MS);
+        session.commit();
+        listener.onLogLoaded(migrationLog.size(), System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.records = migrationLog.size();
+            event.commit();
         }
+        LOGGER.debug("Loaded {} migration log records", migrationLog.size());
+        return migrationLog;
     }
 
     /**
-     * Releases lock
+     * Adds hash algorithm column to 'migration log' table created by previous versions
      */
-    private void releaseLock() throws SQLException {
-        LOGGER.debug("Releasing lock");
-        try (var conn = dataSource.getConnection()) {
-            var releaseLockQuery = queryProvider.getReleaseLockPreparedQuery(MIGRATION_LOG_LOCK_TABLE_NAME);
-            var releaseLockStatement  = conn.prepareStatement(releaseLockQuery);
-            releaseLockStatement.execute();
+    private void upgradeMigrationLog() throws SQLException {
+        var statement = session.prepare(queryProvider.getColumnExistsPreparedQuery());
+        DBUtils.prepare(statement, List.of(defaultSchema, MIGRATION_LOG_TABLE_NAME, MigrationLog.hashAlgorithm_));
+        if (DBUtils.executeIsPresentPreparedStatement(statement)) {
+            return;
+        }
+        LOGGER.info("Upgrading '{}' table with hash algorithm column", MIGRATION_LOG_TABLE_NAME);
+        try (var upgradeStatement = session.getConnection().createStatement()) {
+            upgradeStatement.execute(queryProvider.getUpgradeMigrationLogQuery(MIGRATION_LOG_TABLE_NAME));
         }
     }
 
     /**
-     * Loads a migration log and maps it to POJOs <br/>
-     *
-     * @return loaded migration log
+     * Adds lease columns to 'migration log lock' table created by previous versions
      */
-    private List<MigrationLog> getMigrationLog() throws SQLException {
-        LOGGER.debug("Getting migration log");
-        try (var conn = dataSource.getConnection()) {
-            List<MigrationLog> migrationLog = new ArrayList<>();
-
-            var selectMigrationLogQuery = queryProvider.getSelectMigrationLogPreparedQuery(MIGRATION_LOG_TABLE_NAME);
-            var selectMigrationLogStatement = conn.prepareStatement(selectMigrationLogQuery);
-            var resultSet = selectMigrationLogStatement.executeQuery();
-            resultSet.next();
-            if (!resultSet.isFirst()) {
-                return migrationLog;
-            }
-            do {
-                migrationLog.add(
-                        new MigrationLog(
-                                resultSet.getTimestamp(MigrationLog.createdAt_).toInstant(),
-                                resultSet.getTimestamp(MigrationLog.lastExecutedAt_).toInstant(),
-                                resultSet.getString(MigrationLog.runModifier_),
-                                resultSet.getString(MigrationLog.author_),
-                                resultSet.getString(MigrationLog.name_),
-                                resultSet.getString(MigrationLog.filename_),
-                                resultSet.getString(MigrationLog.hash_),
-                                resultSet.getLong(MigrationLog.runOrder_),
-                                resultSet.getString(MigrationLog.userDefinedParamsJson_)
-                        )
-                );
-            } while (resultSet.next());
-
-            return migrationLog;
+    private void upgradeMigrationLogLock() throws SQLException {
+        var statement = session.prepare(queryProvider.getColumnExistsPreparedQuery());
+        DBUtils.prepare(statement, List.of(defaultSchema, MIGRATION_LOG_LOCK_TABLE_NAME, MigrationLock.fencingToken_));
+        if (DBUtils.executeIsPresentPreparedStatement(statement)) {
+            return;
+        }
+        LOGGER.info("Upgrading '{}' table to lease-based lock", MIGRATION_LOG_LOCK_TABLE_NAME);
+        try (var upgradeStatement = session.getConnection().createStatement()) {
+            upgradeStatement.execute(queryProvider.getUpgradeMigrationLogLockQuery(MIGRATION_LOG_LOCK_TABLE_NAME));
         }
     }
 
@@ -271,114 +827,29 @@ public class MigrationApplicationServiceImpl implements MigrationApplicationServ
      */
     private void createMigrationLogAndLock() throws SQLException {
         LOGGER.debug("Creating 'migration log' and 'migration lock' tables");
-        try(var conn = dataSource.getConnection()) {
-            String createMigrationLogAndLockTablesQuery = queryProvider.getCreateMigrationLogAndMigrationLogLockQuery(
-                    MIGRATION_LOG_TABLE_NAME,
-                    MIGRATION_LOG_LOCK_TABLE_NAME
-            );
-            var statement = conn.prepareStatement(createMigrationLogAndLockTablesQuery);
+        var conn = session.getConnection();
+        String createMigrationLogAndLockTablesQuery = queryProvider.getCreateMigrationLogAndMigrationLogLockQuery(
+                MIGRATION_LOG_TABLE_NAME,
+                MIGRATION_LOG_LOCK_TABLE_NAME
+        );
+        try (var statement = conn.prepareStatement(createMigrationLogAndLockTablesQuery)) {
             statement.execute();
         }
     }
 
-    private void applyMigration(Migration migration) {
-        LOGGER.debug("Applying migration: {}", migration.getName());
-        try {
-            List<String> statements = migration.getStatements();
-            if (migration.isTransactional()) {
-                try (var conn = dataSource.getConnection()) {
-                    conn.setAutoCommit(false);
-                    for (String statement : statements) {
-                        PreparedStatement preparedStatement = conn.prepareStatement(statement);
-                        preparedStatement.execute();
-                    }
-                    conn.commit();
-                }
-            } else {
-                try (var conn = dataSource.getConnection()) {
-                    for (String statement : statements) {
-                        PreparedStatement preparedStatement = conn.prepareStatement(statement);
-                        preparedStatement.execute();
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            if (migration.isFailOnError()) {
-                throw new RuntimeException(e);
-            } else {
-                LOGGER.warn("Failed to apply migration: {}", migration.getName(), e);
-            }
-        }
-    }
-
-    private void addMigrationLog(Migration migration) throws SQLException {
-        LOGGER.debug("Adding new migration log record for migration {}", migration.getName());
-        MigrationLog migrationLog = new MigrationLog(
-                migration.getRunModifier().getValueAsString(),
-                migration.getAuthor(),
-                migration.getTitle(),
-                migration.getPath().toString(),
-                migration.getHash(),
-                migration.getActualOrder(),
-                migration.getUserDefinedParams());
-
-        try (var conn = dataSource.getConnection()) {
-            String query = queryProvider.getInsertMigrationLogQuery(MIGRATION_LOG_TABLE_NAME);
-            var statement = conn.prepareStatement(query);
-            DBUtils.prepare(statement,
-                List.of(
-                    migrationLog.getName(),
-                    migrationLog.getFilename(),
-                    migrationLog.getAuthor(),
-                    migrationLog.getRunModifier(),
-                    migrationLog.getRunOrder(),
-                    migrationLog.getHash(),
-                    migrationLog.getUserDefinedParamsJson()
-                ));
-            statement.executeUpdate();
-        }
-
-        migration.setLoggedMigration(migrationLog);
-    }
-
-    private void updateMigrationLog(Migration migration) throws SQLException {
-        LOGGER.debug("Updating migration log record for migration {}", migration.getName());
-        migration.updateMigrationLog();
-        MigrationLog migrationLog = migration.getLoggedMigration();
-
-        try (var conn = dataSource.getConnection()) {
-            String query = queryProvider.getUpdateMigrationLogPreparedQuery(MIGRATION_LOG_TABLE_NAME);
-            var statement = conn.prepareStatement(query);
-            DBUtils.prepare(statement,
-                    List.of(
-                        migrationLog.getFilename(),
-                        migrationLog.getAuthor(),
-                        migrationLog.getRunModifier(),
-                        migrationLog.getRunOrder(),
-                        migrationLog.getHash(),
-                        migrationLog.getUserDefinedParamsJson(),
-                        migrationLog.getName()
-                    )
-            );
-            statement.executeUpdate();
-        }
-    }
-
+    /**
+     * Record hashed with another algorithm is compared with migration rehashed by that algorithm <br/>
+     * The record gets migration hash and algorithm, when it is updated, so stored hashes migrate transparently
+     */
     private void setRunStatusAndMigrationLog(Migration migration) {
         LOGGER.debug("Setting run status and migration log for migration {}", migration.getName());
 
         var loggedMigration = migrationLog.get(migration.getName());
-        if (loggedMigration == null) {
-            migration.setRunStatus(RunStatus.NEW);
-        }
-        else if (loggedMigration.getHash().equals(migration.getHash())) {
-            migration.setRunStatus(RunStatus.APPLIED);
-        }
-        else {
-            migration.setRunStatus(RunStatus.BODY_CHANGED);
+        if (loggedMigration != null && !migration.getHashAlgorithm().getName().equals(loggedMigration.getHashAlgorithm())) {
+            LOGGER.debug("Migration {} is logged with {} hash, rehashing", migration.getName(),
+                    loggedMigration.getHashAlgorithm());
         }
+        migration.setRunStatusAndMigrationLog(loggedMigration);
         LOGGER.debug("Migration {} has '{}' run status", migration.getName(), migration.getRunStatus());
-
-        migration.setLoggedMigration(loggedMigration);
     }
 }
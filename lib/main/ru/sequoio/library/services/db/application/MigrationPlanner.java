@@ -0,0 +1,228 @@
+package ru.sequoio.library.services.db.application;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.graph.Graph;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.MigrationLog;
+import ru.sequoio.library.domain.migration.MigrationPlan;
+import ru.sequoio.library.domain.migration.MigrationPlan.Action;
+import ru.sequoio.library.domain.migration.MigrationPlan.PlannedMigration;
+import ru.sequoio.library.domain.migration.MigrationRun;
+import ru.sequoio.library.services.db.application.sieve.EnvironmentSieve;
+import ru.sequoio.library.services.db.application.sieve.IgnoreSieve;
+import ru.sequoio.library.services.db.application.sieve.RunSieve;
+import ru.sequoio.library.services.db.application.sieve.SieveChain;
+import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+import ru.sequoio.library.utils.DBUtils;
+
+/**
+ * Builds migration plan by reading 'migration log' and 'migration run' tables without taking the lock <br/>
+ * Nothing is written, so plans can be built concurrently with each other and with a running migration,
+ * each plan on its own session. Plan built during migration reflects committed migrations only
+ */
+public class MigrationPlanner {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MigrationPlanner.class);
+
+    private final DataSource dataSource;
+    private final Connection connection;
+    private final String defaultSchema;
+    private final QueryProvider queryProvider;
+    private final ApplicationSettings settings;
+    private final SieveChain sieveChain;
+
+    /**
+     * Exactly one of data source and caller-supplied connection must be set
+     */
+    public MigrationPlanner(DataSource dataSource,
+                            Connection connection,
+                            String defaultSchema,
+                            QueryProvider queryProvider,
+                            String environment,
+                            ApplicationSettings settings) {
+        if ((dataSource == null) == (connection == null)) {
+            throw new IllegalArgumentException("Either data source or connection must be set");
+        }
+        this.dataSource = dataSource;
+        this.connection = connection;
+        this.defaultSchema = defaultSchema;
+        this.queryProvider = queryProvider;
+        this.settings = settings;
+        this.sieveChain = new SieveChain(environment);
+    }
+
+    /**
+     * Actual order, run status and log record are set on copies of migrations,
+     * so the graph is not changed and can be applied afterwards
+     */
+    public MigrationPlan plan(Graph<Migration> migrationGraph) {
+        LOGGER.debug("Planning migrations from graph");
+        try (var session = connection != null ? MigrationSession.of(connection) : MigrationSession.open(dataSource)) {
+            var migrationLog = getMigrationLog(session);
+            var orderedMigrations = migrationGraph.getOrderedNodes().stream()
+                    .map(Migration::copy)
+                    .collect(Collectors.toList());
+            long idx = 0;
+            for (var migration : orderedMigrations) {
+                migration.setActualOrder(idx++);
+                migration.setRunStatusAndMigrationLog(migrationLog.get(migration.getName()));
+            }
+
+            Map<Migration, Action> actions = new HashMap<>();
+            Map<Migration, String> reasons = new HashMap<>();
+            for (var migration : orderedMigrations) {
+                try {
+                    actions.put(migration, getAction(migration));
+                } catch (RuntimeException e) {
+                    actions.put(migration, Action.INVALID);
+                    reasons.put(migration, e.getMessage());
+                }
+            }
+
+            var estimates = getPreviousDurations(session, orderedMigrations.stream()
+                    .filter(migration -> isToBeApplied(actions.get(migration)))
+                    .map(Migration::getName)
+                    .collect(Collectors.toList()));
+
+            List<PlannedMigration> plannedMigrations = new ArrayList<>(orderedMigrations.size());
+            for (var migration : orderedMigrations) {
+                var action = actions.get(migration);
+                plannedMigrations.add(new PlannedMigration(
+                        migration.getName(),
+                        migration.getActualOrder(),
+                        migration.getRunStatus(),
+                        action,
+                        reasons.get(migration),
+                        isToBeApplied(action) ? estimates.get(migration.getName()) : null));
+            }
+            return new MigrationPlan(plannedMigrations, getOrderViolations(orderedMigrations, migrationLog));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Same sieve chain as migration runner uses, action is named after the rejecting sieve
+     */
+    private Action getAction(Migration migration) {
+        var rejectingSieve = sieveChain.getRejectingSieve(migration);
+        if (rejectingSieve instanceof IgnoreSieve) {
+            return Action.IGNORED;
+        }
+        if (rejectingSieve instanceof EnvironmentSieve) {
+            return Action.OTHER_ENVIRONMENT;
+        }
+        if (rejectingSieve instanceof RunSieve) {
+            return Action.UP_TO_DATE;
+        }
+        switch (migration.getRunStatus()) {
+            case NEW:
+                return Action.APPLY_NEW;
+            case BODY_CHANGED:
+                return Action.APPLY_CHANGED;
+            default:
+                return Action.APPLY_ALWAYS;
+        }
+    }
+
+    private static boolean isToBeApplied(Action action) {
+        return action == Action.APPLY_NEW || action == Action.APPLY_CHANGED || action == Action.APPLY_ALWAYS;
+    }
+
+    /**
+     * Applied migrations must keep their logged run order and every logged migration must be in changelog
+     */
+    private List<String> getOrderViolations(List<Migration> orderedMigrations, Map<String, MigrationLog> migrationLog) {
+        List<String> violations = new ArrayList<>();
+        var names = orderedMigrations.stream().map(Migration::getName).collect(Collectors.toSet());
+        migrationLog.values().stream()
+                .map(MigrationLog::getName)
+                .filter(name -> !names.contains(name))
+                .sorted()
+                .forEach(name -> violations.add(String.format("Migration %s is logged, but missing in changelog", name)));
+
+        var appliedOrder = orderedMigrations.stream()
+                .filter(Migration::isNotNew)
+                .map(Migration::getName)
+                .collect(Collectors.toList());
+        var loggedOrder = migrationLog.values().stream()
+                .filter(loggedMigration -> names.contains(loggedMigration.getName()))
+                .sorted(Comparator.comparing(MigrationLog::getRunOrder))
+                .map(MigrationLog::getName)
+                .collect(Collectors.toList());
+        for (int i = 0; i < appliedOrder.size(); i++) {
+            if (!appliedOrder.get(i).equals(loggedOrder.get(i))) {
+                violations.add(String.format("Migration %s is ordered at position %d of applied migrations, " +
+                        "but migration %s was applied there", appliedOrder.get(i), i, loggedOrder.get(i)));
+                break;
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Missing 'migration log' table means that nothing was applied yet
+     */
+    private Map<String, MigrationLog> getMigrationLog(MigrationSession session) throws SQLException {
+        Map<String, MigrationLog> migrationLog = new HashMap<>();
+        if (!tableExists(session, MigrationApplicationServiceImpl.MIGRATION_LOG_TABLE_NAME)) {
+            return migrationLog;
+        }
+        var statement = session.prepare(queryProvider.getSelectMigrationLogPreparedQuery(
+                MigrationApplicationServiceImpl.MIGRATION_LOG_TABLE_NAME));
+        statement.setFetchSize(settings.getLogFetchSize());
+        session.begin();
+        try (var resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                var loggedMigration = new MigrationLog(
+                        resultSet.getString(MigrationLog.runModifier_),
+                        resultSet.getString(MigrationLog.name_),
+                        resultSet.getString(MigrationLog.hash_),
+                        resultSet.getString(MigrationLog.hashAlgorithm_),
+                        resultSet.getLong(MigrationLog.runOrder_));
+                migrationLog.put(loggedMigration.getName(), loggedMigration);
+            }
+        }
+        session.commit();
+        LOGGER.debug("Loaded {} migration log records", migrationLog.size());
+        return migrationLog;
+    }
+
+    private Map<String, Duration> getPreviousDurations(MigrationSession session, List<String> names) throws SQLException {
+        Map<String, Duration> durations = new HashMap<>();
+        if (names.isEmpty() || !tableExists(session, MigrationApplicationServiceImpl.MIGRATION_RUN_TABLE_NAME)) {
+            return durations;
+        }
+        var conn = session.getConnection();
+        var statement = session.prepare(queryProvider.getSelectLastMigrationRunsPreparedQuery(
+                MigrationApplicationServiceImpl.MIGRATION_RUN_TABLE_NAME));
+        statement.setArray(1, conn.createArrayOf("text", names.toArray(String[]::new)));
+        try (var resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                durations.put(resultSet.getString(MigrationRun.name_),
+                        Duration.ofMillis(resultSet.getLong(MigrationRun.durationMs_)));
+            }
+        }
+        return durations;
+    }
+
+    private boolean tableExists(MigrationSession session, String tableName) throws SQLException {
+        var statement = session.prepare(queryProvider.getTableExistsPreparedQuery());
+        DBUtils.prepare(statement, List.of(defaultSchema, tableName));
+        return DBUtils.executeIsPresentPreparedStatement(statement);
+    }
+}
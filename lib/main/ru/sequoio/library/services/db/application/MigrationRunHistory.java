@@ -0,0 +1,109 @@
+package ru.sequoio.library.services.db.application;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.MigrationRun;
+
+/**
+ * History of migration executions, kept in 'migration run' table <br/>
+ * Holds id of the current run and durations of the previous succeeded run of each pending migration,
+ * which are used to estimate remaining time and to flag executions much slower than the previous one
+ */
+public class MigrationRunHistory {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MigrationApplicationService.class);
+
+    private static final MigrationRunHistory DISABLED = new MigrationRunHistory(null, null, null, Map.of(), null);
+
+    private final String tableName;
+    private final String runId;
+    private final String host;
+    private final Map<String, Long> previousDurationsMillis;
+    private final ApplicationSettings settings;
+
+    public MigrationRunHistory(String tableName,
+                               String runId,
+                               String host,
+                               Map<String, Long> previousDurationsMillis,
+                               ApplicationSettings settings) {
+        this.tableName = tableName;
+        this.runId = runId;
+        this.host = host;
+        this.previousDurationsMillis = previousDurationsMillis;
+        this.settings = settings;
+    }
+
+    public static MigrationRunHistory disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return tableName != null;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * @return execution of the migration started now, 'null' if history is disabled
+     */
+    public MigrationRun start(Migration migration) {
+        return isEnabled() ? new MigrationRun(runId, migration.getName(), host) : null;
+    }
+
+    /**
+     * Finishes execution and flags it as slow, if it took more than configured factor of the previous run
+     */
+    public void finish(MigrationRun run) {
+        if (run == null || run.isFinished()) {
+            return;
+        }
+        run.finish();
+        Long previous = previousDurationsMillis.get(run.getName());
+        if (run.isSucceeded() && previous != null
+                && run.getDurationMillis() > settings.getSlowRunMinDuration().toMillis()
+                && run.getDurationMillis() > previous * settings.getSlowRunFactor()) {
+            run.setSlow();
+            LOGGER.warn("[MIGRATION] Migration {} took {} ms, which is {} times longer than its previous run ({} ms)",
+                    run.getName(), run.getDurationMillis(),
+                    String.format("%.1f", (double) run.getDurationMillis() / Math.max(previous, 1)), previous);
+        }
+    }
+
+    /**
+     * Logs expected duration of migrations to be applied, which is a sum of their previous durations <br/>
+     * Migrations without previous runs are counted separately, as their duration is unknown
+     */
+    public void logEstimate(Collection<Migration> migrations) {
+        if (!isEnabled() || migrations.isEmpty()) {
+            return;
+        }
+        long estimateMillis = 0;
+        int unknown = 0;
+        for (var migration : migrations) {
+            Long previous = previousDurationsMillis.get(migration.getName());
+            if (previous == null) {
+                unknown++;
+            } else {
+                estimateMillis += previous;
+            }
+        }
+        if (unknown == migrations.size()) {
+            LOGGER.info("[MIGRATION] {} migrations to apply, none of them was run before", migrations.size());
+        } else {
+            LOGGER.info("[MIGRATION] {} migrations to apply, estimated time is {} by previous runs{}",
+                    migrations.size(), Duration.ofMillis(estimateMillis),
+                    unknown > 0 ? String.format(", %d of them were not run before", unknown) : "");
+        }
+    }
+}
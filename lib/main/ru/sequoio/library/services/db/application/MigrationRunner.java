@@ -0,0 +1,398 @@
+package ru.sequoio.library.services.db.application;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.MigrationLog;
+import ru.sequoio.library.domain.migration.MigrationRun;
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.db.application.execution.ConcurrentIndexExecutor;
+import ru.sequoio.library.services.db.application.execution.CopyDataLoader;
+import ru.sequoio.library.services.db.application.execution.SequentialStatementExecutor;
+import ru.sequoio.library.services.db.application.execution.StatementExecutor;
+import ru.sequoio.library.services.db.application.sieve.SieveChain;
+import ru.sequoio.library.services.db.lock.LockStrategy;
+import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+import ru.sequoio.library.services.monitoring.MigrationListener;
+import ru.sequoio.library.services.monitoring.events.MigrationEvent;
+import ru.sequoio.library.utils.DBUtils;
+
+/**
+ * Applies a sequence of ordered migrations and writes their log records on a single session <br/>
+ * Not thread-safe, each concurrently applied sequence must have its own runner and session
+ */
+public class MigrationRunner {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MigrationApplicationService.class);
+
+    private final MigrationSession session;
+    private final QueryProvider queryProvider;
+    private final SieveChain sieve;
+    private final LockStrategy lockStrategy;
+    private final ApplicationSettings settings;
+    private final StatementExecutor sequentialExecutor;
+    private final ConcurrentIndexExecutor concurrentIndexExecutor;
+    private final CopyDataLoader copyDataLoader;
+    private final String migrationLogTableName;
+    private final MigrationListener listener;
+    private final MigrationRunHistory history;
+
+    private long groupStartedAt;
+    private int groupStatements;
+    private MigrationRun currentRun;
+
+    public MigrationRunner(MigrationSession session,
+                           QueryProvider queryProvider,
+                           SieveChain sieve,
+                           LockStrategy lockStrategy,
+                           ApplicationSettings settings,
+                           String migrationLogTableName,
+                           MigrationListener listener,
+                           MigrationRunHistory history,
+                           ConcurrentIndexExecutor concurrentIndexExecutor) {
+        this.session = session;
+        this.queryProvider = queryProvider;
+        this.sieve = sieve;
+        this.lockStrategy = lockStrategy;
+        this.settings = settings;
+        this.sequentialExecutor = new SequentialStatementExecutor();
+        this.copyDataLoader = new CopyDataLoader(queryProvider);
+        this.migrationLogTableName = migrationLogTableName;
+        this.listener = listener;
+        this.history = history;
+        this.concurrentIndexExecutor = concurrentIndexExecutor;
+    }
+
+    /**
+     * Applies migrations in the given order <br/>
+     * If the current thread is interrupted, commits applied migrations and fails before the next one,
+     * so the run is not taken for a completed one
+     *
+     * @throws IllegalStateException if the current thread was interrupted, interrupt flag is kept
+     */
+    public void run(List<Migration> migrations) {
+        try {
+            for (var migration : migrations) {
+                if (Thread.currentThread().isInterrupted()) {
+                    commitGroup();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(String.format("Migration was interrupted before %s",
+                            migration.getName()));
+                }
+                tryApplyMigration(migration);
+            }
+            commitGroup();
+        } catch (SQLException e) {
+            rollbackGroup(e);
+            writeFailedMigrationRun(e);
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            rollbackGroup(e);
+            writeFailedMigrationRun(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Transactional migration is applied and logged in the same transaction,
+     * so it is either applied and logged or neither <br/>
+     * Transactional migration of concurrent index commands only is applied outside of transaction,
+     * as each of them is atomic by itself <br/>
+     * With group commit, consecutive transactional migrations and log-only records share one transaction
+     * until statements or time limit is reached
+     */
+    private void tryApplyMigration(Migration migration) throws SQLException {
+        LOGGER.info("[MIGRATION] Processing migration: {}", migration.getName());
+        var event = new MigrationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        listener.onMigrationStarted(migration);
+        boolean shouldBeApplied = sieve.sift(migration);
+        listener.onSifted(migration, shouldBeApplied);
+        boolean concurrent = shouldBeApplied && migration.hasConcurrentIndexCommands();
+        if (shouldBeApplied && (!migration.isTransactional() || concurrent)) {
+            if (migration.isTransactional()) {
+                LOGGER.info("Migration {} has concurrent index commands only, it is applied outside of transaction",
+                        migration.getName());
+            }
+            commitGroup();
+            applyMigration(migration, concurrent ? concurrentIndexExecutor : sequentialExecutor);
+            writeMigrationLog(migration);
+            writeMigrationRun();
+        } else if (!shouldBeApplied && !settings.isGroupCommitEnabled()) {
+            writeMigrationLog(migration);
+        } else {
+            beginGroup();
+            int statementsCount = 1;
+            if (shouldBeApplied) {
+                statementsCount += applyMigrationInTransaction(migration);
+            }
+            writeMigrationLog(migration);
+            statementsCount += writeMigrationRun();
+            groupStatements += statementsCount;
+            if (isGroupFull()) {
+                commitGroup();
+            }
+        }
+        migration.getLoggedMigration().setApplied();
+        listener.onMigrationFinished(migration, shouldBeApplied, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.migration = migration.getName();
+            event.file = migration.getPath().toString();
+            event.runStatus = migration.getRunStatus().name();
+            event.applied = shouldBeApplied;
+            event.commit();
+        }
+    }
+
+    /**
+     * Failure of a 'failFast' migration fails the whole transaction <br/>
+     * Other migrations are rolled back to a savepoint, so the rest of the transaction survives
+     *
+     * @return number of executed statements
+     */
+    private int applyMigrationInTransaction(Migration migration) throws SQLException {
+        LOGGER.debug("Applying migration: {}", migration.getName());
+        var conn = session.getConnection();
+        var executor = settings.getExecutionMode().getExecutor();
+        currentRun = history.start(migration);
+        if (migration.isFailOnError()) {
+            int statementsCount = execute(conn, executor, migration);
+            history.finish(currentRun);
+            return statementsCount;
+        }
+        var savepoint = conn.setSavepoint();
+        int statementsCount = 2; // savepoint and its release
+        try {
+            statementsCount += execute(conn, executor, migration);
+        } catch (StatementExecutionException e) {
+            conn.rollback(savepoint);
+            statementsCount++;
+            setFailed(currentRun);
+            LOGGER.warn("Failed to apply migration: {}", migration.getName(), e);
+        }
+        // savepoint outlives rollback to it, so it is released in both cases
+        conn.releaseSavepoint(savepoint);
+        history.finish(currentRun);
+        return statementsCount;
+    }
+
+    private void applyMigration(Migration migration, StatementExecutor executor) {
+        LOGGER.debug("Applying migration: {}", migration.getName());
+        currentRun = history.start(migration);
+        try {
+            execute(session.getConnection(), executor, migration);
+        } catch (StatementExecutionException e) {
+            if (migration.isFailOnError()) {
+                throw e;
+            } else {
+                setFailed(currentRun);
+                LOGGER.warn("Failed to apply migration: {}", migration.getName(), e);
+            }
+        }
+        history.finish(currentRun);
+    }
+
+    private static void setFailed(MigrationRun run) {
+        if (run != null) {
+            run.setFailed();
+        }
+    }
+
+    /**
+     * 'load' migration is a single COPY query, other migrations are executed statement by statement
+     *
+     * @return number of executed statements
+     */
+    private int execute(Connection conn, StatementExecutor executor, Migration migration) {
+        if (migration.isLoad()) {
+            long start = System.nanoTime();
+            long rows = copyDataLoader.load(conn, migration);
+            listener.onStatementExecuted(migration, 0, rows, System.nanoTime() - start);
+            if (currentRun != null) {
+                currentRun.addRowsAffected(0, rows);
+            }
+            return 1;
+        }
+        List<String> statements = migration.getStatements();
+        var run = currentRun;
+        executor.execute(conn, migration.getName(), statements,
+                (statement, rowsAffected, durationNanos) -> {
+                    listener.onStatementExecuted(migration, statement, rowsAffected, durationNanos);
+                    if (run != null) {
+                        run.addRowsAffected(statement, rowsAffected);
+                    }
+                });
+        return statements.size();
+    }
+
+    /**
+     * Run of transactional migration is written in its transaction, so it is kept only if migration is committed
+     *
+     * @return number of executed statements
+     */
+    private int writeMigrationRun() throws SQLException {
+        if (currentRun == null) {
+            return 0;
+        }
+        var run = currentRun;
+        currentRun = null;
+        insertMigrationRun(run);
+        return 1;
+    }
+
+    /**
+     * Failed 'failFast' migration is rolled back with its transaction, so its run is written afterwards
+     * without a transaction. Failure to write it does not hide the original failure
+     */
+    private void writeFailedMigrationRun(Exception cause) {
+        if (currentRun == null) {
+            return;
+        }
+        var run = currentRun;
+        currentRun = null;
+        run.setFailed();
+        history.finish(run);
+        try {
+            insertMigrationRun(run);
+        } catch (SQLException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void insertMigrationRun(MigrationRun run) throws SQLException {
+        LOGGER.debug("Adding migration run record for migration {}", run.getName());
+        var statement = session.prepare(queryProvider.getInsertMigrationRunPreparedQuery(history.getTableName()));
+        DBUtils.prepare(statement,
+            List.of(
+                run.getRunId(),
+                run.getName(),
+                run.getStartedAt(),
+                run.getFinishedAt(),
+                run.getDurationMillis(),
+                run.getRowsAffectedJson(),
+                run.getOutcome().name(),
+                run.isSlow(),
+                run.getHost()
+            ));
+        statement.executeUpdate();
+    }
+
+    /**
+     * If lock requires verification, migration log is written in a transaction,
+     * which verifies the lock once before the first write
+     */
+    private void writeMigrationLog(Migration migration) throws SQLException {
+        boolean ownTransaction = lockStrategy.requiresVerification() && !session.isInTransaction();
+        if (ownTransaction) {
+            session.begin();
+        }
+        if (lockStrategy.requiresVerification() && !session.isLockVerified()) {
+            lockStrategy.verify(session);
+            session.setLockVerified();
+        }
+        if (migration.getLoggedMigration() != null) {
+            updateMigrationLog(migration);
+        }
+        else {
+            addMigrationLog(migration);
+        }
+        if (ownTransaction) {
+            commit(1);
+        }
+    }
+
+    private void beginGroup() throws SQLException {
+        if (!session.isInTransaction()) {
+            session.begin();
+            groupStartedAt = System.nanoTime();
+            groupStatements = 0;
+        }
+    }
+
+    private boolean isGroupFull() {
+        return !settings.isGroupCommitEnabled()
+                || groupStatements >= settings.getGroupCommitMaxStatements()
+                || !settings.getGroupCommitMaxDuration().isZero()
+                    && System.nanoTime() - groupStartedAt >= settings.getGroupCommitMaxDuration().toNanos();
+    }
+
+    private void commitGroup() throws SQLException {
+        if (session.isInTransaction()) {
+            LOGGER.debug("Committing transaction of {} statements", groupStatements);
+            commit(groupStatements);
+        }
+    }
+
+    private void commit(int statementsCount) throws SQLException {
+        long start = System.nanoTime();
+        session.commit();
+        listener.onCommit(statementsCount, System.nanoTime() - start);
+    }
+
+    private void rollbackGroup(Exception cause) {
+        try {
+            session.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void addMigrationLog(Migration migration) throws SQLException {
+        LOGGER.debug("Adding new migration log record for migration {}", migration.getName());
+        MigrationLog migrationLog = new MigrationLog(
+                migration.getRunModifier().getValueAsString(),
+                migration.getAuthor(),
+                migration.getTitle(),
+                migration.getPath().toString(),
+                migration.getHash(),
+                migration.getActualOrder(),
+                migration.getUserDefinedParams());
+        migrationLog.setHashAlgorithm(migration.getHashAlgorithm().getName());
+
+        String query = queryProvider.getInsertMigrationLogQuery(migrationLogTableName);
+        var statement = session.prepare(query);
+        DBUtils.prepare(statement,
+            List.of(
+                migrationLog.getName(),
+                migrationLog.getFilename(),
+                migrationLog.getAuthor(),
+                migrationLog.getRunModifier(),
+                migrationLog.getRunOrder(),
+                migrationLog.getHash(),
+                migrationLog.getHashAlgorithm(),
+                migrationLog.getUserDefinedParamsJson()
+            ));
+        statement.executeUpdate();
+
+        migration.setLoggedMigration(migrationLog);
+    }
+
+    private void updateMigrationLog(Migration migration) throws SQLException {
+        LOGGER.debug("Updating migration log record for migration {}", migration.getName());
+        migration.updateMigrationLog();
+        MigrationLog migrationLog = migration.getLoggedMigration();
+
+        String query = queryProvider.getUpdateMigrationLogPreparedQuery(migrationLogTableName);
+        var statement = session.prepare(query);
+        DBUtils.prepare(statement,
+                List.of(
+                    migrationLog.getFilename(),
+                    migrationLog.getAuthor(),
+                    migrationLog.getRunModifier(),
+                    migrationLog.getRunOrder(),
+                    migrationLog.getHash(),
+                    migrationLog.getHashAlgorithm(),
+                    migrationLog.getUserDefinedParamsJson(),
+                    migrationLog.getName()
+                )
+        );
+        statement.executeUpdate();
+    }
+}
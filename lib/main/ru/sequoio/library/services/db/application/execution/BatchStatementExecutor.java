@@ -0,0 +1,143 @@
+package ru.sequoio.library.services.db.application.execution;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.monitoring.events.StatementEvent;
+
+/**
+ * Sends statements of a migration as JDBC batches <br/>
+ * Driver pipelines the batch, so the whole migration takes one or a few round-trips
+ * instead of one round-trip per statement <br/>
+ * Statements, which may return results (e.g. 'SELECT setval(...)' or 'RETURNING' clause), can not be batched,
+ * so they are executed one by one between batches of the other statements <br/>
+ * Must be used inside a transaction: drivers may wrap an auto-commit batch into an implicit transaction <br/>
+ * Statements of a batch are not timed separately, each one is reported with an equal share of the batch time
+ */
+public class BatchStatementExecutor implements StatementExecutor {
+
+    private static final Pattern RESULT_STATEMENT = Pattern.compile(
+            "^(?:\\s|--[^\\n]*\\n?|/\\*.*?\\*/|\\()*(?:SELECT|WITH|VALUES|TABLE|SHOW|EXPLAIN|FETCH|CALL)\\b" +
+            "|\\bRETURNING\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    @Override
+    public int[] execute(Connection connection, String migrationName, List<String> statements, StatementCallback callback) {
+        int[] updateCounts = new int[statements.size()];
+        int from = 0;
+        while (from < statements.size()) {
+            if (mayReturnResults(statements.get(from))) {
+                updateCounts[from] = executeSingle(connection, migrationName, statements, from, callback);
+                from++;
+                continue;
+            }
+            int to = from + 1;
+            while (to < statements.size() && !mayReturnResults(statements.get(to))) {
+                to++;
+            }
+            executeBatch(connection, migrationName, statements, from, to, updateCounts, callback);
+            from = to;
+        }
+        return updateCounts;
+    }
+
+    /**
+     * Errs on the side of results, e.g. 'RETURNING' in a string literal, as such statement only costs a round-trip
+     */
+    static boolean mayReturnResults(String statement) {
+        return RESULT_STATEMENT.matcher(statement).find();
+    }
+
+    private int executeSingle(Connection connection,
+                              String migrationName,
+                              List<String> statements,
+                              int index,
+                              StatementCallback callback) {
+        try (var statement = connection.createStatement()) {
+            var event = new StatementEvent();
+            event.begin();
+            long start = System.nanoTime();
+            statement.execute(statements.get(index));
+            int updateCount = statement.getUpdateCount();
+            callback.onExecuted(index, updateCount, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.migration = migrationName;
+                event.statementIndex = index;
+                event.statementsCount = 1;
+                event.rowsAffected = Math.max(updateCount, 0);
+                event.commit();
+            }
+            return updateCount;
+        } catch (SQLException e) {
+            throw new StatementExecutionException(migrationName, index, statements.get(index), e);
+        }
+    }
+
+    /**
+     * Executes statements from 'from' inclusive to 'to' exclusive as a single batch <br/>
+     * Failure, which is not reported for a particular statement of the batch, e.g. a broken connection,
+     * is reported for the statement being added to the batch or for the first statement of the batch
+     */
+    private void executeBatch(Connection connection,
+                              String migrationName,
+                              List<String> statements,
+                              int from,
+                              int to,
+                              int[] updateCounts,
+                              StatementCallback callback) {
+        int index = from;
+        try (var statement = connection.createStatement()) {
+            for (; index < to; index++) {
+                statement.addBatch(statements.get(index));
+            }
+            index = from;
+            var event = new StatementEvent();
+            event.begin();
+            long start = System.nanoTime();
+            int[] batchUpdateCounts = statement.executeBatch();
+            long share = (System.nanoTime() - start) / Math.max(1, batchUpdateCounts.length);
+            event.end();
+            for (int i = 0; i < batchUpdateCounts.length; i++) {
+                updateCounts[from + i] = batchUpdateCounts[i];
+                callback.onExecuted(from + i, batchUpdateCounts[i], share);
+            }
+            if (event.shouldCommit()) {
+                event.migration = migrationName;
+                event.statementIndex = from;
+                event.statementsCount = batchUpdateCounts.length;
+                event.rowsAffected = Arrays.stream(batchUpdateCounts).filter(count -> count > 0).asLongStream().sum();
+                event.commit();
+            }
+        } catch (BatchUpdateException e) {
+            int failedIndex = from + getFailedStatementIndex(e.getUpdateCounts(), to - from);
+            throw new StatementExecutionException(migrationName, failedIndex, statements.get(failedIndex), e);
+        } catch (SQLException e) {
+            int failedIndex = Math.min(index, to - 1);
+            throw new StatementExecutionException(migrationName, failedIndex, statements.get(failedIndex), e);
+        }
+    }
+
+    /**
+     * Drivers either stop at the first failed statement and report counts of the preceding ones only,
+     * or report counts of the whole batch marking failed statements with {@link Statement#EXECUTE_FAILED}
+     */
+    private int getFailedStatementIndex(int[] updateCounts, int statementsCount) {
+        if (updateCounts == null) {
+            return 0;
+        }
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        return Math.min(updateCounts.length, statementsCount - 1);
+    }
+
+}
@@ -0,0 +1,267 @@
+package ru.sequoio.library.services.db.application.execution;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.IndexBuild;
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.db.application.ApplicationSettings;
+import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.monitoring.events.StatementEvent;
+import ru.sequoio.library.utils.DBUtils;
+
+/**
+ * Executes migrations with concurrent index commands, which must run outside of transaction <br/>
+ * Failed 'CREATE INDEX CONCURRENTLY' leaves an INVALID index, which is dropped and built once again.
+ * INVALID index left by a previous run is dropped before the build, otherwise 'IF NOT EXISTS' would keep it. <br/>
+ * Migration, which only builds indexes, builds them on different tables in parallel on separate connections,
+ * builds on the same table are serial, as they would wait for each other anyway
+ */
+public class ConcurrentIndexExecutor implements StatementExecutor {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ConcurrentIndexExecutor.class);
+
+    private static final String MAINTENANCE_WORK_MEM = "maintenance_work_mem";
+    private static final String MAX_PARALLEL_MAINTENANCE_WORKERS = "max_parallel_maintenance_workers";
+
+    private final QueryProvider queryProvider;
+    private final DataSource dataSource;
+    private final ApplicationSettings settings;
+
+    /**
+     * @param dataSource source of connections for parallel builds, 'null' for serial builds
+     */
+    public ConcurrentIndexExecutor(QueryProvider queryProvider, DataSource dataSource, ApplicationSettings settings) {
+        this.queryProvider = queryProvider;
+        this.dataSource = dataSource;
+        this.settings = settings;
+    }
+
+    @Override
+    public int[] execute(Connection connection, String migrationName, List<String> statements, StatementCallback callback) {
+        var builds = statements.stream()
+                .map(queryProvider::parseConcurrentIndexBuild)
+                .collect(Collectors.toList());
+        boolean onlyBuilds = builds.stream().allMatch(Objects::nonNull);
+        if (onlyBuilds && dataSource != null && settings.getIndexBuildParallelism() > 1
+                && builds.stream().map(IndexBuild::getQualifiedTableName).distinct().count() > 1) {
+            return executeInParallel(migrationName, statements, builds, callback);
+        }
+
+        setMaintenanceParameters(connection, migrationName, 0);
+        try {
+            int[] updateCounts = new int[statements.size()];
+            for (int i = 0; i < statements.size(); i++) {
+                updateCounts[i] = executeStatement(connection, migrationName, i, statements.get(i), builds.get(i), callback);
+            }
+            return updateCounts;
+        } finally {
+            resetMaintenanceParameters(connection);
+        }
+    }
+
+    /**
+     * All builds are awaited, even if one of them fails, as interrupted build would leave an INVALID index <br/>
+     * Failure of the first failed statement is thrown
+     */
+    private int[] executeInParallel(String migrationName,
+                                    List<String> statements,
+                                    List<IndexBuild> builds,
+                                    StatementCallback callback) {
+        Map<String, List<Integer>> tables = new LinkedHashMap<>();
+        for (int i = 0; i < builds.size(); i++) {
+            tables.computeIfAbsent(builds.get(i).getQualifiedTableName(), table -> new ArrayList<>()).add(i);
+        }
+        int threads = Math.min(settings.getIndexBuildParallelism(), tables.size());
+        LOGGER.info("Building {} indexes of migration {} on {} tables with {} connections",
+                statements.size(), migrationName, tables.size(), threads);
+
+        int[] updateCounts = new int[statements.size()];
+        StatementCallback synchronizedCallback = (statement, rowsAffected, durationNanos) -> {
+            synchronized (callback) {
+                callback.onExecuted(statement, rowsAffected, durationNanos);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (var table : tables.values()) {
+                futures.add(executor.submit(() -> {
+                    try (var connection = dataSource.getConnection()) {
+                        connection.setAutoCommit(true);
+                        setMaintenanceParameters(connection, migrationName, table.get(0));
+                        try {
+                            for (int i : table) {
+                                updateCounts[i] = executeStatement(connection, migrationName, i,
+                                        statements.get(i), builds.get(i), synchronizedCallback);
+                            }
+                        } finally {
+                            resetMaintenanceParameters(connection);
+                        }
+                    } catch (SQLException e) {
+                        throw new StatementExecutionException(migrationName, table.get(0), statements.get(table.get(0)), e);
+                    }
+                    return null;
+                }));
+            }
+
+            RuntimeException failure = null;
+            for (var future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    var cause = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new RuntimeException(e.getCause());
+                    if (failure == null || isEarlier(cause, failure)) {
+                        failure = cause;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return updateCounts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean isEarlier(RuntimeException failure, RuntimeException other) {
+        return failure instanceof StatementExecutionException
+                && (!(other instanceof StatementExecutionException)
+                    || ((StatementExecutionException) failure).getStatementIndex()
+                        < ((StatementExecutionException) other).getStatementIndex());
+    }
+
+    private int executeStatement(Connection connection,
+                                 String migrationName,
+                                 int index,
+                                 String statement,
+                                 IndexBuild build,
+                                 StatementCallback callback) {
+        boolean checkValidity = build != null && build.isNamed();
+        try {
+            if (checkValidity && dropIfInvalid(connection, build)) {
+                LOGGER.warn("Dropped INVALID index {} left by a previous build", build);
+            }
+            var event = new StatementEvent();
+            event.begin();
+            long start = System.nanoTime();
+            int updateCount;
+            try {
+                updateCount = execute(connection, statement);
+            } catch (SQLException e) {
+                if (!checkValidity || !dropIfInvalid(connection, build)) {
+                    throw e;
+                }
+                LOGGER.warn("Build of index {} failed and left it INVALID, building it once again", build, e);
+                try {
+                    updateCount = execute(connection, statement);
+                } catch (SQLException retryFailure) {
+                    retryFailure.addSuppressed(e);
+                    dropIfInvalid(connection, build);
+                    throw retryFailure;
+                }
+            }
+            callback.onExecuted(index, updateCount, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.migration = migrationName;
+                event.statementIndex = index;
+                event.statementsCount = 1;
+                event.rowsAffected = updateCount;
+                event.commit();
+            }
+            return updateCount;
+        } catch (SQLException e) {
+            throw new StatementExecutionException(migrationName, index, statement, e);
+        }
+    }
+
+    private static int execute(Connection connection, String statement) throws SQLException {
+        try (var preparedStatement = connection.prepareStatement(statement)) {
+            preparedStatement.execute();
+            return preparedStatement.getUpdateCount();
+        }
+    }
+
+    /**
+     * @return 'true' if index existed and was INVALID
+     */
+    private boolean dropIfInvalid(Connection connection, IndexBuild build) throws SQLException {
+        Boolean valid;
+        try (var statement = connection.prepareStatement(queryProvider.getIndexValidityPreparedQuery())) {
+            DBUtils.prepare(statement, List.of(build.getQualifiedIndexName()));
+            try (var resultSet = statement.executeQuery()) {
+                valid = resultSet.next() ? resultSet.getBoolean("is_valid") : null;
+            }
+        }
+        if (valid == null || valid) {
+            return false;
+        }
+        execute(connection, queryProvider.getDropIndexConcurrentlyQuery(build.getQualifiedIndexName()));
+        return true;
+    }
+
+    /**
+     * @param statementIndex index of the first statement to be executed with the parameters
+     */
+    private void setMaintenanceParameters(Connection connection, String migrationName, int statementIndex) {
+        if (settings.getMaintenanceWorkMem() != null) {
+            setParameter(connection, migrationName, statementIndex,
+                    MAINTENANCE_WORK_MEM, settings.getMaintenanceWorkMem());
+        }
+        if (settings.getMaxParallelMaintenanceWorkers() != null) {
+            setParameter(connection, migrationName, statementIndex,
+                    MAX_PARALLEL_MAINTENANCE_WORKERS, settings.getMaxParallelMaintenanceWorkers().toString());
+        }
+    }
+
+    private void setParameter(Connection connection,
+                              String migrationName,
+                              int statementIndex,
+                              String parameter,
+                              String value) {
+        try (var statement = connection.prepareStatement(queryProvider.getSetSessionParameterPreparedQuery())) {
+            DBUtils.prepare(statement, List.of(parameter, value));
+            statement.execute();
+        } catch (SQLException e) {
+            throw new StatementExecutionException(migrationName, statementIndex,
+                    String.format("SET %s = '%s'", parameter, value), e);
+        }
+    }
+
+    /**
+     * Parameters are reset, so they do not leak into other migrations or back into connection pool
+     */
+    private void resetMaintenanceParameters(Connection connection) {
+        try {
+            if (settings.getMaintenanceWorkMem() != null) {
+                execute(connection, queryProvider.getResetSessionParameterQuery(MAINTENANCE_WORK_MEM));
+            }
+            if (settings.getMaxParallelMaintenanceWorkers() != null) {
+                execute(connection, queryProvider.getResetSessionParameterQuery(MAX_PARALLEL_MAINTENANCE_WORKERS));
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to reset index build parameters", e);
+        }
+    }
+}
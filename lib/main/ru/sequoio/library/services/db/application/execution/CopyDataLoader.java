@@ -0,0 +1,57 @@
+package ru.sequoio.library.services.db.application.execution;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.monitoring.events.StatementEvent;
+import ru.sequoio.library.utils.IOUtils;
+
+/**
+ * Streams data file of 'load' migration into the target table with a single COPY query <br/>
+ * Failure is reported as a failure of the first statement of the migration
+ */
+public class CopyDataLoader {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(CopyDataLoader.class);
+
+    private final QueryProvider queryProvider;
+
+    public CopyDataLoader(QueryProvider queryProvider) {
+        this.queryProvider = queryProvider;
+    }
+
+    /**
+     * @return number of loaded rows
+     */
+    public long load(Connection connection, Migration migration) {
+        if (!queryProvider.supportsCopy()) {
+            throw new IllegalStateException("Data load is not supported by database of migration " + migration.getName());
+        }
+        var file = migration.getLoadFile();
+        var query = queryProvider.getCopyFromStdinQuery(migration.getLoadTarget(), migration.getLoadFormat());
+        LOGGER.debug("Loading {} into {}", file, migration.getLoadTarget());
+        var event = new StatementEvent();
+        event.begin();
+        try (var data = IOUtils.getInputStream(file)) {
+            long rows = queryProvider.copyIn(connection, query, data);
+            event.end();
+            if (event.shouldCommit()) {
+                event.migration = migration.getName();
+                event.statementIndex = 0;
+                event.statementsCount = 1;
+                event.rowsAffected = rows;
+                event.commit();
+            }
+            LOGGER.info("Loaded {} rows from {} into {}", rows, file, migration.getLoadTarget());
+            return rows;
+        } catch (SQLException | IOException e) {
+            throw new StatementExecutionException(migration.getName(), 0, query, e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.sequoio.library.services.db.application.execution;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.monitoring.events.StatementEvent;
+
+/**
+ * Executes statements one by one, each in a separate round-trip
+ */
+public class SequentialStatementExecutor implements StatementExecutor {
+
+    @Override
+    public int[] execute(Connection connection, String migrationName, List<String> statements, StatementCallback callback) {
+        int[] updateCounts = new int[statements.size()];
+        for (int i = 0; i < statements.size(); i++) {
+            String statement = statements.get(i);
+            try (var preparedStatement = connection.prepareStatement(statement)) {
+                var event = new StatementEvent();
+                event.begin();
+                long start = System.nanoTime();
+                preparedStatement.execute();
+                updateCounts[i] = preparedStatement.getUpdateCount();
+                callback.onExecuted(i, updateCounts[i], System.nanoTime() - start);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.migration = migrationName;
+                    event.statementIndex = i;
+                    event.statementsCount = 1;
+                    event.rowsAffected = updateCounts[i];
+                    event.commit();
+                }
+            } catch (SQLException e) {
+                throw new StatementExecutionException(migrationName, i, statement, e);
+            }
+        }
+        return updateCounts;
+    }
+
+}
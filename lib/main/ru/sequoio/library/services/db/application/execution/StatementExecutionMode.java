@@ -0,0 +1,22 @@
+package ru.sequoio.library.services.db.application.execution;
+
+/**
+ * Defines how statements of a transactional migration are sent to the database <br/>
+ * Non-transactional migrations are always executed sequentially
+ */
+public enum StatementExecutionMode {
+
+    SEQUENTIAL(new SequentialStatementExecutor()),
+    BATCH(new BatchStatementExecutor()),
+    ;
+
+    private final StatementExecutor executor;
+
+    StatementExecutionMode(StatementExecutor executor) {
+        this.executor = executor;
+    }
+
+    public StatementExecutor getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.sequoio.library.services.db.application.execution;
+
+import java.sql.Connection;
+import java.util.List;
+
+import ru.sequoio.library.exception.StatementExecutionException;
+
+public interface StatementExecutor {
+
+    /**
+     * Executes statements of a single migration on the connection
+     *
+     * @return update counts of executed statements
+     * @throws StatementExecutionException with index of the failed statement
+     */
+    default int[] execute(Connection connection, String migrationName, List<String> statements) {
+        return execute(connection, migrationName, statements, StatementCallback.NONE);
+    }
+
+    /**
+     * Same as {@link #execute(Connection, String, List)}, callback is invoked after each executed statement
+     */
+    int[] execute(Connection connection, String migrationName, List<String> statements, StatementCallback callback);
+
+    @FunctionalInterface
+    interface StatementCallback {
+
+        StatementCallback NONE = (statement, rowsAffected, durationNanos) -> { };
+
+        /**
+         * @param statement index of statement in migration
+         * @param rowsAffected update count of statement, negative if statement has no update count
+         */
+        void onExecuted(int statement, long rowsAffected, long durationNanos);
+    }
+
+}
@@ -22,7 +22,7 @@ public class SieveChain implements Sieve<Migration> {
 
     @Override
     public boolean sift(Migration migration) {
-        boolean sifted = sieves.stream().map(filter -> filter.sift(migration)).reduce(true, (a, b) -> a && b);
+        boolean sifted = getRejectingSieve(migration) == null;
 
         if (sifted) {
             LOGGER.debug("Migration {} was sifted and will be applied", migration.getName());
@@ -32,4 +32,18 @@ public class SieveChain implements Sieve<Migration> {
 
         return sifted;
     }
+
+    /**
+     * Sieves are applied in chain order, the ones after the rejecting sieve are not applied
+     *
+     * @return first sieve, which does not match migration, 'null' if migration is to be applied
+     */
+    public Sieve<Migration> getRejectingSieve(Migration migration) {
+        for (var sieve : sieves) {
+            if (!sieve.sift(migration)) {
+                return sieve;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,81 @@
+package ru.sequoio.library.services.db.lock;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+import ru.sequoio.library.utils.DBUtils;
+
+/**
+ * Lock held by the database session itself <br/>
+ * Acquisition blocks on the server without polling. Lock must be released explicitly:
+ * database releases it only when the server session ends, and a pooled connection returned to the pool
+ * keeps its server session and the lock <br/>
+ * Session must stay pinned to one connection while the lock is held
+ */
+public class AdvisoryLockStrategy implements LockStrategy {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(AdvisoryLockStrategy.class);
+
+    private final QueryProvider queryProvider;
+    private final long lockKey;
+    private final Duration timeout;
+
+    public AdvisoryLockStrategy(QueryProvider queryProvider, long lockKey, Duration timeout) {
+        if (!queryProvider.supportsAdvisoryLocks()) {
+            throw new IllegalArgumentException("Database does not support advisory locks");
+        }
+        this.queryProvider = queryProvider;
+        this.lockKey = lockKey;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void acquire(MigrationSession session) throws SQLException {
+        LOGGER.info("Acquiring advisory lock {}...", lockKey);
+        var statement = session.prepare(queryProvider.getAdvisoryLockPreparedQuery());
+        DBUtils.prepare(statement, List.of(lockKey));
+        statement.setQueryTimeout((int) Math.max(timeout.toSeconds(), 1));
+        try {
+            statement.execute();
+        } catch (SQLException e) {
+            if (queryProvider.isQueryCanceled(e)) {
+                throw new IllegalStateException(String.format("Could not acquire lock in %d seconds",
+                        timeout.toSeconds()), e);
+            }
+            throw e;
+        } finally {
+            statement.setQueryTimeout(0);
+        }
+        LOGGER.info("Lock acquired!");
+    }
+
+    @Override
+    public boolean tryAcquire(MigrationSession session) throws SQLException {
+        LOGGER.debug("Trying to acquire advisory lock {}", lockKey);
+        var statement = session.prepare(queryProvider.getTryAdvisoryLockPreparedQuery());
+        DBUtils.prepare(statement, List.of(lockKey));
+        boolean acquired = DBUtils.executeIsPresentPreparedStatement(statement);
+        if (acquired) {
+            LOGGER.info("Lock acquired!");
+        }
+        return acquired;
+    }
+
+    @Override
+    public void release(MigrationSession session) throws SQLException {
+        LOGGER.debug("Releasing advisory lock {}", lockKey);
+        var statement = session.prepare(queryProvider.getAdvisoryUnlockPreparedQuery());
+        DBUtils.prepare(statement, List.of(lockKey));
+        statement.execute();
+    }
+
+    @Override
+    public boolean requiresLockTable() {
+        return false;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.sequoio.library.services.db.lock;
+
+public enum LockMode {
+
+    /**
+     * Flag in 'migration log lock' table, polled until acquired
+     */
+    TABLE,
+
+    /**
+     * Database advisory lock, see {@link AdvisoryLockStrategy}
+     */
+    ADVISORY,
+    ;
+}
@@ -0,0 +1,54 @@
+package ru.sequoio.library.services.db.lock;
+
+import java.sql.SQLException;
+
+import ru.sequoio.library.services.db.session.MigrationSession;
+
+/**
+ * Guards migration log from concurrent migration processes
+ */
+public interface LockStrategy {
+
+    /**
+     * Blocks until lock is acquired
+     *
+     * @throws IllegalStateException if lock was not acquired in time
+     */
+    void acquire(MigrationSession session) throws SQLException, InterruptedException;
+
+    /**
+     * Single attempt to acquire lock without waiting
+     *
+     * @return 'true' if lock acquired successfully, 'false' otherwise
+     */
+    boolean tryAcquire(MigrationSession session) throws SQLException;
+
+    /**
+     * Releases lock acquired by this process <br/>
+     * Called after failed runs as well, possibly on a session whose last transaction was rolled back
+     */
+    void release(MigrationSession session) throws SQLException;
+
+    /**
+     * Checks that lock is still held by this process <br/>
+     * Must be called in the transaction of migration log changes, before they are written
+     *
+     * @throws IllegalStateException if lock was lost
+     */
+    default void verify(MigrationSession session) throws SQLException {
+    }
+
+    /**
+     * @return 'true' if lock can be lost while held and migration log writes must be verified
+     */
+    default boolean requiresVerification() {
+        return false;
+    }
+
+    /**
+     * @return 'true' if lock is kept in 'migration log lock' table,
+     * which must exist before lock can be acquired, 'false' otherwise
+     */
+    boolean requiresLockTable();
+
+}
@@ -0,0 +1,221 @@
+package ru.sequoio.library.services.db.lock;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.MigrationLock;
+import ru.sequoio.library.services.db.query.QueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+import ru.sequoio.library.utils.DBUtils;
+
+/**
+ * Lease kept in 'migration log lock' table <br/>
+ * Lock row holds owner id, lease expiration time and fencing token, which is incremented on every acquisition.
+ * Lock is acquired with a single conditional update, which also takes over expired leases,
+ * and polled with a delay until timeout <br/>
+ * Lease is extended by a background heartbeat on a separate connection (if data source is available)
+ * or else on every verification before migration log writes. Verification fails, if the lease was taken over,
+ * so a stalled former owner can not write to migration log
+ */
+public class TableLockStrategy implements LockStrategy {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(TableLockStrategy.class);
+
+    private final QueryProvider queryProvider;
+    private final String lockTableName;
+    private final DataSource dataSource;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final Duration lease;
+    private final String ownerId;
+
+    private volatile long fencingToken = -1;
+    private volatile boolean lost;
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * @param dataSource source of heartbeat connections, lease is extended between migrations only if 'null'
+     */
+    public TableLockStrategy(QueryProvider queryProvider,
+                             String lockTableName,
+                             DataSource dataSource,
+                             Duration pollInterval,
+                             Duration timeout,
+                             Duration lease) {
+        this.queryProvider = queryProvider;
+        this.lockTableName = lockTableName;
+        this.dataSource = dataSource;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+        this.lease = lease;
+        this.ownerId = getHostName() + "/" + UUID.randomUUID();
+    }
+
+    /**
+     * Acquires lock with some number of retries and some delay time between tries
+     */
+    @Override
+    public void acquire(MigrationSession session) throws SQLException, InterruptedException {
+        LOGGER.debug("Acquiring lock");
+        long maxAttempts = Math.max(timeout.toMillis() / pollInterval.toMillis(), 1);
+        int attempt = 0;
+        while (!tryAcquire(session, attempt)) {
+            attempt++;
+            if (attempt >= maxAttempts) {
+                throw new IllegalStateException(String.format("Could not acquire lock in %d seconds",
+                        attempt * pollInterval.toMillis() / 1000));
+            }
+            Thread.sleep(pollInterval.toMillis());
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(MigrationSession session) throws SQLException {
+        return tryAcquire(session, 0);
+    }
+
+    /**
+     * Takes the lease only if it is free or expired, so two processes can not acquire lock at the same time
+     *
+     * @return 'true' if lock acquired successfully, 'false' otherwise
+     */
+    private boolean tryAcquire(MigrationSession session, int attempt) throws SQLException {
+        LOGGER.info("Trying to acquire lock. Attempt {}...", attempt);
+        var acquireLockStatement = session.prepare(queryProvider.getAcquireLockPreparedQuery(lockTableName));
+        DBUtils.prepare(acquireLockStatement, List.of(ownerId, lease.toMillis()));
+        try (var resultSet = acquireLockStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                LOGGER.debug("Failed to acquire lock. Already locked!");
+                return false;
+            }
+            fencingToken = resultSet.getLong(MigrationLock.fencingToken_);
+        }
+        lost = false;
+        LOGGER.info("Lock acquired! Owner {}, fencing token {}", ownerId, fencingToken);
+        startHeartbeat();
+        return true;
+    }
+
+    /**
+     * Heartbeat is stopped even if the lease can not be released, so the lease expires and can be taken over
+     */
+    @Override
+    public void release(MigrationSession session) throws SQLException {
+        LOGGER.debug("Releasing lock");
+        stopHeartbeat();
+        try {
+            var releaseLockStatement = session.prepare(queryProvider.getReleaseLockPreparedQuery(lockTableName));
+            DBUtils.prepare(releaseLockStatement, List.of(fencingToken));
+            releaseLockStatement.execute();
+        } finally {
+            fencingToken = -1;
+        }
+    }
+
+    /**
+     * Checks the lease with a plain read, if it is extended by heartbeat,
+     * so parallel sessions and grouped transactions do not queue up on the lease row.
+     * The lease can only be taken over after heartbeat failed for the whole lease time <br/>
+     * Otherwise extends the lease and locks the lease row till the end of current transaction,
+     * so the lease can not be taken over before migration log changes are committed
+     *
+     * @throws IllegalStateException if the lease was taken over by another process
+     */
+    @Override
+    public void verify(MigrationSession session) throws SQLException {
+        if (lost || !(dataSource != null ? checkLease(session) : extendLease(
+                session.prepare(queryProvider.getExtendLockLeasePreparedQuery(lockTableName))))) {
+            lost = true;
+            throw new IllegalStateException(String.format("Migration lock lease with fencing token %d was lost, " +
+                    "another instance took over the lock", fencingToken));
+        }
+    }
+
+    @Override
+    public boolean requiresVerification() {
+        return true;
+    }
+
+    @Override
+    public boolean requiresLockTable() {
+        return true;
+    }
+
+    private boolean extendLease(PreparedStatement statement) throws SQLException {
+        DBUtils.prepare(statement, List.of(lease.toMillis(), fencingToken, ownerId));
+        return statement.executeUpdate() > 0;
+    }
+
+    private boolean checkLease(MigrationSession session) throws SQLException {
+        var statement = session.prepare(queryProvider.getCheckLockLeasePreparedQuery(lockTableName));
+        DBUtils.prepare(statement, List.of(fencingToken, ownerId));
+        try (var resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private void startHeartbeat() {
+        if (dataSource == null) {
+            LOGGER.warn("No data source for lock heartbeat, lease of {} is extended between migrations only", lease);
+            return;
+        }
+        stopHeartbeat();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "sequoio-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(lease.toMillis() / 3, 1);
+        heartbeat.scheduleAtFixedRate(this::beat, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void beat() {
+        if (lost) {
+            return;
+        }
+        try (var conn = dataSource.getConnection();
+             var statement = conn.prepareStatement(queryProvider.getExtendLockLeasePreparedQuery(lockTableName))) {
+            if (!extendLease(statement)) {
+                LOGGER.error("Migration lock lease with fencing token {} was lost", fencingToken);
+                lost = true;
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to extend migration lock lease", e);
+        }
+    }
+
+    /**
+     * Beat in progress is awaited, so the lease is not extended after it is released
+     */
+    private void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            try {
+                heartbeat.awaitTermination(lease.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            heartbeat = null;
+        }
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -1,11 +1,39 @@
 package ru.sequoio.library.services.db.query;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.postgresql.PGConnection;
+
+import ru.sequoio.library.domain.migration.ChangelogFingerprint;
+import ru.sequoio.library.domain.migration.IndexBuild;
 import ru.sequoio.library.domain.migration.MigrationLock;
 import ru.sequoio.library.domain.migration.MigrationLog;
+import ru.sequoio.library.domain.migration.MigrationRun;
+import ru.sequoio.library.domain.migration.migration_paramters.LoadParameterValue;
+import ru.sequoio.library.utils.HashAlgorithm;
 
 public class PostgresQueryProvider implements QueryProvider {
 
     private static final String STATEMENT_SEPARATOR = "\n";
+    private static final String QUERY_CANCELED_SQL_STATE = "57014";
+    private static final String UNDEFINED_TABLE_SQL_STATE = "42P01";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String IDENTIFIER = "(?:\"(?:[^\"]|\"\")+\"|[\\w$]+)";
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(?:\\s+|--[^\\n]*(?:\\n|$)|/\\*.*?\\*/)*",
+            Pattern.DOTALL);
+    private static final Pattern CREATE_INDEX_CONCURRENTLY = Pattern.compile(
+            "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?" +
+            "(?:(?!ON\\s)(" + IDENTIFIER + ")\\s+)?" +
+            "ON\\s+(?:ONLY\\s+)?(?:(" + IDENTIFIER + ")\\.)?(" + IDENTIFIER + ")",
+            Pattern.CASE_INSENSITIVE);
 
     @Override
     public String getTableExistsPreparedQuery() {
@@ -14,10 +42,42 @@ public class PostgresQueryProvider implements QueryProvider {
                 "where schemaname = ? and tablename = ?;";
     }
 
+    @Override
+    public String getColumnExistsPreparedQuery() {
+        return "SELECT count(*)=1 as is_present " +
+                "FROM information_schema.columns " +
+                "where table_schema = ? and table_name = ? and column_name = ?;";
+    }
+
+    @Override
+    public String getUpgradeMigrationLogLockQuery(String migrationLogLockTableName) {
+        return String.format(
+                    "ALTER TABLE %s " +
+                    "    ADD COLUMN IF NOT EXISTS %s TEXT, " +
+                    "    ADD COLUMN IF NOT EXISTS %s TIMESTAMPTZ, " +
+                    "    ADD COLUMN IF NOT EXISTS %s BIGINT NOT NULL DEFAULT 0;",
+                migrationLogLockTableName,
+                MigrationLock.ownerId_,
+                MigrationLock.expiresAt_,
+                MigrationLock.fencingToken_);
+    }
+
+    /**
+     * Records written before hash algorithm column was added are MD5 hashes
+     */
+    @Override
+    public String getUpgradeMigrationLogQuery(String migrationLogTableName) {
+        return String.format(
+                    "ALTER TABLE %s " +
+                    "    ADD COLUMN IF NOT EXISTS %s TEXT NOT NULL DEFAULT '%s';",
+                migrationLogTableName,
+                MigrationLog.hashAlgorithm_, HashAlgorithm.MD5.getName());
+    }
+
     @Override
     public String getInsertMigrationLogQuery(String migrationLogTableName) {
         return String.format(
-                "INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s, %s, %s) ",
+                "INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s, %s, %s, %s) ",
             migrationLogTableName,
             MigrationLog.createdAt_,
             MigrationLog.lastExecutedAt_,
@@ -27,16 +87,22 @@ public class PostgresQueryProvider implements QueryProvider {
             MigrationLog.runModifier_,
             MigrationLog.runOrder_,
             MigrationLog.hash_,
+            MigrationLog.hashAlgorithm_,
             MigrationLog.userDefinedParamsJson_
-        ) + "VALUES (now(), now(), ?, ?, ?, ?, ?, ?, ?::JSON);";
+        ) + "VALUES (now(), now(), ?, ?, ?, ?, ?, ?, ?, ?::JSON);";
     }
 
     @Override
     public String getSelectMigrationLogPreparedQuery(String migrationLogTableName) {
         return String.format(
-                    "SELECT * " +
-                    "FROM %s;"
-                , migrationLogTableName);
+                    "SELECT %s, %s, %s, %s, %s " +
+                    "FROM %s;",
+                MigrationLog.name_,
+                MigrationLog.hash_,
+                MigrationLog.hashAlgorithm_,
+                MigrationLog.runOrder_,
+                MigrationLog.runModifier_,
+                migrationLogTableName);
     }
 
     @Override
@@ -49,6 +115,7 @@ public class PostgresQueryProvider implements QueryProvider {
                     "    %s = ?, " +
                     "    %s = ?, " +
                     "    %s = ?, " +
+                    "    %s = ?, " +
                     "    %s = ?::jsonb " +
                     "where %s = ?;",
                 migrationLogTableName,
@@ -58,38 +125,328 @@ public class PostgresQueryProvider implements QueryProvider {
                 MigrationLog.runModifier_,
                 MigrationLog.runOrder_,
                 MigrationLog.hash_,
+                MigrationLog.hashAlgorithm_,
                 MigrationLog.userDefinedParamsJson_,
                 MigrationLog.name_
             );
     }
 
+    /**
+     * Run history is append-only, index on name serves lookup of the last run of each migration
+     */
+    @Override
+    public String getCreateMigrationRunQuery(String migrationRunTableName) {
+        return String.format(
+                    "CREATE TABLE IF NOT EXISTS %s ( " +
+                    "    %s     BIGSERIAL       PRIMARY KEY, " +
+                    "    %s     TEXT            NOT NULL,    " +
+                    "    %s     TEXT            NOT NULL,    " +
+                    "    %s     TIMESTAMPTZ     NOT NULL,    " +
+                    "    %s     TIMESTAMPTZ     NOT NULL,    " +
+                    "    %s     BIGINT          NOT NULL,    " +
+                    "    %s     JSON,                        " +
+                    "    %s     TEXT            NOT NULL,    " +
+                    "    %s     BOOLEAN         NOT NULL DEFAULT false, " +
+                    "    %s     TEXT                         " +
+                    ");",
+                migrationRunTableName,
+                MigrationRun.id_,
+                MigrationRun.runId_,
+                MigrationRun.name_,
+                MigrationRun.startedAt_,
+                MigrationRun.finishedAt_,
+                MigrationRun.durationMs_,
+                MigrationRun.rowsAffected_,
+                MigrationRun.outcome_,
+                MigrationRun.slow_,
+                MigrationRun.host_)
+            + STATEMENT_SEPARATOR
+            + String.format(
+                "CREATE INDEX IF NOT EXISTS %s_%s_idx ON %s (%s, %s);",
+                migrationRunTableName, MigrationRun.name_,
+                migrationRunTableName,
+                MigrationRun.name_, MigrationRun.id_);
+    }
+
+    @Override
+    public String getInsertMigrationRunPreparedQuery(String migrationRunTableName) {
+        return String.format(
+                "INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s, %s, %s) ",
+            migrationRunTableName,
+            MigrationRun.runId_,
+            MigrationRun.name_,
+            MigrationRun.startedAt_,
+            MigrationRun.finishedAt_,
+            MigrationRun.durationMs_,
+            MigrationRun.rowsAffected_,
+            MigrationRun.outcome_,
+            MigrationRun.slow_,
+            MigrationRun.host_
+        ) + "VALUES (?, ?, ?, ?, ?, ?::JSON, ?, ?, ?);";
+    }
+
+    @Override
+    public String getSelectLastMigrationRunsPreparedQuery(String migrationRunTableName) {
+        return String.format(
+                    "SELECT DISTINCT ON (%s) %s, %s " +
+                    "FROM %s " +
+                    "WHERE %s = ANY(?) AND %s = '%s' " +
+                    "ORDER BY %s, %s DESC;",
+                MigrationRun.name_, MigrationRun.name_, MigrationRun.durationMs_,
+                migrationRunTableName,
+                MigrationRun.name_, MigrationRun.outcome_, MigrationRun.Outcome.SUCCEEDED.name(),
+                MigrationRun.name_, MigrationRun.id_);
+    }
+
+    /**
+     * Table has a single row, which is guarded by primary key with check constraint
+     */
+    @Override
+    public String getCreateChangelogFingerprintQuery(String changelogFingerprintTableName) {
+        return String.format(
+                    "CREATE TABLE IF NOT EXISTS %s ( " +
+                    "    %s     SMALLINT        PRIMARY KEY DEFAULT 1 CHECK (%s = 1), " +
+                    "    %s     TEXT            NOT NULL,    " +
+                    "    %s     TEXT            NOT NULL,    " +
+                    "    %s     BIGINT          NOT NULL,    " +
+                    "    %s     TIMESTAMPTZ     NOT NULL     " +
+                    ");",
+                changelogFingerprintTableName,
+                ChangelogFingerprint.id_, ChangelogFingerprint.id_,
+                ChangelogFingerprint.fingerprint_,
+                ChangelogFingerprint.subtrees_,
+                ChangelogFingerprint.migrations_,
+                ChangelogFingerprint.appliedAt_);
+    }
+
+    @Override
+    public String getSelectChangelogFingerprintQuery(String changelogFingerprintTableName) {
+        return String.format(
+                    "SELECT %s, %s " +
+                    "FROM %s " +
+                    "WHERE %s = 1;",
+                ChangelogFingerprint.fingerprint_,
+                ChangelogFingerprint.subtrees_,
+                changelogFingerprintTableName,
+                ChangelogFingerprint.id_);
+    }
+
+    @Override
+    public String getUpsertChangelogFingerprintPreparedQuery(String changelogFingerprintTableName) {
+        return String.format(
+                    "INSERT INTO %s (%s, %s, %s, %s, %s) " +
+                    "VALUES (1, ?, ?, ?, now()) " +
+                    "ON CONFLICT (%s) DO UPDATE " +
+                    "SET %s = EXCLUDED.%s, " +
+                    "    %s = EXCLUDED.%s, " +
+                    "    %s = EXCLUDED.%s, " +
+                    "    %s = EXCLUDED.%s;",
+                changelogFingerprintTableName,
+                ChangelogFingerprint.id_,
+                ChangelogFingerprint.fingerprint_,
+                ChangelogFingerprint.subtrees_,
+                ChangelogFingerprint.migrations_,
+                ChangelogFingerprint.appliedAt_,
+                ChangelogFingerprint.id_,
+                ChangelogFingerprint.fingerprint_, ChangelogFingerprint.fingerprint_,
+                ChangelogFingerprint.subtrees_, ChangelogFingerprint.subtrees_,
+                ChangelogFingerprint.migrations_, ChangelogFingerprint.migrations_,
+                ChangelogFingerprint.appliedAt_, ChangelogFingerprint.appliedAt_);
+    }
+
     @Override
     public String getReleaseLockPreparedQuery(String migrationLogLockTableName) {
-        return getLockUpdatePreparedQuery(migrationLogLockTableName, false);
+        return String.format(
+                    "UPDATE %s " +
+                    "SET %s = false, " +
+                    "    %s = NULL, " +
+                    "    %s = NULL " +
+                    "WHERE %s = ?;",
+                migrationLogLockTableName,
+                MigrationLock.locked_,
+                MigrationLock.ownerId_,
+                MigrationLock.expiresAt_,
+                MigrationLock.fencingToken_);
     }
 
+    /**
+     * Takes free or expired lease, lease without expiration time is never taken over
+     */
     @Override
     public String getAcquireLockPreparedQuery(String migrationLogLockTableName) {
-        return getLockUpdatePreparedQuery(migrationLogLockTableName, true);
+        return String.format(
+                    "UPDATE %s " +
+                    "SET %s = true, " +
+                    "    %s = ?, " +
+                    "    %s = now() + (?::BIGINT * INTERVAL '1 millisecond'), " +
+                    "    %s = %s + 1 " +
+                    "WHERE %s = false OR %s < now() " +
+                    "RETURNING %s;",
+                migrationLogLockTableName,
+                MigrationLock.locked_,
+                MigrationLock.ownerId_,
+                MigrationLock.expiresAt_,
+                MigrationLock.fencingToken_, MigrationLock.fencingToken_,
+                MigrationLock.locked_, MigrationLock.expiresAt_,
+                MigrationLock.fencingToken_);
     }
 
-    private String getLockUpdatePreparedQuery(String migrationLogLockTableName, boolean locked) {
+    @Override
+    public String getExtendLockLeasePreparedQuery(String migrationLogLockTableName) {
         return String.format(
                     "UPDATE %s " +
-                    "SET %s = %b;",
+                    "SET %s = now() + (?::BIGINT * INTERVAL '1 millisecond') " +
+                    "WHERE %s = true AND %s = ? AND %s = ?;",
                 migrationLogLockTableName,
+                MigrationLock.expiresAt_,
                 MigrationLock.locked_,
-                locked);
+                MigrationLock.fencingToken_,
+                MigrationLock.ownerId_);
     }
 
+    /**
+     * Plain read, which does not lock the lease row
+     */
     @Override
-    public String getIsLockedPreparedQuery(String migrationLogLockTableName) {
+    public String getCheckLockLeasePreparedQuery(String migrationLogLockTableName) {
         return String.format(
-                    "SELECT %s " +
-                    "FROM %s " +
-                    "LIMIT 1;",
+                    "SELECT %s FROM %s " +
+                    "WHERE %s = true AND %s = ? AND %s = ? AND %s > now();",
+                MigrationLock.fencingToken_,
+                migrationLogLockTableName,
                 MigrationLock.locked_,
-                migrationLogLockTableName);
+                MigrationLock.fencingToken_,
+                MigrationLock.ownerId_,
+                MigrationLock.expiresAt_);
+    }
+
+    @Override
+    public boolean supportsAdvisoryLocks() {
+        return true;
+    }
+
+    @Override
+    public String getAdvisoryLockPreparedQuery() {
+        return "SELECT pg_advisory_lock(?);";
+    }
+
+    @Override
+    public String getTryAdvisoryLockPreparedQuery() {
+        return "SELECT pg_try_advisory_lock(?) as is_present;";
+    }
+
+    @Override
+    public String getAdvisoryUnlockPreparedQuery() {
+        return "SELECT pg_advisory_unlock(?);";
+    }
+
+    @Override
+    public boolean supportsNotifications() {
+        return true;
+    }
+
+    @Override
+    public String getListenQuery(String channel) {
+        return String.format("LISTEN \"%s\";", channel);
+    }
+
+    @Override
+    public String getUnlistenQuery(String channel) {
+        return String.format("UNLISTEN \"%s\";", channel);
+    }
+
+    @Override
+    public String getNotifyPreparedQuery() {
+        return "SELECT pg_notify(?, ?);";
+    }
+
+    @Override
+    public List<String> awaitNotifications(Connection connection, Duration timeout) throws SQLException {
+        var notifications = connection.unwrap(PGConnection.class)
+                .getNotifications((int) Math.max(timeout.toMillis(), 1));
+        List<String> payloads = new ArrayList<>();
+        if (notifications != null) {
+            for (var notification : notifications) {
+                payloads.add(notification.getParameter());
+            }
+        }
+        return payloads;
+    }
+
+    @Override
+    public IndexBuild parseConcurrentIndexBuild(String statement) {
+        var matcher = CREATE_INDEX_CONCURRENTLY.matcher(stripLeadingComments(statement));
+        if (!matcher.find()) {
+            return null;
+        }
+        return new IndexBuild(matcher.group(1), matcher.group(2), matcher.group(3));
+    }
+
+    private static String stripLeadingComments(String statement) {
+        var matcher = LEADING_COMMENTS.matcher(statement);
+        return matcher.find() ? statement.substring(matcher.end()) : statement;
+    }
+
+    /**
+     * Index name is resolved by search path, unless it is qualified by schema
+     */
+    @Override
+    public String getIndexValidityPreparedQuery() {
+        return "SELECT indisvalid as is_valid " +
+                "FROM pg_index " +
+                "WHERE indexrelid = to_regclass(?);";
+    }
+
+    @Override
+    public String getDropIndexConcurrentlyQuery(String qualifiedIndexName) {
+        return String.format("DROP INDEX CONCURRENTLY IF EXISTS %s;", qualifiedIndexName);
+    }
+
+    @Override
+    public String getSetSessionParameterPreparedQuery() {
+        return "SELECT set_config(?, ?, false);";
+    }
+
+    @Override
+    public String getResetSessionParameterQuery(String parameter) {
+        return String.format("RESET %s;", parameter);
+    }
+
+    @Override
+    public boolean supportsCopy() {
+        return true;
+    }
+
+    /**
+     * Both formats are parsed as CSV with a header line, TSV uses tab as a delimiter
+     */
+    @Override
+    public String getCopyFromStdinQuery(String target, LoadParameterValue format) {
+        switch (format) {
+            case CSV:
+                return String.format("COPY %s FROM STDIN WITH (FORMAT csv, HEADER true);", target);
+            case TSV:
+                return String.format("COPY %s FROM STDIN WITH (FORMAT csv, HEADER true, DELIMITER E'\\t');", target);
+            default:
+                throw new IllegalArgumentException("Unsupported data format: " + format);
+        }
+    }
+
+    @Override
+    public long copyIn(Connection connection, String copyQuery, InputStream data) throws SQLException, IOException {
+        return connection.unwrap(PGConnection.class)
+                .getCopyAPI()
+                .copyIn(copyQuery, data, COPY_BUFFER_SIZE);
+    }
+
+    @Override
+    public boolean isQueryCanceled(SQLException e) {
+        return QUERY_CANCELED_SQL_STATE.equals(e.getSQLState());
+    }
+
+    @Override
+    public boolean isUndefinedTable(SQLException e) {
+        return UNDEFINED_TABLE_SQL_STATE.equals(e.getSQLState());
     }
 
     @Override
@@ -105,6 +462,7 @@ public class PostgresQueryProvider implements QueryProvider {
                     "    %s     TEXT            NOT NULL,    " +
                     "    %s     BIGINT          NOT NULL,    " +
                     "    %s     TEXT            NOT NULL,    " +
+                    "    %s     TEXT            NOT NULL DEFAULT '%s', " +
                     "    %s     JSON                         " +
                     ");",
                 migrationLogTableName,
@@ -116,14 +474,21 @@ public class PostgresQueryProvider implements QueryProvider {
                 MigrationLog.runModifier_,
                 MigrationLog.runOrder_,
                 MigrationLog.hash_,
+                MigrationLog.hashAlgorithm_, HashAlgorithm.MD5.getName(),
                 MigrationLog.userDefinedParamsJson_)
             + STATEMENT_SEPARATOR
             + String.format(
                 "CREATE TABLE IF NOT EXISTS %s ( " +
-                "    %s BOOLEAN NOT NULL DEFAULT false " +
+                "    %s BOOLEAN     NOT NULL DEFAULT false, " +
+                "    %s TEXT, " +
+                "    %s TIMESTAMPTZ, " +
+                "    %s BIGINT      NOT NULL DEFAULT 0 " +
                 ");",
                 migrationLogLockTableName,
-                MigrationLock.locked_)
+                MigrationLock.locked_,
+                MigrationLock.ownerId_,
+                MigrationLock.expiresAt_,
+                MigrationLock.fencingToken_)
             + STATEMENT_SEPARATOR
             + String.format(
                 "INSERT INTO %s " +
@@ -1,17 +1,100 @@
 package ru.sequoio.library.services.db.query;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import ru.sequoio.library.domain.migration.IndexBuild;
+import ru.sequoio.library.domain.migration.migration_paramters.LoadParameterValue;
+
 public interface QueryProvider {
 
     String getCreateMigrationLogAndMigrationLogLockQuery(String migrationLogTableName, String migrationLogLockTableName);
+    String getUpgradeMigrationLogQuery(String migrationLogTableName);
+    String getUpgradeMigrationLogLockQuery(String migrationLogLockTableName);
+    String getColumnExistsPreparedQuery();
 
     // Log queries
     String getTableExistsPreparedQuery();
+    /**
+     * Selects only columns needed for ordering and hash comparison: name, hash, run order and run modifier
+     */
     String getSelectMigrationLogPreparedQuery(String migrationLogTableName);
     String getInsertMigrationLogQuery(String migrationLogTableName);
     String getUpdateMigrationLogPreparedQuery(String migrationLogTableName);
 
+    // Run history queries
+    String getCreateMigrationRunQuery(String migrationRunTableName);
+    String getInsertMigrationRunPreparedQuery(String migrationRunTableName);
+    /**
+     * Selects name and duration of the last succeeded run of each migration from the array of names
+     */
+    String getSelectLastMigrationRunsPreparedQuery(String migrationRunTableName);
+
+    // Changelog fingerprint queries
+    String getCreateChangelogFingerprintQuery(String changelogFingerprintTableName);
+    String getSelectChangelogFingerprintQuery(String changelogFingerprintTableName);
+    String getUpsertChangelogFingerprintPreparedQuery(String changelogFingerprintTableName);
+
     // Lock queries
     String getReleaseLockPreparedQuery(String migrationLogLockTableName);
     String getAcquireLockPreparedQuery(String migrationLogLockTableName);
-    String getIsLockedPreparedQuery(String migrationLogLockTableName);
+    String getExtendLockLeasePreparedQuery(String migrationLogLockTableName);
+    String getCheckLockLeasePreparedQuery(String migrationLogLockTableName);
+
+    // Advisory lock queries
+    boolean supportsAdvisoryLocks();
+    String getAdvisoryLockPreparedQuery();
+    String getTryAdvisoryLockPreparedQuery();
+    String getAdvisoryUnlockPreparedQuery();
+
+    // Notification queries
+    boolean supportsNotifications();
+    String getListenQuery(String channel);
+    String getUnlistenQuery(String channel);
+    String getNotifyPreparedQuery();
+
+    /**
+     * Waits for notifications on channels, which connection listens to
+     *
+     * @return payloads of received notifications, empty if none received in time
+     */
+    List<String> awaitNotifications(Connection connection, Duration timeout) throws SQLException;
+
+    // Index build queries
+    /**
+     * @return index built by 'CREATE INDEX CONCURRENTLY' statement, 'null' for other statements
+     */
+    IndexBuild parseConcurrentIndexBuild(String statement);
+    /**
+     * Selects validity of the index as 'is_valid', no rows if index does not exist
+     */
+    String getIndexValidityPreparedQuery();
+    String getDropIndexConcurrentlyQuery(String qualifiedIndexName);
+    String getSetSessionParameterPreparedQuery();
+    String getResetSessionParameterQuery(String parameter);
+
+    // Data load queries
+    boolean supportsCopy();
+    String getCopyFromStdinQuery(String target, LoadParameterValue format);
+
+    /**
+     * Streams data into the database with COPY query
+     *
+     * @return number of loaded rows
+     */
+    long copyIn(Connection connection, String copyQuery, InputStream data) throws SQLException, IOException;
+
+    /**
+     * @return 'true' if statement was canceled by query timeout
+     */
+    boolean isQueryCanceled(SQLException e);
+
+    /**
+     * @return 'true' if statement failed, because queried table does not exist
+     */
+    boolean isUndefinedTable(SQLException e);
 }
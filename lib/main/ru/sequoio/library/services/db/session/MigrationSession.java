@@ -0,0 +1,164 @@
+package ru.sequoio.library.services.db.session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Database session pinned to a single connection for the whole migration run <br/>
+ * Connection is either checked out once from a {@link DataSource} or supplied by the caller.
+ * Caller-supplied connections are never closed by the session and must be in auto-commit mode,
+ * checked out connections are switched to it and their initial mode is restored <br/>
+ * Prepared statements for service queries are cached by query text and reused
+ */
+public class MigrationSession implements AutoCloseable {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MigrationSession.class);
+
+    private final Connection connection;
+    private final boolean ownsConnection;
+    private final boolean initialAutoCommit;
+    private final Map<String, PreparedStatement> preparedStatements;
+
+    private boolean lockVerified;
+    private int statementsPrepared;
+    private int statementsReused;
+    private int commits;
+
+    private MigrationSession(Connection connection, boolean ownsConnection) throws SQLException {
+        this.connection = connection;
+        this.ownsConnection = ownsConnection;
+        this.initialAutoCommit = connection.getAutoCommit();
+        this.preparedStatements = new HashMap<>();
+        if (!initialAutoCommit) {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Checks out a single connection from data source, which is closed with the session
+     */
+    public static MigrationSession open(DataSource dataSource) throws SQLException {
+        LOGGER.debug("Opening migration session on a pooled connection");
+        return new MigrationSession(dataSource.getConnection(), true);
+    }
+
+    /**
+     * Wraps caller-supplied connection, which stays open after the session is closed <br/>
+     * Connection must be in auto-commit mode, as switching to it would commit the caller's open transaction
+     *
+     * @throws IllegalArgumentException if connection is not in auto-commit mode
+     */
+    public static MigrationSession of(Connection connection) throws SQLException {
+        LOGGER.debug("Opening migration session on a caller-supplied connection");
+        if (!connection.getAutoCommit()) {
+            throw new IllegalArgumentException("Caller-supplied connection must be in auto-commit mode, " +
+                    "migrations are not run inside of the caller's transaction");
+        }
+        return new MigrationSession(connection, false);
+    }
+
+    /**
+     * @return pinned connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Every call is counted as a round-trip of a service query, as each returned statement is executed once
+     *
+     * @return cached prepared statement for the query, prepared on first use
+     */
+    public PreparedStatement prepare(String query) throws SQLException {
+        var statement = preparedStatements.get(query);
+        if (statement != null) {
+            statementsReused++;
+            statement.clearParameters();
+            return statement;
+        }
+        statement = connection.prepareStatement(query);
+        statementsPrepared++;
+        preparedStatements.put(query, statement);
+        return statement;
+    }
+
+    /**
+     * Starts a transaction, if none is in progress
+     */
+    public void begin() throws SQLException {
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+    }
+
+    /**
+     * Commits current transaction and switches session back to auto-commit mode
+     */
+    public void commit() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+            connection.setAutoCommit(true);
+            lockVerified = false;
+            commits++;
+        }
+    }
+
+    /**
+     * Rolls back current transaction and switches session back to auto-commit mode
+     */
+    public void rollback() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+            lockVerified = false;
+        }
+    }
+
+    public boolean isInTransaction() throws SQLException {
+        return !connection.getAutoCommit();
+    }
+
+    /**
+     * @return 'true' if migration lock was verified in current transaction
+     */
+    public boolean isLockVerified() {
+        return lockVerified;
+    }
+
+    public void setLockVerified() {
+        this.lockVerified = true;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        LOGGER.info("Migration session finished: " +
+                        "connection checkouts {}, " +
+                        "service queries {} (statements prepared {}, reused {}), " +
+                        "commits {}",
+                ownsConnection ? 1 : 0,
+                statementsPrepared + statementsReused, statementsPrepared, statementsReused,
+                commits);
+        try {
+            for (var statement : preparedStatements.values()) {
+                statement.close();
+            }
+            preparedStatements.clear();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(initialAutoCommit);
+        } finally {
+            if (ownsConnection) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.sequoio.library.services.monitoring;
+
+import ru.sequoio.library.domain.migration.Migration;
+
+/**
+ * Receives events of migration process, all durations are in nanoseconds <br/>
+ * Callbacks are invoked synchronously on the migrating thread, so they must be fast and must not throw.
+ * With parallel application migration, statement and commit callbacks are invoked from several threads. <br/>
+ * All callbacks do nothing by default
+ */
+public interface MigrationListener {
+
+    MigrationListener NONE = new MigrationListener() { };
+
+    default void onParseStarted() {
+    }
+
+    default void onParseFinished(int migrationsCount, long durationNanos) {
+    }
+
+    /**
+     * @param waitNanos time spent waiting for migration lock
+     */
+    default void onLockAcquired(long waitNanos) {
+    }
+
+    default void onLogLoaded(int recordsCount, long durationNanos) {
+    }
+
+    /**
+     * @param pendingCount number of migrations passed to the runner, applied or not
+     */
+    default void onRunStarted(int pendingCount) {
+    }
+
+    default void onMigrationStarted(Migration migration) {
+    }
+
+    /**
+     * @param shouldBeApplied 'false' if migration is skipped and only its log record is written
+     */
+    default void onSifted(Migration migration, boolean shouldBeApplied) {
+    }
+
+    /**
+     * @param statement index of statement in migration, 'load' migration has a single COPY statement
+     * @param rowsAffected update count of statement, negative if statement has no update count
+     */
+    default void onStatementExecuted(Migration migration, int statement, long rowsAffected, long durationNanos) {
+    }
+
+    /**
+     * Invoked after migration log record is written, migration may still be not committed in group commit
+     */
+    default void onMigrationFinished(Migration migration, boolean applied, long durationNanos) {
+    }
+
+    /**
+     * @param statementsCount number of statements and log records committed in transaction
+     */
+    default void onCommit(int statementsCount, long durationNanos) {
+    }
+
+    default void onRunFinished(boolean succeeded, long durationNanos) {
+    }
+}
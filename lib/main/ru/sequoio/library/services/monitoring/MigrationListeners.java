@@ -0,0 +1,95 @@
+package ru.sequoio.library.services.monitoring;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.Migration;
+
+/**
+ * Passes events to several listeners in order <br/>
+ * Failure of a listener is logged and does not affect migration or other listeners
+ */
+public class MigrationListeners implements MigrationListener {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MigrationListeners.class);
+
+    private final List<MigrationListener> listeners;
+
+    private MigrationListeners(List<MigrationListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    public static MigrationListener of(List<MigrationListener> listeners) {
+        if (listeners.isEmpty()) {
+            return NONE;
+        }
+        return new MigrationListeners(List.copyOf(listeners));
+    }
+
+    @Override
+    public void onParseStarted() {
+        forEach(MigrationListener::onParseStarted);
+    }
+
+    @Override
+    public void onParseFinished(int migrationsCount, long durationNanos) {
+        forEach(listener -> listener.onParseFinished(migrationsCount, durationNanos));
+    }
+
+    @Override
+    public void onLockAcquired(long waitNanos) {
+        forEach(listener -> listener.onLockAcquired(waitNanos));
+    }
+
+    @Override
+    public void onLogLoaded(int recordsCount, long durationNanos) {
+        forEach(listener -> listener.onLogLoaded(recordsCount, durationNanos));
+    }
+
+    @Override
+    public void onRunStarted(int pendingCount) {
+        forEach(listener -> listener.onRunStarted(pendingCount));
+    }
+
+    @Override
+    public void onMigrationStarted(Migration migration) {
+        forEach(listener -> listener.onMigrationStarted(migration));
+    }
+
+    @Override
+    public void onSifted(Migration migration, boolean shouldBeApplied) {
+        forEach(listener -> listener.onSifted(migration, shouldBeApplied));
+    }
+
+    @Override
+    public void onStatementExecuted(Migration migration, int statement, long rowsAffected, long durationNanos) {
+        forEach(listener -> listener.onStatementExecuted(migration, statement, rowsAffected, durationNanos));
+    }
+
+    @Override
+    public void onMigrationFinished(Migration migration, boolean applied, long durationNanos) {
+        forEach(listener -> listener.onMigrationFinished(migration, applied, durationNanos));
+    }
+
+    @Override
+    public void onCommit(int statementsCount, long durationNanos) {
+        forEach(listener -> listener.onCommit(statementsCount, durationNanos));
+    }
+
+    @Override
+    public void onRunFinished(boolean succeeded, long durationNanos) {
+        forEach(listener -> listener.onRunFinished(succeeded, durationNanos));
+    }
+
+    private void forEach(Consumer<MigrationListener> event) {
+        for (var listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Migration listener {} failed", listener, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package ru.sequoio.library.services.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import ru.sequoio.library.domain.migration.Migration;
+
+/**
+ * Built-in listener, which keeps counters and latency histograms of migration process <br/>
+ * Counters and histograms are cumulative over runs, progress is reset on each run.
+ * Metrics can be exposed as MBean 'ru.sequoio:type=MigrationMetrics,name=...' to watch a running migration
+ */
+public class MigrationMetrics implements MigrationListener, MigrationMetricsMBean {
+
+    private static final String OBJECT_NAME = "ru.sequoio:type=MigrationMetrics,name=";
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+
+    private final LatencyHistogram migrationLatency = new LatencyHistogram();
+    private final LatencyHistogram statementLatency = new LatencyHistogram();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LongAdder appliedMigrations = new LongAdder();
+    private final LongAdder skippedMigrations = new LongAdder();
+    private final LongAdder rowsAffected = new LongAdder();
+    private final AtomicLong completedMigrations = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong lockWaitNanos = new AtomicLong();
+    private final AtomicLong logLoadNanos = new AtomicLong();
+    private final AtomicLong runNanos = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile String currentMigration;
+    private volatile long totalMigrations;
+    private volatile long runStartedAt;
+    private ObjectName objectName;
+
+    /**
+     * Registers metrics in platform MBean server
+     *
+     * @param name distinguishes several migrations in one JVM
+     */
+    public synchronized MigrationMetrics registerMBean(String name) {
+        try {
+            objectName = new ObjectName(OBJECT_NAME + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return this;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register migration metrics MBean " + name, e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister migration metrics MBean " + objectName, e);
+        }
+    }
+
+    @Override
+    public void onParseFinished(int migrationsCount, long durationNanos) {
+        parseNanos.set(durationNanos);
+    }
+
+    @Override
+    public void onLockAcquired(long waitNanos) {
+        lockWaitNanos.set(waitNanos);
+    }
+
+    @Override
+    public void onLogLoaded(int recordsCount, long durationNanos) {
+        logLoadNanos.set(durationNanos);
+    }
+
+    @Override
+    public void onRunStarted(int pendingCount) {
+        completedMigrations.set(0);
+        totalMigrations = pendingCount;
+        runStartedAt = System.nanoTime();
+        running = true;
+    }
+
+    @Override
+    public void onMigrationStarted(Migration migration) {
+        currentMigration = migration.getName();
+    }
+
+    @Override
+    public void onStatementExecuted(Migration migration, int statement, long rowsAffected, long durationNanos) {
+        statementLatency.record(durationNanos);
+        if (rowsAffected > 0) {
+            this.rowsAffected.add(rowsAffected);
+        }
+    }
+
+    @Override
+    public void onMigrationFinished(Migration migration, boolean applied, long durationNanos) {
+        migrationLatency.record(durationNanos);
+        (applied ? appliedMigrations : skippedMigrations).increment();
+        completedMigrations.incrementAndGet();
+    }
+
+    @Override
+    public void onCommit(int statementsCount, long durationNanos) {
+        commitLatency.record(durationNanos);
+    }
+
+    @Override
+    public void onRunFinished(boolean succeeded, long durationNanos) {
+        runNanos.set(durationNanos);
+        running = false;
+        currentMigration = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public String getCurrentMigration() {
+        return running ? currentMigration : null;
+    }
+
+    @Override
+    public long getCompletedMigrations() {
+        return completedMigrations.get();
+    }
+
+    @Override
+    public long getTotalMigrations() {
+        return totalMigrations;
+    }
+
+    @Override
+    public long getAppliedMigrations() {
+        return appliedMigrations.sum();
+    }
+
+    @Override
+    public long getSkippedMigrations() {
+        return skippedMigrations.sum();
+    }
+
+    @Override
+    public long getExecutedStatements() {
+        return statementLatency.getCount();
+    }
+
+    @Override
+    public long getRowsAffected() {
+        return rowsAffected.sum();
+    }
+
+    @Override
+    public long getCommits() {
+        return commitLatency.getCount();
+    }
+
+    @Override
+    public double getParseTimeMillis() {
+        return toMillis(parseNanos.get());
+    }
+
+    @Override
+    public double getLockWaitMillis() {
+        return toMillis(lockWaitNanos.get());
+    }
+
+    @Override
+    public double getLogLoadTimeMillis() {
+        return toMillis(logLoadNanos.get());
+    }
+
+    /**
+     * @return time of the current run, if migration is running, or of the last run otherwise
+     */
+    @Override
+    public double getRunTimeMillis() {
+        return toMillis(running ? System.nanoTime() - runStartedAt : runNanos.get());
+    }
+
+    @Override
+    public double getMigrationP50Millis() {
+        return toMillis(migrationLatency.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getMigrationP99Millis() {
+        return toMillis(migrationLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getMigrationMaxMillis() {
+        return toMillis(migrationLatency.getMax());
+    }
+
+    @Override
+    public double getStatementP50Millis() {
+        return toMillis(statementLatency.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getStatementP99Millis() {
+        return toMillis(statementLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getStatementMaxMillis() {
+        return toMillis(statementLatency.getMax());
+    }
+
+    @Override
+    public double getCommitP50Millis() {
+        return toMillis(commitLatency.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getCommitP99Millis() {
+        return toMillis(commitLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getCommitMaxMillis() {
+        return toMillis(commitLatency.getMax());
+    }
+
+    public LatencyHistogram getMigrationLatency() {
+        return migrationLatency;
+    }
+
+    public LatencyHistogram getStatementLatency() {
+        return statementLatency;
+    }
+
+    public LatencyHistogram getCommitLatency() {
+        return commitLatency;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / NANOS_IN_MILLI;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.sequoio.library.services.monitoring;
+
+/**
+ * JMX view of {@link MigrationMetrics}, durations are in milliseconds
+ */
+public interface MigrationMetricsMBean {
+
+    boolean isRunning();
+
+    /**
+     * @return name of the last started migration, 'null' if migration is not running
+     */
+    String getCurrentMigration();
+
+    long getCompletedMigrations();
+
+    long getTotalMigrations();
+
+    long getAppliedMigrations();
+
+    long getSkippedMigrations();
+
+    long getExecutedStatements();
+
+    long getRowsAffected();
+
+    long getCommits();
+
+    double getParseTimeMillis();
+
+    double getLockWaitMillis();
+
+    double getLogLoadTimeMillis();
+
+    double getRunTimeMillis();
+
+    double getMigrationP50Millis();
+
+    double getMigrationP99Millis();
+
+    double getMigrationMaxMillis();
+
+    double getStatementP50Millis();
+
+    double getStatementP99Millis();
+
+    double getStatementMaxMillis();
+
+    double getCommitP50Millis();
+
+    double getCommitP99Millis();
+
+    double getCommitMaxMillis();
+}
@@ -0,0 +1,20 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.sequoio.ChangelogScan")
+@Label("Changelog Scan")
+@Category("Sequoio")
+@Description("Search of configuration and migration files in classpath")
+public class ChangelogScanEvent extends Event {
+
+    @Label("Resources Directory")
+    public String directory;
+
+    @Label("Migration Files")
+    public int files;
+}
@@ -0,0 +1,20 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.sequoio.FileParse")
+@Label("Migration File Parse")
+@Category("Sequoio")
+@Description("Parsing of migration headers of a file")
+public class FileParseEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Migrations")
+    public int migrations;
+}
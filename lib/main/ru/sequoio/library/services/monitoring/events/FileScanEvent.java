@@ -0,0 +1,23 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.sequoio.FileScan")
+@Label("Migration File Scan")
+@Category("Sequoio")
+@Description("Search of migration headers in a file or lookup of the file in parse cache")
+public class FileScanEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Migrations")
+    public int migrations;
+
+    @Label("Read From Parse Cache")
+    public boolean cached;
+}
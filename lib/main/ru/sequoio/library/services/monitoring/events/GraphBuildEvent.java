@@ -0,0 +1,23 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.sequoio.GraphBuild")
+@Label("Migration Graph Build")
+@Category("Sequoio")
+@Description("Ordering of migrations by 'runBefore' and 'runAfter' parameters")
+public class GraphBuildEvent extends Event {
+
+    @Label("Migrations")
+    public int migrations;
+
+    @Label("Edges")
+    public int edges;
+
+    @Label("Clusters")
+    public int clusters;
+}
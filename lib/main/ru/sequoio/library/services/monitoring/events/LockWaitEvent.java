@@ -0,0 +1,17 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.sequoio.LockWait")
+@Label("Migration Lock Wait")
+@Category("Sequoio")
+@Description("Wait for migration lock")
+public class LockWaitEvent extends Event {
+
+    @Label("Lock Mode")
+    public String lockMode;
+}
@@ -0,0 +1,17 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ru.sequoio.LogLoad")
+@Label("Migration Log Load")
+@Category("Sequoio")
+@Description("Load of migration log records")
+public class LogLoadEvent extends Event {
+
+    @Label("Records")
+    public int records;
+}
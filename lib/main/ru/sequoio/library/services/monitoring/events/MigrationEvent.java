@@ -0,0 +1,28 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ru.sequoio.Migration")
+@Label("Migration")
+@Category("Sequoio")
+@Description("Processing of a migration: sifting, execution and log record write")
+@StackTrace(false)
+public class MigrationEvent extends Event {
+
+    @Label("Migration")
+    public String migration;
+
+    @Label("File")
+    public String file;
+
+    @Label("Run Status")
+    public String runStatus;
+
+    @Label("Applied")
+    public boolean applied;
+}
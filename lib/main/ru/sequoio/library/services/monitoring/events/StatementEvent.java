@@ -0,0 +1,28 @@
+package ru.sequoio.library.services.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ru.sequoio.Statement")
+@Label("Migration Statement")
+@Category("Sequoio")
+@Description("Execution of a statement or of a batch of statements of a migration")
+@StackTrace(false)
+public class StatementEvent extends Event {
+
+    @Label("Migration")
+    public String migration;
+
+    @Label("Statement Index")
+    public int statementIndex;
+
+    @Label("Statements In Batch")
+    public int statementsCount;
+
+    @Label("Rows Affected")
+    public long rowsAffected;
+}
@@ -0,0 +1,6 @@
+/**
+ * JDK Flight Recorder events of migration process, all in category 'Sequoio' <br/>
+ * Events are created on every call, but their fields are filled and they are committed only if JFR records them,
+ * so with JFR off the overhead is an allocation the JIT usually removes
+ */
+package ru.sequoio.library.services.monitoring.events;
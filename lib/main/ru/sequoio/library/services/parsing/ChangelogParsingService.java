@@ -12,10 +12,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -23,6 +23,9 @@ import org.slf4j.LoggerFactory;
 import ru.sequoio.library.domain.migration.Migration;
 import ru.sequoio.library.domain.graph.Graph;
 import ru.sequoio.library.services.db.application.MigrationApplicationService;
+import ru.sequoio.library.services.monitoring.events.ChangelogScanEvent;
+import ru.sequoio.library.services.monitoring.events.FileParseEvent;
+import ru.sequoio.library.services.monitoring.events.FileScanEvent;
 import ru.sequoio.library.utils.IOUtils;
 
 public class ChangelogParsingService {
@@ -37,24 +40,39 @@ public class ChangelogParsingService {
     private final String[] classpath;
     private final String sequoioResourcesDirectory;
     private final MigrationParsingService migrationParser;
+    private final Path parseCacheFile;
 
     public ChangelogParsingService(MigrationParsingService migrationParser,
                                    String sequoioResourcesDirectory) {
+        this(migrationParser, sequoioResourcesDirectory, null);
+    }
+
+    /**
+     * @param parseCacheFile file of parse cache, changelog is parsed without cache if 'null'
+     */
+    public ChangelogParsingService(MigrationParsingService migrationParser,
+                                   String sequoioResourcesDirectory,
+                                   Path parseCacheFile) {
         this.migrationParser = migrationParser;
         this.classpath = System.getProperty(CLASS_PATH_PROPERTY).split(CLASS_PATH_SEPARATOR);
         this.sequoioResourcesDirectory = sequoioResourcesDirectory;
+        this.parseCacheFile = parseCacheFile;
     }
 
     /**
      * Finds and reads from classpath all *.seq files with correct headers
-     * Then splits them into migrations and constructs migration graph
+     * Then splits them into migrations and constructs migration graph <br/>
+     * Migration files are scanned, parsed and hashed in parallel on the common fork-join pool.
+     * Natural order is assigned by the order of migration files in configs and of migrations in files,
+     * so it does not depend on the parallel execution
      */
     public Graph<Migration> parseChangelog() {
         LOGGER.debug("Parsing changelog files in directory {} from classpath {}",
                 sequoioResourcesDirectory, Arrays.toString(classpath));
 
-        AtomicInteger index = new AtomicInteger();
-        List<Migration> migrations =
+        var scanEvent = new ChangelogScanEvent();
+        scanEvent.begin();
+        List<Path> migrationFilePaths =
                 Arrays.stream(classpath)
                 .map(Path::of)
                 .flatMap(this::getResourceDirectories) // search only in specified 'sequoio config' directory
@@ -62,16 +80,78 @@ public class ChangelogParsingService {
                 .distinct() // remove duplicates
                 .filter(this::hasSequoioConfigHeader) // check file header in config files
                 .flatMap(this::getMigrationFilePaths) // get all migrations paths
-                .flatMap(p -> migrationParser.parseMigrations(p, index)) // parse all migrations in natural order
                 .collect(Collectors.toList());
+        scanEvent.end();
+        if (scanEvent.shouldCommit()) {
+            scanEvent.directory = sequoioResourcesDirectory;
+            scanEvent.files = migrationFilePaths.size();
+            scanEvent.commit();
+        }
+
+        var cache = parseCacheFile == null ? null : ParseCache.load(parseCacheFile, migrationParser.getHashAlgorithm());
+        List<ParseCache.ParsedFile> files = migrationFilePaths.parallelStream()
+                .map(p -> scanFile(cache, p)) // find migrations in files, keeping files order
+                .collect(Collectors.toList());
+
+        int[] firstOrders = new int[files.size()];
+        for (int i = 1; i < files.size(); i++) {
+            firstOrders[i] = firstOrders[i - 1] + files.get(i - 1).getMigrationsCount();
+        }
 
-        LOGGER.debug("Found {} migrations", migrations.size());
+        List<Migration> migrations = IntStream.range(0, files.size())
+                .parallel()
+                .mapToObj(i -> parseFile(files.get(i), migrationFilePaths.get(i), firstOrders[i])) // parse all migrations in natural order
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        migrations.parallelStream().forEach(this::analyze);
+        if (cache != null) {
+            cache.save(files);
+        }
+
+        LOGGER.debug("Found {} migrations in {} files", migrations.size(), files.size());
 
         assertUniqueNames(migrations);
 
         return new Graph<>(migrations);
     }
 
+    /**
+     * Hash and statement boundaries are calculated once and kept by migration <br/>
+     * Boundaries mark concurrent index commands, but migrations mixing them with other statements
+     * are rejected only when applied, as ignored, already applied or other environment migrations are never run
+     */
+    private void analyze(Migration migration) {
+        migration.getHash();
+        migration.getStatementBoundaries();
+    }
+
+    private ParseCache.ParsedFile scanFile(ParseCache cache, Path path) {
+        var event = new FileScanEvent();
+        event.begin();
+        var file = cache == null ? ParseCache.scan(path, migrationParser) : cache.read(path, migrationParser);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = path.toString();
+            event.migrations = file.getMigrationsCount();
+            event.cached = file.isCached();
+            event.commit();
+        }
+        return file;
+    }
+
+    private List<Migration> parseFile(ParseCache.ParsedFile file, Path path, int firstOrder) {
+        var event = new FileParseEvent();
+        event.begin();
+        var migrations = file.getMigrations(firstOrder);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = path.toString();
+            event.migrations = migrations.size();
+            event.commit();
+        }
+        return migrations;
+    }
+
     private void assertUniqueNames(List<Migration> migrations) {
         var duplicates = migrations.stream().map(Migration::getTitle)
                 .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
@@ -0,0 +1,212 @@
+package ru.sequoio.library.services.parsing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.sequoio.library.domain.migration.MigrationBody;
+import ru.sequoio.library.exception.InvalidFileFormatException;
+
+/**
+ * Reads migration file once through a memory-mapped buffer <br/>
+ * Migration headers are found by scanning bytes, headers and bodies are kept as regions of the buffer and are not decoded.
+ * Header is a line '--migration ' followed by characters from [a-zA-Z0-9_\- :#], so it is always ASCII
+ */
+class MigrationFileScanner {
+
+    private static final byte[] HEADER_PREFIX = "--migration ".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private int[] headers = new int[16];
+    private int headersCount;
+    private final List<MigrationBody> bodies = new ArrayList<>();
+    private int[] bodyOffsets = new int[16];
+    private String fileHeader;
+
+    private MigrationFileScanner(Path path) {
+        this.path = path;
+        this.buffer = map(path);
+    }
+
+    static MigrationFileScanner scan(Path path) {
+        var scanner = new MigrationFileScanner(path);
+        scanner.scan();
+        return scanner;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return text before the first migration header, 'null' if there are no migrations
+     */
+    String getFileHeader() {
+        return fileHeader;
+    }
+
+    int getHeadersCount() {
+        return headersCount;
+    }
+
+    /**
+     * @return offset of the first byte of header after '--migration '
+     */
+    int getHeaderStart(int header) {
+        return headers[header * 2];
+    }
+
+    /**
+     * @return offset after the last byte of header, before line feed
+     */
+    int getHeaderEnd(int header) {
+        return headers[header * 2 + 1];
+    }
+
+    byte byteAt(int offset) {
+        return buffer.get(offset);
+    }
+
+    /**
+     * @return ASCII text of header region
+     */
+    String getText(int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) buffer.get(i);
+        }
+        return new String(chars);
+    }
+
+    String getHeader(int header) {
+        return getText(getHeaderStart(header) - HEADER_PREFIX.length, getHeaderEnd(header));
+    }
+
+    List<MigrationBody> getBodies() {
+        return bodies;
+    }
+
+    int getBodyStart(int body) {
+        return bodyOffsets[body * 2];
+    }
+
+    int getBodyEnd(int body) {
+        return bodyOffsets[body * 2 + 1];
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    private void scan() {
+        int length = buffer.limit();
+        int bodyStart = -1;
+        int i = 0;
+        while ((i = indexOfHeaderPrefix(i)) >= 0) {
+            int j = i + HEADER_PREFIX.length;
+            while (j < length && isHeaderChar(buffer.get(j))) {
+                j++;
+            }
+            if (j == i + HEADER_PREFIX.length || j == length || buffer.get(j) != '\n') {
+                i++;
+                continue;
+            }
+            if (bodyStart < 0) {
+                fileHeader = decode(0, i).strip();
+            } else {
+                addBody(bodyStart, i);
+            }
+            addHeader(i + HEADER_PREFIX.length, j);
+            bodyStart = j + 1;
+            i = bodyStart;
+        }
+        if (bodyStart >= 0) {
+            addBody(bodyStart, length);
+        }
+    }
+
+    private void addHeader(int start, int end) {
+        if (headersCount * 2 == headers.length) {
+            headers = Arrays.copyOf(headers, headers.length * 2);
+        }
+        headers[headersCount * 2] = start;
+        headers[headersCount * 2 + 1] = end;
+        headersCount++;
+    }
+
+    private void addBody(int start, int end) {
+        while (start < end && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            throw new InvalidFileFormatException(path.toString(),
+                    String.format("migration '%s' has empty body", getHeader(headersCount - 1)));
+        }
+        int body = bodies.size();
+        if (body * 2 == bodyOffsets.length) {
+            bodyOffsets = Arrays.copyOf(bodyOffsets, bodyOffsets.length * 2);
+        }
+        bodyOffsets[body * 2] = start;
+        bodyOffsets[body * 2 + 1] = end;
+        bodies.add(MigrationBody.of(buffer, start, end));
+    }
+
+    private int indexOfHeaderPrefix(int from) {
+        int last = buffer.limit() - HEADER_PREFIX.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) == HEADER_PREFIX[0] && matchesHeaderPrefix(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesHeaderPrefix(int offset) {
+        for (int k = 1; k < HEADER_PREFIX.length; k++) {
+            if (buffer.get(offset + k) != HEADER_PREFIX[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int start, int end) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate().position(start).limit(end)).toString();
+    }
+
+    private static boolean isHeaderChar(byte b) {
+        return b >= 'a' && b <= 'z'
+                || b >= 'A' && b <= 'Z'
+                || b >= '0' && b <= '9'
+                || b == '_' || b == '-' || b == ' ' || b == ':' || b == '#';
+    }
+
+    /**
+     * Same as {@link String#strip()} for ASCII, multibyte UTF-8 sequences are never whitespace
+     */
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && Character.isWhitespace((char) b);
+    }
+
+    static ByteBuffer map(Path path) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new InvalidFileFormatException(path.toString(), "migration file must be smaller than 2 GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -2,15 +2,10 @@ package ru.sequoio.library.services.parsing;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.MatchResult;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -18,90 +13,115 @@ import org.slf4j.LoggerFactory;
 import ru.sequoio.library.domain.migration.Migration;
 import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
 import ru.sequoio.library.exception.InvalidFileFormatException;
-import ru.sequoio.library.utils.IOUtils;
+import ru.sequoio.library.utils.HashAlgorithm;
 
 public class MigrationParsingService {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(MigrationParsingService.class);
     private static final String USER_DEFINED_PARAM_NAME_PREFIX = "#";
-    private static final String HEADER_START_TEMPLATE = "--migration %s:%s";
-    private static final String PARAMS_SPLIT_REGEXP = " ";
+    private static final byte PARAMS_SEPARATOR = ' ';
     private static final String MIGRATION_FILE_HEADER = "--sequoio-migration-file";
-    private static final String MIGRATION_HEADER_REGEXP = "(--migration )([a-zA-Z0-9_\\- :#]+)";
-    private static final String MIGRATION_HEADER_REGEXP_CR = MIGRATION_HEADER_REGEXP + "(\n)";
-    private static final String PARAMS_KEY_VALUE_SEPARATOR = ":";
+    private static final byte PARAMS_KEY_VALUE_SEPARATOR = ':';
 
-    public Stream<Migration> parseMigrations(Path path, AtomicInteger order) {
-        LOGGER.debug("Parsing migrations in file {}", path);
+    private final HashAlgorithm hashAlgorithm;
 
-        List<String> migrationHeaders = getMigrationHeaders(path);
-        if (migrationHeaders.isEmpty()) {
-            return Stream.empty();
-        }
-        return getMigrations(path, migrationHeaders, order);
+    public MigrationParsingService() {
+        this(HashAlgorithm.MD5);
     }
 
-    private List<String> getMigrationHeaders(Path path) {
-        LOGGER.debug("Getting migrations headers in file {}", path);
-        Scanner s = new Scanner(IOUtils.getInputStream(path));
-        var headers = s.findAll(MIGRATION_HEADER_REGEXP_CR)
-                                    .map(MatchResult::group)
-                                    .collect(Collectors.toList());
-        LOGGER.debug("Found {} migration headers in file {}", headers.size(), path);
-        return headers;
+    /**
+     * @param hashAlgorithm algorithm of hashes of parsed migrations
+     */
+    public MigrationParsingService(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
     }
 
-    private Stream<Migration> getMigrations(Path path, List<String> headers, AtomicInteger order) {
-        AtomicInteger idx = new AtomicInteger(0);
-        Scanner s = new Scanner(IOUtils.getInputStream(path));
-        s.useDelimiter(MIGRATION_HEADER_REGEXP_CR);
-        String migrationFileHeader = s.next();
-        validateMigrationFileHeader(migrationFileHeader);
-
-        List<Migration> migrations = new ArrayList<>();
-        while (s.hasNext()) {
-            String header = headers.get(idx.getAndIncrement()).strip();
-            String body = s.next().strip();
-            var migrationBuilder = Migration.builder();
-            parseMigrationHeader(header, migrationBuilder);
-            migrations.add(migrationBuilder.build(path, order.getAndIncrement(), body));
-        }
-        LOGGER.debug("Found {} migrations in file {}", migrations.size(), path);
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
 
-        assert migrations.size() == headers.size();
+    /**
+     * Reads migration file once, bodies of parsed migrations stay in the memory-mapped file
+     */
+    public Stream<Migration> parseMigrations(Path path, AtomicInteger order) {
+        var file = scan(path);
+        var migrations = parseMigrations(file, order.getAndAdd(file.getHeadersCount()));
         return migrations.stream();
     }
 
-    private void parseMigrationHeader(String header, Migration.MigrationBuilder migrationBuilder) {
-        LOGGER.debug("Parsing migration header {}", header);
+    /**
+     * Finds migration headers and bodies in file, so the number of migrations is known before they are parsed
+     */
+    MigrationFileScanner scan(Path path) {
+        LOGGER.debug("Scanning migrations in file {}", path);
+        var file = MigrationFileScanner.scan(path);
+        LOGGER.debug("Found {} migration headers in file {}", file.getHeadersCount(), path);
+        return file;
+    }
+
+    /**
+     * @param firstOrder natural order of the first migration in file
+     */
+    List<Migration> parseMigrations(MigrationFileScanner file, int firstOrder) {
+        var path = file.getPath();
+        int headersCount = file.getHeadersCount();
+        if (headersCount == 0) {
+            return List.of();
+        }
+        validateMigrationFileHeader(file.getFileHeader());
+
+        List<Migration> migrations = new ArrayList<>(headersCount);
+        for (int i = 0; i < headersCount; i++) {
+            var migrationBuilder = Migration.builder().hashAlgorithm(hashAlgorithm);
+            parseMigrationHeader(path, file, i, migrationBuilder);
+            migrations.add(migrationBuilder.build(path, firstOrder + i, file.getBodies().get(i)));
+        }
+        LOGGER.debug("Found {} migrations in file {}", migrations.size(), path);
+        return migrations;
+    }
 
-        String author = getAuthor(header);
-        String title = getTitle(header);
-        String startOfHeader = String.format(HEADER_START_TEMPLATE, author, title);
-        String paramsOnlyHeader = header.substring(startOfHeader.length()).strip();
+    /**
+     * Scans header 'author:title key:value #userKey:value ...' in a single pass over its bytes <br/>
+     * Tokens are separated by spaces, tokens without ':' are ignored, text after the second ':' of a token is ignored
+     */
+    private void parseMigrationHeader(Path path, MigrationFileScanner file, int header, Migration.MigrationBuilder migrationBuilder) {
+        int end = file.getHeaderEnd(header);
+        int pos = file.getHeaderStart(header);
+
+        int authorStart = pos;
+        pos = skipTo(file, pos, end, PARAMS_KEY_VALUE_SEPARATOR, PARAMS_SEPARATOR);
+        if (pos == end || file.byteAt(pos) != PARAMS_KEY_VALUE_SEPARATOR) {
+            throw new InvalidFileFormatException(path.toString(),
+                    String.format("migration header '%s' must start with 'author:title'", file.getHeader(header)));
+        }
+        String author = file.getText(authorStart, pos);
+        int titleStart = ++pos;
+        pos = skipTo(file, pos, end, PARAMS_SEPARATOR, PARAMS_SEPARATOR);
+        String title = file.getText(titleStart, pos);
 
         var params = MigrationParameter.getDefaultValuesParametersMap();
         Map<String, String> userDefinedParams = new HashMap<>();
 
-        Arrays.stream(paramsOnlyHeader.split(PARAMS_SPLIT_REGEXP))
-                .filter(p -> p.contains(PARAMS_KEY_VALUE_SEPARATOR))
-                .forEach(p -> {
-                    String[] ps = p.split(PARAMS_KEY_VALUE_SEPARATOR);
-                    String paramName = ps[0];
-                    String paramValue = ps[1];
-                    Optional<MigrationParameter> maybeMigrationParameter = Arrays.stream(MigrationParameter.values())
-                            .filter(mp -> mp.getName().equals(paramName))
-                            .findFirst();
-                    if (maybeMigrationParameter.isPresent()) {
-                        var migrationParameter = maybeMigrationParameter.get();
-                        params.remove(migrationParameter);
-                        params.put(migrationParameter, migrationParameter.parseValue(paramValue));
-                    } else if (paramName.startsWith(USER_DEFINED_PARAM_NAME_PREFIX)) {
-                        userDefinedParams.put(paramName, paramValue);
-                    } else {
-                        throw new IllegalArgumentException("Unknown parameter: " + paramName);
-                    }
-                });
+        while (pos < end) {
+            int tokenStart = ++pos;
+            int tokenEnd = skipTo(file, pos, end, PARAMS_SEPARATOR, PARAMS_SEPARATOR);
+            int nameEnd = skipTo(file, tokenStart, tokenEnd, PARAMS_KEY_VALUE_SEPARATOR, PARAMS_KEY_VALUE_SEPARATOR);
+            pos = tokenEnd;
+            if (nameEnd == tokenEnd) {
+                continue;
+            }
+            int valueEnd = skipTo(file, nameEnd + 1, tokenEnd, PARAMS_KEY_VALUE_SEPARATOR, PARAMS_KEY_VALUE_SEPARATOR);
+            String paramName = file.getText(tokenStart, nameEnd);
+            String paramValue = file.getText(nameEnd + 1, valueEnd);
+            var migrationParameter = MigrationParameter.byName(paramName);
+            if (migrationParameter != null) {
+                params.put(migrationParameter, migrationParameter.parseValue(paramValue));
+            } else if (paramName.startsWith(USER_DEFINED_PARAM_NAME_PREFIX)) {
+                userDefinedParams.put(paramName, paramValue);
+            } else {
+                throw new IllegalArgumentException("Unknown parameter: " + paramName);
+            }
+        }
 
         LOGGER.debug("Parsed header: " +
                                 "title={} " +
@@ -113,16 +133,18 @@ public class MigrationParsingService {
         migrationBuilder.header(title, author, params, userDefinedParams);
     }
 
-    private String getTitle(String header) {
-        var title = header.split(PARAMS_KEY_VALUE_SEPARATOR)[1].split(PARAMS_SPLIT_REGEXP)[0];
-        LOGGER.debug("Got title {} from header {}", title, header);
-        return title;
-    }
-
-    private String getAuthor(String header) {
-        var author = header.split(PARAMS_KEY_VALUE_SEPARATOR)[0].split(PARAMS_SPLIT_REGEXP)[1];
-        LOGGER.debug("Got author {} from header {}", author, header);
-        return author;
+    /**
+     * @return offset of the first of two stop bytes in the region or region end
+     */
+    private static int skipTo(MigrationFileScanner file, int pos, int end, byte stop, byte otherStop) {
+        while (pos < end) {
+            byte b = file.byteAt(pos);
+            if (b == stop || b == otherStop) {
+                return pos;
+            }
+            pos++;
+        }
+        return end;
     }
 
     private void validateMigrationFileHeader(String header) {
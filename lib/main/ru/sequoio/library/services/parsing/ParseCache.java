@@ -0,0 +1,475 @@
+package ru.sequoio.library.services.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.MigrationBody;
+import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
+import ru.sequoio.library.utils.HashAlgorithm;
+import ru.sequoio.library.utils.HashingUtils;
+
+/**
+ * On-disk cache of parsed migration files <br/>
+ * Entry holds migration headers, body offsets, hashes, statement offsets and concurrent index commands of a file
+ * and is keyed by file path, size and modification time. If size or modification time changed, content hash is compared,
+ * so only files with changed content are parsed again. Cached bodies are mapped only when they are read,
+ * so unchanged changelog costs a stat per file <br/>
+ * Hashes of 'load' migrations are not cached, because their data files are not tracked.
+ * Unreadable or outdated cache is ignored and rewritten
+ */
+class ParseCache {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ParseCache.class);
+
+    private static final int MAGIC = 0x53455143;
+    private static final int VERSION = 2;
+    private static final HashAlgorithm CONTENT_HASH_ALGORITHM = HashAlgorithm.MURMUR3_128;
+
+    private final Path cacheFile;
+    private final HashAlgorithm hashAlgorithm;
+    private final Map<String, FileEntry> entries;
+
+    private ParseCache(Path cacheFile, HashAlgorithm hashAlgorithm, Map<String, FileEntry> entries) {
+        this.cacheFile = cacheFile;
+        this.hashAlgorithm = hashAlgorithm;
+        this.entries = entries;
+    }
+
+    /**
+     * @param hashAlgorithm algorithm of cached migration hashes, cache with another algorithm is ignored
+     */
+    static ParseCache load(Path cacheFile, HashAlgorithm hashAlgorithm) {
+        Map<String, FileEntry> entries = new HashMap<>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !hashAlgorithm.getName().equals(in.readUTF())) {
+                LOGGER.info("Parse cache {} is outdated, ignoring it", cacheFile);
+                return new ParseCache(cacheFile, hashAlgorithm, entries);
+            }
+            int filesCount = in.readInt();
+            for (int i = 0; i < filesCount; i++) {
+                var entry = FileEntry.read(in);
+                entries.put(entry.path, entry);
+            }
+            LOGGER.debug("Loaded parse cache {} of {} files", cacheFile, entries.size());
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("Parse cache {} does not exist", cacheFile);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read parse cache {}, ignoring it", cacheFile, e);
+            entries.clear();
+        }
+        return new ParseCache(cacheFile, hashAlgorithm, entries);
+    }
+
+    /**
+     * Reads file from cache, if it was not changed, or scans it otherwise
+     */
+    ParsedFile read(Path path, MigrationParsingService parser) {
+        var attributes = readAttributes(path);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        var entry = entries.get(path.toString());
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            LOGGER.debug("File {} is not changed, using parse cache", path);
+            return new CachedFile(path, entry, new MappedFile(path));
+        }
+
+        var file = parser.scan(path);
+        var contentHash = HashingUtils.hash(CONTENT_HASH_ALGORITHM, List.of(file.getBuffer()));
+        if (entry != null && entry.contentHash.equals(contentHash)) {
+            LOGGER.debug("File {} is touched, but content is not changed, using parse cache", path);
+            var touched = new FileEntry(entry.path, size, lastModified, contentHash, entry.migrations);
+            return new CachedFile(path, touched, file::getBuffer);
+        }
+        return new ScannedFile(file, parser, size, lastModified, contentHash);
+    }
+
+    /**
+     * Scans file without cache
+     */
+    static ParsedFile scan(Path path, MigrationParsingService parser) {
+        return new ScannedFile(parser.scan(path), parser, -1, -1, null);
+    }
+
+    /**
+     * Replaces cache with entries of the given files, if any of them was scanned, touched or removed <br/>
+     * Cache is written to a unique temporary file and moved over the old one, so concurrent processes
+     * do not overwrite each other's temporary files and readers never see a partially written cache.
+     * Write failure is logged and ignored
+     */
+    void save(List<ParsedFile> files) {
+        var fileEntries = files.parallelStream()
+                .map(ParsedFile::toCacheEntry)
+                .collect(Collectors.toList());
+        // entries of unchanged files are the loaded ones
+        if (fileEntries.size() == entries.size()
+                && fileEntries.stream().allMatch(entry -> entry == entries.get(entry.path))) {
+            LOGGER.debug("Parse cache {} is up to date", cacheFile);
+            return;
+        }
+        Path temporaryFile = null;
+        try {
+            var directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, cacheFile.getFileName() + ".", ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(hashAlgorithm.getName());
+                out.writeInt(fileEntries.size());
+                for (var entry : fileEntries) {
+                    entry.write(out);
+                }
+            }
+            Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Saved parse cache {} of {} files", cacheFile, files.size());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to write parse cache {}", cacheFile, e);
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to delete {}", file, e);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Migration file, which is either scanned or read from cache
+     */
+    interface ParsedFile {
+
+        int getMigrationsCount();
+
+        /**
+         * @return 'true' if migrations are read from parse cache and file is not scanned
+         */
+        boolean isCached();
+
+        /**
+         * @param firstOrder natural order of the first migration in file
+         */
+        List<Migration> getMigrations(int firstOrder);
+
+        /**
+         * Must be called after {@link #getMigrations(int)}
+         */
+        FileEntry toCacheEntry();
+    }
+
+    private static class ScannedFile implements ParsedFile {
+
+        private final MigrationFileScanner file;
+        private final MigrationParsingService parser;
+        private final long size;
+        private final long lastModified;
+        private final String contentHash;
+        private List<Migration> migrations;
+
+        private ScannedFile(MigrationFileScanner file,
+                            MigrationParsingService parser,
+                            long size,
+                            long lastModified,
+                            String contentHash) {
+            this.file = file;
+            this.parser = parser;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+        }
+
+        @Override
+        public int getMigrationsCount() {
+            return file.getHeadersCount();
+        }
+
+        @Override
+        public boolean isCached() {
+            return false;
+        }
+
+        @Override
+        public List<Migration> getMigrations(int firstOrder) {
+            migrations = parser.parseMigrations(file, firstOrder);
+            return migrations;
+        }
+
+        @Override
+        public FileEntry toCacheEntry() {
+            List<MigrationEntry> entries = new ArrayList<>(migrations.size());
+            for (int i = 0; i < migrations.size(); i++) {
+                var migration = migrations.get(i);
+                Map<String, String> params = new LinkedHashMap<>();
+                migration.getParams().forEach((parameter, value) -> params.put(parameter.getName(), value.getValueAsString()));
+                entries.add(new MigrationEntry(
+                        migration.getTitle(),
+                        migration.getAuthor(),
+                        params,
+                        migration.getUserDefinedParams(),
+                        file.getBodyStart(i),
+                        file.getBodyEnd(i),
+                        migration.isLoad() ? null : migration.getHash(),
+                        migration.isLoad() ? null : migration.getStatementBoundaries().toArray(),
+                        migration.isLoad() ? null : migration.getStatementBoundaries().concurrentIndexCommandsToArray()));
+            }
+            return new FileEntry(file.getPath().toString(), size, lastModified, contentHash, entries);
+        }
+    }
+
+    private class CachedFile implements ParsedFile {
+
+        private final Path path;
+        private final FileEntry entry;
+        private final Supplier<ByteBuffer> buffer;
+
+        private CachedFile(Path path, FileEntry entry, Supplier<ByteBuffer> buffer) {
+            this.path = path;
+            this.entry = entry;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int getMigrationsCount() {
+            return entry.migrations.size();
+        }
+
+        @Override
+        public boolean isCached() {
+            return true;
+        }
+
+        @Override
+        public List<Migration> getMigrations(int firstOrder) {
+            List<Migration> migrations = new ArrayList<>(entry.migrations.size());
+            for (int i = 0; i < entry.migrations.size(); i++) {
+                var cached = entry.migrations.get(i);
+                var params = MigrationParameter.getDefaultValuesParametersMap();
+                cached.params.forEach((name, value) -> {
+                    var parameter = MigrationParameter.byName(name);
+                    params.put(parameter, parameter.parseValue(value));
+                });
+                var migration = Migration.builder()
+                        .header(cached.title, cached.author, params, new HashMap<>(cached.userDefinedParams))
+                        .hashAlgorithm(hashAlgorithm)
+                        .parsed(cached.hash,
+                                cached.statementOffsets == null
+                                        ? null
+                                        : StatementBoundaries.ofArrays(cached.statementOffsets, cached.concurrentIndexCommands))
+                        .build(path, firstOrder + i, MigrationBody.of(buffer, cached.bodyStart, cached.bodyEnd));
+                migrations.add(migration);
+            }
+            return migrations;
+        }
+
+        @Override
+        public FileEntry toCacheEntry() {
+            return entry;
+        }
+    }
+
+    /**
+     * File mapped on first request
+     */
+    private static class MappedFile implements Supplier<ByteBuffer> {
+
+        private final Path path;
+        private volatile ByteBuffer buffer;
+
+        private MappedFile(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public ByteBuffer get() {
+            if (buffer == null) {
+                synchronized (this) {
+                    if (buffer == null) {
+                        buffer = MigrationFileScanner.map(path);
+                    }
+                }
+            }
+            return buffer;
+        }
+    }
+
+    static class FileEntry {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final String contentHash;
+        private final List<MigrationEntry> migrations;
+
+        private FileEntry(String path, long size, long lastModified, String contentHash, List<MigrationEntry> migrations) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.migrations = migrations;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeUTF(contentHash);
+            out.writeInt(migrations.size());
+            for (var migration : migrations) {
+                migration.write(out);
+            }
+        }
+
+        private static FileEntry read(DataInputStream in) throws IOException {
+            var path = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            var contentHash = in.readUTF();
+            int migrationsCount = in.readInt();
+            List<MigrationEntry> migrations = new ArrayList<>(migrationsCount);
+            for (int i = 0; i < migrationsCount; i++) {
+                migrations.add(MigrationEntry.read(in));
+            }
+            return new FileEntry(path, size, lastModified, contentHash, migrations);
+        }
+    }
+
+    private static class MigrationEntry {
+
+        private final String title;
+        private final String author;
+        private final Map<String, String> params;
+        private final Map<String, String> userDefinedParams;
+        private final int bodyStart;
+        private final int bodyEnd;
+        private final String hash;
+        private final int[] statementOffsets;
+        private final int[] concurrentIndexCommands;
+
+        private MigrationEntry(String title,
+                               String author,
+                               Map<String, String> params,
+                               Map<String, String> userDefinedParams,
+                               int bodyStart,
+                               int bodyEnd,
+                               String hash,
+                               int[] statementOffsets,
+                               int[] concurrentIndexCommands) {
+            this.title = title;
+            this.author = author;
+            this.params = params;
+            this.userDefinedParams = userDefinedParams;
+            this.bodyStart = bodyStart;
+            this.bodyEnd = bodyEnd;
+            this.hash = hash;
+            this.statementOffsets = statementOffsets;
+            this.concurrentIndexCommands = concurrentIndexCommands;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(title);
+            out.writeUTF(author);
+            writeMap(out, params);
+            writeMap(out, userDefinedParams);
+            out.writeInt(bodyStart);
+            out.writeInt(bodyEnd);
+            writeNullable(out, hash);
+            writeNullable(out, statementOffsets);
+            writeNullable(out, concurrentIndexCommands);
+        }
+
+        private static MigrationEntry read(DataInputStream in) throws IOException {
+            var title = in.readUTF();
+            var author = in.readUTF();
+            var params = readMap(in);
+            var userDefinedParams = readMap(in);
+            int bodyStart = in.readInt();
+            int bodyEnd = in.readInt();
+            var hash = readNullable(in);
+            var statementOffsets = readNullableArray(in);
+            var concurrentIndexCommands = readNullableArray(in);
+            return new MigrationEntry(title, author, params, userDefinedParams, bodyStart, bodyEnd, hash,
+                    statementOffsets, concurrentIndexCommands);
+        }
+
+        private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+            out.writeInt(map.size());
+            for (var entry : map.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeNullable(out, entry.getValue());
+            }
+        }
+
+        private static Map<String, String> readMap(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(in.readUTF(), readNullable(in));
+            }
+            return map;
+        }
+
+        private static void writeNullable(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readNullable(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        private static void writeNullable(DataOutputStream out, int[] values) throws IOException {
+            out.writeInt(values == null ? -1 : values.length);
+            if (values != null) {
+                for (int value : values) {
+                    out.writeInt(value);
+                }
+            }
+        }
+
+        private static int[] readNullableArray(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readInt();
+            }
+            return values;
+        }
+    }
+}
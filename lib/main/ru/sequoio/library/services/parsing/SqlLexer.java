@@ -0,0 +1,301 @@
+package ru.sequoio.library.services.parsing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single-pass SQL lexer, which finds statement boundaries in PostgreSQL dialect <br/>
+ * ';' terminates a statement only outside of:
+ * <ul>
+ *     <li>string literals 'text', including '' escapes and E'escape\'d' strings</li>
+ *     <li>quoted identifiers "name"</li>
+ *     <li>dollar-quoted strings $$body$$ and $tag$body$tag$</li>
+ *     <li>line comments -- and nested block comments /* /* *&#47; *&#47;</li>
+ * </ul>
+ * Boundaries are reported as offsets into the source, no substrings are created <br/>
+ * Concurrent index commands ('CREATE INDEX CONCURRENTLY', 'DROP INDEX CONCURRENTLY', 'REINDEX ... CONCURRENTLY'),
+ * which can not run in a transaction block, are marked by their leading keywords <br/>
+ * Leading and trailing whitespace is not included, statements without code (only whitespace or comments) are skipped.
+ * Unterminated literal or comment runs to the end of the source, so the database reports the error
+ */
+public final class SqlLexer {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SqlLexer.class);
+
+    private static final char STATEMENT_TERMINATOR = ';';
+
+    // states of leading keywords of a statement
+    private static final int COMMAND_START = 0;
+    private static final int CREATE = 1;
+    private static final int CREATE_UNIQUE = 2;
+    private static final int DROP = 3;
+    private static final int REINDEX = 4;
+    private static final int REINDEX_OPTIONS = 5;
+    private static final int INDEX = 6;
+    private static final int CONCURRENT_INDEX = 7;
+    private static final int OTHER_COMMAND = 8;
+
+    private SqlLexer() {
+    }
+
+    public static StatementBoundaries split(CharSequence sql) {
+        int length = sql.length();
+        int[] offsets = new int[16];
+        int count = 0;
+        var concurrentIndexCommands = new BitSet();
+        int command = COMMAND_START;
+
+        int start = -1;
+        int end = -1;
+        boolean hasCode = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == STATEMENT_TERMINATOR) {
+                if (hasCode) {
+                    concurrentIndexCommands.set(count, command == CONCURRENT_INDEX);
+                    offsets = add(offsets, count++, start, end);
+                }
+                start = -1;
+                hasCode = false;
+                command = COMMAND_START;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (start < 0) {
+                start = i;
+            }
+            int next;
+            if (c == '-' && charAt(sql, i + 1) == '-') {
+                next = skipLineComment(sql, i);
+            } else if (c == '/' && charAt(sql, i + 1) == '*') {
+                next = skipBlockComment(sql, i);
+            } else {
+                hasCode = true;
+                next = skipToken(sql, i);
+                command = nextCommand(command, sql, i, next);
+            }
+            end = next;
+            i = next;
+        }
+        if (hasCode) {
+            concurrentIndexCommands.set(count, command == CONCURRENT_INDEX);
+            offsets = add(offsets, count++, start, end);
+        }
+        return new StatementBoundaries(offsets, count, concurrentIndexCommands);
+    }
+
+    /**
+     * Follows leading keywords of a statement till it is known, whether it is a concurrent index command
+     *
+     * @return state after the token from 'start' to 'end'
+     */
+    private static int nextCommand(int command, CharSequence sql, int start, int end) {
+        switch (command) {
+            case COMMAND_START:
+                return isKeyword(sql, start, end, "CREATE") ? CREATE
+                        : isKeyword(sql, start, end, "DROP") ? DROP
+                        : isKeyword(sql, start, end, "REINDEX") ? REINDEX
+                        : OTHER_COMMAND;
+            case CREATE:
+                return isKeyword(sql, start, end, "UNIQUE") ? CREATE_UNIQUE
+                        : isKeyword(sql, start, end, "INDEX") ? INDEX
+                        : OTHER_COMMAND;
+            case CREATE_UNIQUE:
+            case DROP:
+                return isKeyword(sql, start, end, "INDEX") ? INDEX : OTHER_COMMAND;
+            case REINDEX:
+                // 'REINDEX (options) INDEX|TABLE|SCHEMA|DATABASE|SYSTEM CONCURRENTLY'
+                return sql.charAt(start) == '(' ? REINDEX_OPTIONS
+                        : isIdentifierStart(sql.charAt(start)) ? INDEX
+                        : OTHER_COMMAND;
+            case REINDEX_OPTIONS:
+                return sql.charAt(start) == ')' ? REINDEX : REINDEX_OPTIONS;
+            case INDEX:
+                return isKeyword(sql, start, end, "CONCURRENTLY") ? CONCURRENT_INDEX : OTHER_COMMAND;
+            default:
+                return command;
+        }
+    }
+
+    private static boolean isKeyword(CharSequence sql, int start, int end, String keyword) {
+        if (end - start != keyword.length()) {
+            return false;
+        }
+        for (int k = 0; k < keyword.length(); k++) {
+            if (Character.toUpperCase(sql.charAt(start + k)) != keyword.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return offset right after the token, which starts at 'i'
+     */
+    private static int skipToken(CharSequence sql, int i) {
+        char c = sql.charAt(i);
+        if (c == '\'') {
+            return skipString(sql, i, false);
+        }
+        if (c == '"') {
+            return skipQuotedIdentifier(sql, i);
+        }
+        if (c == '$') {
+            return skipDollarQuoted(sql, i);
+        }
+        if (isIdentifierStart(c)) {
+            int j = i + 1;
+            while (j < sql.length() && isIdentifierPart(sql.charAt(j))) {
+                j++;
+            }
+            if (j == i + 1 && (c == 'E' || c == 'e') && charAt(sql, j) == '\'') {
+                return skipString(sql, j, true);
+            }
+            return j;
+        }
+        return i + 1;
+    }
+
+    private static int skipString(CharSequence sql, int quote, boolean backslashEscapes) {
+        int length = sql.length();
+        int j = quote + 1;
+        while (j < length) {
+            char c = sql.charAt(j);
+            if (c == '\\' && backslashEscapes) {
+                j += 2;
+            } else if (c == '\'') {
+                if (charAt(sql, j + 1) != '\'') {
+                    return j + 1;
+                }
+                j += 2;
+            } else {
+                j++;
+            }
+        }
+        return unterminated(sql, quote, "string literal");
+    }
+
+    private static int skipQuotedIdentifier(CharSequence sql, int quote) {
+        int length = sql.length();
+        int j = quote + 1;
+        while (j < length) {
+            if (sql.charAt(j) == '"') {
+                if (charAt(sql, j + 1) != '"') {
+                    return j + 1;
+                }
+                j += 2;
+            } else {
+                j++;
+            }
+        }
+        return unterminated(sql, quote, "quoted identifier");
+    }
+
+    /**
+     * '$' starts a dollar quote only if followed by an optional tag and another '$',
+     * otherwise it is a positional parameter like $1 or an operator
+     */
+    private static int skipDollarQuoted(CharSequence sql, int dollar) {
+        int length = sql.length();
+        int tagEnd = dollar + 1;
+        if (tagEnd < length && isTagStart(sql.charAt(tagEnd))) {
+            tagEnd++;
+            while (tagEnd < length && isTagPart(sql.charAt(tagEnd))) {
+                tagEnd++;
+            }
+        }
+        if (charAt(sql, tagEnd) != '$') {
+            return dollar + 1;
+        }
+        int delimiterLength = tagEnd - dollar + 1;
+        int j = tagEnd + 1;
+        while (j <= length - delimiterLength) {
+            if (sql.charAt(j) == '$' && regionMatches(sql, j, dollar, delimiterLength)) {
+                return j + delimiterLength;
+            }
+            j++;
+        }
+        return unterminated(sql, dollar, "dollar-quoted string");
+    }
+
+    private static int skipLineComment(CharSequence sql, int i) {
+        int length = sql.length();
+        int j = i + 2;
+        while (j < length && sql.charAt(j) != '\n') {
+            j++;
+        }
+        return j;
+    }
+
+    private static int skipBlockComment(CharSequence sql, int i) {
+        int length = sql.length();
+        int depth = 1;
+        int j = i + 2;
+        while (j < length) {
+            char c = sql.charAt(j);
+            if (c == '*' && charAt(sql, j + 1) == '/') {
+                j += 2;
+                if (--depth == 0) {
+                    return j;
+                }
+            } else if (c == '/' && charAt(sql, j + 1) == '*') {
+                j += 2;
+                depth++;
+            } else {
+                j++;
+            }
+        }
+        return unterminated(sql, i, "block comment");
+    }
+
+    private static int unterminated(CharSequence sql, int start, String construct) {
+        LOGGER.warn("Unterminated {} at offset {}", construct, start);
+        return sql.length();
+    }
+
+    private static boolean regionMatches(CharSequence sql, int offset, int otherOffset, int length) {
+        for (int k = 0; k < length; k++) {
+            if (sql.charAt(offset + k) != sql.charAt(otherOffset + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char charAt(CharSequence sql, int i) {
+        return i < sql.length() ? sql.charAt(i) : 0;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isTagStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isTagPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int[] add(int[] offsets, int index, int start, int end) {
+        if (index * 2 + 1 >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[index * 2] = start;
+        offsets[index * 2 + 1] = end;
+        return offsets;
+    }
+}
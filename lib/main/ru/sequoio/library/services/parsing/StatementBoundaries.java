@@ -0,0 +1,93 @@
+package ru.sequoio.library.services.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Statement boundaries as offsets into the source text <br/>
+ * Statement 'i' spans from 'start(i)' inclusive to 'end(i)' exclusive, terminating ';' is not included <br/>
+ * Statements, which are concurrent index commands and can not run in a transaction block, are marked
+ */
+public final class StatementBoundaries {
+
+    private final int[] offsets;
+    private final int count;
+    private final BitSet concurrentIndexCommands;
+
+    StatementBoundaries(int[] offsets, int count, BitSet concurrentIndexCommands) {
+        this.offsets = offsets;
+        this.count = count;
+        this.concurrentIndexCommands = concurrentIndexCommands;
+    }
+
+    /**
+     * @return flat pairs of start and end offsets
+     */
+    int[] toArray() {
+        return Arrays.copyOf(offsets, count * 2);
+    }
+
+    /**
+     * @return indexes of concurrent index commands
+     */
+    int[] concurrentIndexCommandsToArray() {
+        return concurrentIndexCommands.stream().toArray();
+    }
+
+    static StatementBoundaries ofArrays(int[] offsets, int[] concurrentIndexCommands) {
+        var commands = new BitSet();
+        for (int statement : concurrentIndexCommands) {
+            commands.set(statement);
+        }
+        return new StatementBoundaries(offsets, offsets.length / 2, commands);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int start(int statement) {
+        return offsets[checkIndex(statement) * 2];
+    }
+
+    public int end(int statement) {
+        return offsets[checkIndex(statement) * 2 + 1];
+    }
+
+    /**
+     * @return statement text, copied from the source only on this call
+     */
+    public String statement(CharSequence source, int statement) {
+        return source.subSequence(start(statement), end(statement)).toString();
+    }
+
+    public List<String> statements(CharSequence source) {
+        List<String> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(statement(source, i));
+        }
+        return statements;
+    }
+
+    public boolean isConcurrentIndexCommand(int statement) {
+        return concurrentIndexCommands.get(checkIndex(statement));
+    }
+
+    public int concurrentIndexCommandsCount() {
+        return concurrentIndexCommands.cardinality();
+    }
+
+    private int checkIndex(int statement) {
+        if (statement < 0 || statement >= count) {
+            throw new IndexOutOfBoundsException("Statement " + statement + " of " + count);
+        }
+        return statement;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementBoundaries" + Arrays.toString(Arrays.copyOf(offsets, count * 2));
+    }
+}
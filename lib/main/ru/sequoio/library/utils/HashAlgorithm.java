@@ -0,0 +1,87 @@
+package ru.sequoio.library.utils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Algorithms of migration hash <br/>
+ * Name of algorithm is stored next to the hash in 'migration log', so stored hashes can be compared
+ * after the algorithm is changed
+ */
+public enum HashAlgorithm {
+
+    MD5("md5") {
+        @Override
+        public Hasher newHasher() {
+            return new MessageDigestHasher("MD5");
+        }
+    },
+    SHA_256("sha256") {
+        @Override
+        public Hasher newHasher() {
+            return new MessageDigestHasher("SHA-256");
+        }
+    },
+    /**
+     * Non-cryptographic 128-bit MurmurHash3 (x64 variant, seed 0), several times faster than MD5
+     */
+    MURMUR3_128("murmur3_128") {
+        @Override
+        public Hasher newHasher() {
+            return new Murmur3Hasher();
+        }
+    }
+    ;
+
+    private final String name;
+
+    HashAlgorithm(String name) {
+        this.name = name;
+    }
+
+    public abstract Hasher newHasher();
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @throws IllegalStateException if there is no algorithm with the given name
+     */
+    public static HashAlgorithm byName(String name) {
+        return Arrays.stream(values())
+                .filter(algorithm -> algorithm.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown hash algorithm: " + name));
+    }
+
+    private static class MessageDigestHasher implements Hasher {
+
+        private final MessageDigest md;
+
+        private MessageDigestHasher(String algorithm) {
+            try {
+                md = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer bytes) {
+            md.update(bytes);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            md.update(bytes, offset, length);
+        }
+
+        @Override
+        public String toHex() {
+            return HashingUtils.toHex(md.digest());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.sequoio.library.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash calculation, created by {@link HashAlgorithm}
+ */
+public interface Hasher {
+
+    /**
+     * Hashes remaining bytes of buffer
+     */
+    void update(ByteBuffer bytes);
+
+    void update(byte[] bytes, int offset, int length);
+
+    /**
+     * @return lowercase hex of hash, hasher must not be used after this call
+     */
+    String toHex();
+}
@@ -1,26 +1,56 @@
 package ru.sequoio.library.utils;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 public class HashingUtils {
 
-    private static final String MD5 = "MD5";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     public static String md5(String s) {
-        MessageDigest md;
-        try {
-            md = MessageDigest.getInstance(MD5);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+        return hash(HashAlgorithm.MD5, List.of(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Hashes concatenated byte parts without copying them
+     */
+    public static String hash(HashAlgorithm algorithm, List<ByteBuffer> parts) {
+        var hasher = algorithm.newHasher();
+        for (var part : parts) {
+            hasher.update(part.duplicate());
+        }
+        return hasher.toHex();
+    }
+
+    /**
+     * Hashes byte parts followed by file content, file is streamed and never loaded into memory at once
+     */
+    public static String hash(HashAlgorithm algorithm, List<ByteBuffer> parts, Path file) throws IOException {
+        var hasher = algorithm.newHasher();
+        for (var part : parts) {
+            hasher.update(part.duplicate());
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (var in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                hasher.update(buffer, 0, read);
+            }
         }
-        md.update(s.getBytes());
-        byte[] digest = md.digest();
-        StringBuilder hashText = new StringBuilder(new BigInteger(1, digest).toString(16));
-        while (hashText.length() < 32) {
-            hashText.insert(0, "0");
+        return hasher.toHex();
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
         }
-        return hashText.toString();
+        return new String(hex);
     }
 }
@@ -0,0 +1,115 @@
+package ru.sequoio.library.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming MurmurHash3 x64 128-bit with seed 0 <br/>
+ * Hex is the little-endian bytes of both halves, same as 'murmur3_128' of Guava
+ */
+class Murmur3Hasher implements Hasher {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final ByteBuffer tail = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long h1;
+    private long h2;
+    private long length;
+
+    @Override
+    public void update(ByteBuffer bytes) {
+        bytes = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        length += bytes.remaining();
+        while (tail.position() > 0 && bytes.hasRemaining()) {
+            tail.put(bytes.get());
+            if (!tail.hasRemaining()) {
+                tail.flip();
+                mixBlock(tail.getLong(), tail.getLong());
+                tail.clear();
+            }
+        }
+        while (bytes.remaining() >= BLOCK_SIZE) {
+            mixBlock(bytes.getLong(), bytes.getLong());
+        }
+        tail.put(bytes);
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        update(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    @Override
+    public String toHex() {
+        int tailLength = tail.position();
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = 0; i < tailLength; i++) {
+            long b = tail.get(i) & 0xFFL;
+            if (i < 8) {
+                k1 ^= b << (8 * i);
+            } else {
+                k2 ^= b << (8 * (i - 8));
+            }
+        }
+        if (tailLength > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (tailLength > 0) {
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] digest = ByteBuffer.allocate(BLOCK_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(h1)
+                .putLong(h2)
+                .array();
+        return HashingUtils.toHex(digest);
+    }
+
+    private void mixBlock(long k1, long k2) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
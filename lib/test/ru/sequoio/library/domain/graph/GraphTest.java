@@ -4,6 +4,7 @@ import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -59,6 +60,82 @@ class GraphTest {
         Assertions.assertThrowsExactly(IllegalStateException.class, () -> new Graph<>(migrations));
     }
 
+    @Test
+    void testDiamond() {
+        var migrations = List.of(
+                migration(),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_1"))),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_1"),
+                        MigrationParameter.RUN_BEFORE, new StringParameterValue("title_4"))),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_2"))));
+        var graph = new Graph<>(migrations);
+        // next nodes of 'title_1' are taken in resolution order, 'title_4' waits for both of them
+        validateOrder(graph.getOrderedNodes(), order(1, 3, 2, 4));
+        Assertions.assertEquals(1, graph.getOrderedClusters().size());
+    }
+
+    @Test
+    void testBreadthFirstOrderInsideCluster() {
+        var migrations = List.of(
+                migration(),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_1"))),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_2"))),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_1"))));
+        var graph = new Graph<>(migrations);
+        validateOrder(graph.getOrderedNodes(), order(1, 4, 2, 3));
+    }
+
+    /**
+     * Order of the former implementation, which took next nodes in iteration order of a hash map of names
+     */
+    @Test
+    void testLegacyOrderKept() {
+        var migrations = List.of(
+                migration("users", Map.of()),
+                migration("orders", Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("users"))),
+                migration("payments", Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("users"))),
+                migration("payments_idx", Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("payments"))),
+                migration("orders_idx", Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("orders"))));
+        var graph = new Graph<>(migrations);
+        Assertions.assertEquals(List.of("users", "payments", "orders", "payments_idx", "orders_idx"),
+                graph.getOrderedNodes().stream().map(Node::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testClustersAreNotInterleaved() {
+        var migrations = List.of(
+                migration(),
+                migration(),
+                migration(Map.of(MigrationParameter.RUN_BEFORE, new StringParameterValue("title_1"))));
+        var graph = new Graph<>(migrations);
+        validateOrder(graph.getOrderedNodes(), order(3, 1, 2));
+        var clusters = graph.getOrderedClusters();
+        Assertions.assertEquals(2, clusters.size());
+        validateOrder(new LinkedList<>(clusters.first().getNodes()), order(3, 1));
+        validateOrder(new LinkedList<>(clusters.last().getNodes()), order(2));
+    }
+
+    @Test
+    void testCyclePathReported() {
+        var migrations = List.of(
+                migration(),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_3"))),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_4"))),
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_2"))));
+
+        var exception = Assertions.assertThrowsExactly(IllegalStateException.class, () -> new Graph<>(migrations));
+        Assertions.assertEquals("Cycle found in migration graph: title_2 -> title_4 -> title_3 -> title_2",
+                exception.getMessage());
+    }
+
+    @Test
+    void testUnknownMigrationReference() {
+        var migrations = List.of(
+                migration(Map.of(MigrationParameter.RUN_AFTER, new StringParameterValue("title_9"))));
+
+        Assertions.assertThrowsExactly(IllegalStateException.class, () -> new Graph<>(migrations));
+    }
+
     private LinkedList<Integer> order(Integer... orders) {
         return new LinkedList<>(List.of(orders));
     }
@@ -77,9 +154,13 @@ class GraphTest {
     }
 
     private Migration migration(Map<MigrationParameter, ParameterValue> params) {
+        return migration("title_" + (migrationCounter + 1), params);
+    }
+
+    private Migration migration(String title, Map<MigrationParameter, ParameterValue> params) {
         migrationCounter++;
         return new Migration.MigrationBuilder()
-                .header("title_" + migrationCounter, "author", params, Map.of())
+                .header(title, "author", params, Map.of())
                 .build(Path.of("/home/"+ migrationCounter), migrationCounter, "body_" + migrationCounter);
     }
 }
\ No newline at end of file
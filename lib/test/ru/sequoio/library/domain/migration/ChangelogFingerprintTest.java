@@ -0,0 +1,63 @@
+package ru.sequoio.library.domain.migration;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
+
+class ChangelogFingerprintTest {
+
+    @Test
+    void testSameChangelogSameFingerprint() {
+        var first = ChangelogFingerprint.of(migrations(100, -1), "dev");
+        var second = ChangelogFingerprint.of(migrations(100, -1), "dev");
+        Assertions.assertEquals(first.getRoot(), second.getRoot());
+        Assertions.assertEquals(List.of(), first.getChangedRanges(second.getSubtrees()));
+    }
+
+    @Test
+    void testEnvironmentChangesOnlyRoot() {
+        var dev = ChangelogFingerprint.of(migrations(100, -1), "dev");
+        var prod = ChangelogFingerprint.of(migrations(100, -1), "prod");
+        Assertions.assertNotEquals(dev.getRoot(), prod.getRoot());
+        Assertions.assertEquals(List.of(), dev.getChangedRanges(prod.getSubtrees()));
+    }
+
+    @Test
+    void testChangedBodyNarrowedToSubtree() {
+        var applied = ChangelogFingerprint.of(migrations(200, -1), "dev");
+        var changed = ChangelogFingerprint.of(migrations(200, 70), "dev");
+        Assertions.assertNotEquals(applied.getRoot(), changed.getRoot());
+        Assertions.assertEquals(List.of("64-127"), changed.getChangedRanges(applied.getSubtrees()));
+    }
+
+    @Test
+    void testAppendedMigrations() {
+        var applied = ChangelogFingerprint.of(migrations(100, -1), "dev");
+        var appended = ChangelogFingerprint.of(migrations(150, -1), "dev");
+        Assertions.assertEquals(List.of("64-149"), appended.getChangedRanges(applied.getSubtrees()));
+    }
+
+    @Test
+    void testSubtreesRoundTrip() {
+        var fingerprint = ChangelogFingerprint.of(migrations(130, -1), "dev");
+        Assertions.assertEquals(fingerprint.getSubtrees(),
+                ChangelogFingerprint.parseSubtrees(fingerprint.getSubtreesAsString()));
+        Assertions.assertEquals(List.of(), ChangelogFingerprint.parseSubtrees(null));
+    }
+
+    private List<Migration> migrations(int count, int changedIndex) {
+        List<Migration> migrations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            var body = i == changedIndex ? "changed_body_" + i : "body_" + i;
+            migrations.add(new Migration.MigrationBuilder()
+                    .header("title_" + i, "author", MigrationParameter.getDefaultValuesParametersMap(), Map.of())
+                    .build(Path.of("/home/" + i), i, body));
+        }
+        return migrations;
+    }
+}
@@ -0,0 +1,458 @@
+package ru.sequoio.library.services.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+/**
+ * JDBC database stand-in built on dynamic proxies, for tests without a database <br/>
+ * Queries are answered by the last registered answer, whose fragment the query contains,
+ * unknown queries update nothing and return no rows. Every round-trip is recorded
+ * together with the connection and its transaction state <br/>
+ * Rows registered with {@link #lockRow(String)} are locked by writing queries till the end of transaction
+ */
+public class FakeDatabase {
+
+    private static final long ROW_LOCK_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * @return rows as column maps, update count as {@link Integer} or 'null' for nothing
+     */
+    public interface Answer {
+        Object answer(String sql, List<Object> parameters) throws SQLException;
+    }
+
+    public static class Execution {
+
+        private final int connection;
+        private final String sql;
+        private final List<Object> parameters;
+        private final boolean inTransaction;
+
+        private Execution(int connection, String sql, List<Object> parameters, boolean inTransaction) {
+            this.connection = connection;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.inTransaction = inTransaction;
+        }
+
+        public int getConnection() {
+            return connection;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        public boolean isInTransaction() {
+            return inTransaction;
+        }
+
+        @Override
+        public String toString() {
+            return connection + (inTransaction ? " tx " : " ") + sql;
+        }
+    }
+
+    private final List<String> fragments = new CopyOnWriteArrayList<>();
+    private final List<Answer> answers = new CopyOnWriteArrayList<>();
+    private final List<Execution> executions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+    private final AtomicInteger connectionsClosed = new AtomicInteger();
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+    private final AtomicInteger savepoints = new AtomicInteger();
+    private final AtomicInteger releasedSavepoints = new AtomicInteger();
+    private final AtomicInteger savepointRollbacks = new AtomicInteger();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final Map<String, Integer> rowOwners = new HashMap<>();
+
+    public FakeDatabase answer(String fragment, Answer answer) {
+        fragments.add(fragment);
+        answers.add(answer);
+        return this;
+    }
+
+    /**
+     * Queries containing the fragment lock the same row, other connections wait for its release
+     * like for a row lock of a database
+     */
+    public FakeDatabase lockRow(String fragment) {
+        synchronized (rowOwners) {
+            rowOwners.put(fragment, 0);
+        }
+        return this;
+    }
+
+    @SafeVarargs
+    public final FakeDatabase rows(String fragment, Map<String, Object>... rows) {
+        return answer(fragment, (sql, parameters) -> List.of(rows));
+    }
+
+    public FakeDatabase fail(String fragment, String sqlState) {
+        return answer(fragment, (sql, parameters) -> {
+            throw new SQLException("Failed: " + sql, sqlState);
+        });
+    }
+
+    public static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    public DataSource getDataSource() {
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    return openConnection();
+                case "unwrap":
+                    throw new SQLException("Not a wrapper");
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    public Connection openConnection() {
+        return new FakeConnection(connectionsOpened.incrementAndGet()).proxy;
+    }
+
+    public List<Execution> getExecutions() {
+        return List.copyOf(executions);
+    }
+
+    public List<Execution> getExecutions(String fragment) {
+        return executions.stream()
+                .filter(execution -> execution.getSql().contains(fragment))
+                .collect(Collectors.toList());
+    }
+
+    public int count(String fragment) {
+        return getExecutions(fragment).size();
+    }
+
+    public int getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public int getConnectionsClosed() {
+        return connectionsClosed.get();
+    }
+
+    public int getCommits() {
+        return commits.get();
+    }
+
+    public int getRollbacks() {
+        return rollbacks.get();
+    }
+
+    public int getSavepoints() {
+        return savepoints.get();
+    }
+
+    public int getReleasedSavepoints() {
+        return releasedSavepoints.get();
+    }
+
+    public int getSavepointRollbacks() {
+        return savepointRollbacks.get();
+    }
+
+    /**
+     * @return number of executed batches, each one is a single round-trip
+     */
+    public int getBatches() {
+        return batches.get();
+    }
+
+    private Object execute(FakeConnection connection, String sql, List<Object> parameters) throws SQLException {
+        lockRows(connection, sql);
+        executions.add(new Execution(connection.id, sql, parameters, !connection.autoCommit));
+        if (connection.autoCommit) {
+            unlockRows(connection);
+        }
+        for (int i = answers.size() - 1; i >= 0; i--) {
+            if (sql.contains(fragments.get(i))) {
+                return answers.get(i).answer(sql, parameters);
+            }
+        }
+        return null;
+    }
+
+    private void lockRows(FakeConnection connection, String sql) throws SQLException {
+        long deadline = System.currentTimeMillis() + ROW_LOCK_TIMEOUT_MILLIS;
+        synchronized (rowOwners) {
+            for (var fragment : rowOwners.keySet()) {
+                if (!sql.contains(fragment)) {
+                    continue;
+                }
+                while (rowOwners.get(fragment) != 0 && rowOwners.get(fragment) != connection.id) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        throw new SQLException("Lock timeout: " + sql, "55P03");
+                    }
+                    try {
+                        rowOwners.wait(left);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted: " + sql, "57014");
+                    }
+                }
+                rowOwners.put(fragment, connection.id);
+            }
+        }
+    }
+
+    private void unlockRows(FakeConnection connection) {
+        synchronized (rowOwners) {
+            rowOwners.replaceAll((fragment, owner) -> owner == connection.id ? 0 : owner);
+            rowOwners.notifyAll();
+        }
+    }
+
+    private class FakeConnection implements InvocationHandler {
+
+        private final int id;
+        private final Connection proxy;
+        private boolean autoCommit = true;
+        private boolean closed;
+
+        private FakeConnection(int id) {
+            this.id = id;
+            this.proxy = proxy(Connection.class, this);
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (boolean) args[0];
+                    unlockRows(this);
+                    return null;
+                case "commit":
+                    commits.incrementAndGet();
+                    unlockRows(this);
+                    return null;
+                case "rollback":
+                    if (args == null) {
+                        rollbacks.incrementAndGet();
+                        unlockRows(this);
+                    } else {
+                        savepointRollbacks.incrementAndGet();
+                    }
+                    return null;
+                case "setSavepoint":
+                    savepoints.incrementAndGet();
+                    return proxy(Savepoint.class, (p, m, a) -> defaultValue(m));
+                case "releaseSavepoint":
+                    releasedSavepoints.incrementAndGet();
+                    return null;
+                case "createStatement":
+                    return new FakeStatement(this, null).proxy;
+                case "prepareStatement":
+                    return new FakeStatement(this, (String) args[0]).proxy;
+                case "createArrayOf":
+                    var elements = (Object[]) args[1];
+                    return proxy(Array.class, (p, m, a) -> "getArray".equals(m.getName()) ? elements : defaultValue(m));
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        connectionsClosed.incrementAndGet();
+                        unlockRows(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "unwrap":
+                    throw new SQLException("Not a wrapper");
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeConnection-" + id;
+                default:
+                    return defaultValue(method);
+            }
+        }
+    }
+
+    private class FakeStatement implements InvocationHandler {
+
+        private final FakeConnection connection;
+        private final String preparedSql;
+        private final Object proxy;
+        private final List<Object> parameters = new ArrayList<>();
+        private final List<String> batch = new ArrayList<>();
+        private int updateCount = -1;
+
+        private FakeStatement(FakeConnection connection, String preparedSql) {
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+            this.proxy = preparedSql == null
+                    ? proxy(Statement.class, this)
+                    : proxy(PreparedStatement.class, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            var name = method.getName();
+            if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer
+                    && method.getDeclaringClass() == PreparedStatement.class) {
+                int index = (int) args[0];
+                while (parameters.size() < index) {
+                    parameters.add(null);
+                }
+                parameters.set(index - 1, args[1] instanceof Array ? ((Array) args[1]).getArray() : args[1]);
+                return null;
+            }
+            switch (name) {
+                case "clearParameters":
+                    parameters.clear();
+                    return null;
+                case "addBatch":
+                    batch.add((String) args[0]);
+                    return null;
+                case "executeBatch":
+                    return executeBatch();
+                case "execute":
+                    var executed = run(args);
+                    return executed instanceof List;
+                case "executeQuery":
+                    return resultSet(run(args));
+                case "executeUpdate":
+                    run(args);
+                    return Math.max(updateCount, 0);
+                case "getUpdateCount":
+                    return updateCount;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return defaultValue(method);
+            }
+        }
+
+        private Object run(Object[] args) throws SQLException {
+            var sql = args != null && args.length > 0 ? (String) args[0] : preparedSql;
+            Object result;
+            synchronized (connection) {
+                result = execute(connection, sql, new ArrayList<>(parameters));
+            }
+            if (result instanceof List) {
+                updateCount = -1;
+            } else {
+                updateCount = result instanceof Integer ? (Integer) result : 0;
+            }
+            return result;
+        }
+
+        private int[] executeBatch() throws SQLException {
+            batches.incrementAndGet();
+            int[] updateCounts = new int[batch.size()];
+            int i = 0;
+            try {
+                for (; i < batch.size(); i++) {
+                    if (run(new Object[] { batch.get(i) }) instanceof List) {
+                        throw new SQLException("A result was returned when none was expected", "0100E");
+                    }
+                    updateCounts[i] = updateCount;
+                }
+                return updateCounts;
+            } catch (SQLException e) {
+                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), Arrays.copyOf(updateCounts, i), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResultSet resultSet(Object result) {
+        var rows = result instanceof List ? (List<Map<String, Object>>) result : List.<Map<String, Object>>of();
+        int[] position = { -1 };
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            var name = method.getName();
+            if ("next".equals(name)) {
+                return ++position[0] < rows.size();
+            }
+            if (name.startsWith("get") && args != null && args.length == 1) {
+                Object value = position[0] >= 0 && position[0] < rows.size()
+                        ? (args[0] instanceof Integer
+                            ? new ArrayList<>(rows.get(position[0]).values()).get((int) args[0] - 1)
+                            : rows.get(position[0]).get((String) args[0]))
+                        : null;
+                return value != null ? convert(value, method.getReturnType()) : defaultValue(method);
+            }
+            return defaultValue(method);
+        });
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (type == long.class) {
+            return ((Number) value).longValue();
+        }
+        if (type == int.class) {
+            return ((Number) value).intValue();
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    private static Object defaultValue(Method method) {
+        var type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,357 @@
+package ru.sequoio.library.services.db.application;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.domain.graph.Graph;
+import ru.sequoio.library.domain.migration.ChangelogFingerprint;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
+import ru.sequoio.library.domain.migration.migration_paramters.ParameterValue;
+import ru.sequoio.library.domain.migration.migration_paramters.StringParameterValue;
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.db.FakeDatabase;
+import ru.sequoio.library.services.db.lock.LockMode;
+import ru.sequoio.library.services.db.query.PostgresQueryProvider;
+
+class MigrationApplicationServiceImplTest {
+
+    private FakeDatabase database;
+    private int migrationCounter;
+
+    @BeforeEach
+    void setUp() {
+        database = new FakeDatabase()
+                .rows("FROM pg_tables", FakeDatabase.row("is_present", true))
+                .rows("FROM information_schema.columns", FakeDatabase.row("is_present", true))
+                .rows("pg_try_advisory_lock", FakeDatabase.row("is_present", true))
+                .rows("RETURNING fencing_token", FakeDatabase.row("fencing_token", 1L))
+                .answer("fencing_token = ?", (sql, parameters) -> 1)
+                .rows("expires_at > now()", FakeDatabase.row("fencing_token", 1L))
+                .fail("INSERT INTO broken", "42P01");
+        migrationCounter = 0;
+    }
+
+    @Test
+    void testRunOnSingleConnection() {
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.ADVISORY).build());
+
+        service.applyMigrationsFromGraph(graph("INSERT INTO a VALUES (1);", "INSERT INTO b VALUES (1);"));
+        Assertions.assertEquals(1, database.getConnectionsOpened());
+        Assertions.assertEquals(1, database.getConnectionsClosed());
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+        Assertions.assertEquals(2, database.count("INSERT INTO migration_log"));
+    }
+
+    @Test
+    void testAppliedPrefixSkipped() {
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.ADVISORY).build());
+        var graph = graph("INSERT INTO a VALUES (1);", "INSERT INTO b VALUES (1);", "INSERT INTO c VALUES (1);");
+        var migrations = graph.getOrderedNodes();
+        database.rows("SELECT name, hash", logRow(migrations.get(0), 0), logRow(migrations.get(1), 1));
+
+        service.applyMigrationsFromGraph(graph);
+        Assertions.assertEquals(0, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(0, database.count("INSERT INTO b VALUES"));
+        Assertions.assertEquals(1, database.count("INSERT INTO c VALUES"));
+        Assertions.assertEquals(0, database.count("UPDATE migration_log"));
+        var logged = database.getExecutions("INSERT INTO migration_log");
+        Assertions.assertEquals(1, logged.size());
+        Assertions.assertEquals(2L, logged.get(0).getParameters().get(4));
+    }
+
+    @Test
+    void testChangedOrderAfterPrefixRejected() {
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.ADVISORY).build());
+        var graph = graph("INSERT INTO a VALUES (1);", "INSERT INTO b VALUES (1);", "INSERT INTO c VALUES (1);");
+        var migrations = graph.getOrderedNodes();
+        database.rows("SELECT name, hash",
+                logRow(migrations.get(0), 0), logRow(migrations.get(2), 1), logRow(migrations.get(1), 2));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> service.applyMigrationsFromGraph(graph));
+        Assertions.assertEquals(0, database.count("INSERT INTO "));
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+    }
+
+    private static Map<String, Object> logRow(Migration migration, long runOrder) {
+        return FakeDatabase.row(
+                "name", migration.getName(),
+                "hash", migration.getHash(),
+                "hash_algorithm", migration.getHashAlgorithm().getName(),
+                "run_order", runOrder,
+                "run_modifier", migration.getRunModifier().getValueAsString());
+    }
+
+    @Test
+    void testIndependentMigrationsAppliedInParallel() {
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.ADVISORY).parallelism(3).build());
+
+        service.applyMigrationsFromGraph(graph(
+                "INSERT INTO a VALUES (1);", "INSERT INTO b VALUES (1);", "INSERT INTO c VALUES (1);"));
+        Assertions.assertEquals(4, database.getConnectionsOpened());
+        Assertions.assertEquals(4, database.getConnectionsClosed());
+        Assertions.assertEquals(3, Stream.of("INSERT INTO a ", "INSERT INTO b ", "INSERT INTO c ")
+                .map(statement -> database.getExecutions(statement).get(0).getConnection())
+                .distinct()
+                .count());
+        // run order is assigned before application, so it does not depend on scheduling
+        Map<Object, Object> runOrders = new HashMap<>();
+        for (var execution : database.getExecutions("INSERT INTO migration_log")) {
+            runOrders.put(execution.getParameters().get(1), execution.getParameters().get(4));
+        }
+        Assertions.assertEquals(Map.of("/home/1", 0L, "/home/2", 1L, "/home/3", 2L), runOrders);
+    }
+
+    @Test
+    void testParallelRunFailsWithFailedSequence() {
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.ADVISORY).parallelism(2).build());
+        var graph = graph("INSERT INTO a VALUES (1);", "INSERT INTO broken VALUES (1);");
+
+        Assertions.assertThrows(StatementExecutionException.class, () -> service.applyMigrationsFromGraph(graph));
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+        Assertions.assertEquals(database.getConnectionsOpened(), database.getConnectionsClosed());
+    }
+
+    @Test
+    void testAdvisoryLockReleasedAfterFailedRun() {
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.ADVISORY).build());
+        var graph = graph("INSERT INTO applied VALUES (1);", "INSERT INTO broken VALUES (1);");
+
+        Assertions.assertThrows(StatementExecutionException.class, () -> service.applyMigrationsFromGraph(graph));
+        Assertions.assertEquals(1, database.count("pg_advisory_lock"));
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+        var notifications = database.getExecutions("pg_notify");
+        Assertions.assertEquals(1, notifications.size());
+        Assertions.assertTrue(notifications.get(0).getParameters().get(1).toString()
+                .startsWith(MigrationApplicationServiceImpl.FAILED_CHANGELOG_PAYLOAD_PREFIX));
+        Assertions.assertEquals(0, database.count("INSERT INTO changelog_fingerprint"));
+        Assertions.assertEquals(database.getConnectionsOpened(), database.getConnectionsClosed());
+    }
+
+    @Test
+    void testLeaseExpirableAfterFailedRun() throws InterruptedException {
+        database.answer("INSERT INTO slow_broken", (sql, parameters) -> {
+            sleep(100);
+            throw new SQLException("Failed: " + sql, "42P01");
+        });
+        database.fail("SET locked = false", "08006");
+        var service = service(ApplicationSettings.builder()
+                .lockMode(LockMode.TABLE)
+                .lockLease(Duration.ofMillis(30))
+                .build());
+        var graph = graph("INSERT INTO slow_broken VALUES (1);");
+
+        Assertions.assertThrows(StatementExecutionException.class, () -> service.applyMigrationsFromGraph(graph));
+        Assertions.assertEquals(1, database.count("SET locked = false"));
+        int heartbeats = database.count("SET expires_at");
+        Assertions.assertTrue(heartbeats > 1);
+        Thread.sleep(100);
+        Assertions.assertEquals(heartbeats, database.count("SET expires_at"));
+    }
+
+    @Test
+    void testParallelUnitsNotSerializedByLeaseVerification() {
+        var barrier = new CyclicBarrier(2);
+        database.lockRow("UPDATE migration_log_lock")
+                .answer("INSERT INTO a2", (sql, parameters) -> await(barrier))
+                .answer("INSERT INTO b2", (sql, parameters) -> await(barrier));
+        var service = service(ApplicationSettings.builder()
+                .lockMode(LockMode.TABLE)
+                .parallelism(2)
+                .groupCommit(100, Duration.ZERO)
+                .build());
+        // second migrations of both units meet only if first ones were verified without keeping the lease row
+        var graph = new Graph<>(List.of(
+                migration("a1", "/home/a", null, "INSERT INTO a1 VALUES (1);"),
+                migration("a2", "/home/a", "a1", "INSERT INTO a2 VALUES (1);"),
+                migration("b1", "/home/b", null, "INSERT INTO b1 VALUES (1);"),
+                migration("b2", "/home/b", "b1", "INSERT INTO b2 VALUES (1);")));
+
+        service.applyMigrationsFromGraph(graph);
+        Assertions.assertEquals(4, database.count("INSERT INTO migration_log"));
+        Assertions.assertEquals(0, database.getExecutions("SET expires_at").stream()
+                .filter(FakeDatabase.Execution::isInTransaction)
+                .count());
+    }
+
+    @Test
+    void testLostLeaseFailsRunBeforeMigrationLogWrite() {
+        database.rows("expires_at > now()");
+        var service = service(ApplicationSettings.builder().lockMode(LockMode.TABLE).build());
+        var graph = graph("INSERT INTO a VALUES (1);", "INSERT INTO b VALUES (1);");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> service.applyMigrationsFromGraph(graph));
+        Assertions.assertEquals(1, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(0, database.count("INSERT INTO b VALUES"));
+        Assertions.assertEquals(0, database.count("INSERT INTO migration_log"));
+        Assertions.assertTrue(database.getRollbacks() > 0);
+    }
+
+    @Test
+    void testFollowerFindsChangelogAppliedBeforeListening() {
+        database.rows("pg_try_advisory_lock", FakeDatabase.row("is_present", false));
+        var queryProvider = new NotifiedQueryProvider();
+        var service = service(ApplicationSettings.builder()
+                .lockMode(LockMode.ADVISORY)
+                .follower(Duration.ofSeconds(5))
+                .fingerprint(true)
+                .build(), queryProvider);
+        var graph = graph("INSERT INTO a VALUES (1);");
+        var fingerprint = ChangelogFingerprint.of(graph.getOrderedNodes(), "test").getRoot();
+        int[] reads = { 0 };
+        database.answer("FROM changelog_fingerprint", (sql, parameters) -> ++reads[0] == 1
+                ? List.of()
+                : List.of(FakeDatabase.row("fingerprint", fingerprint, "subtrees", "")));
+
+        service.applyMigrationsFromGraph(graph);
+        Assertions.assertEquals(2, reads[0]);
+        Assertions.assertEquals(0, queryProvider.waits);
+        Assertions.assertEquals(0, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(1, database.count("UNLISTEN"));
+    }
+
+    @Test
+    void testFollowerTakesLockReleasedBeforeListening() {
+        int[] attempts = { 0 };
+        database.answer("pg_try_advisory_lock",
+                (sql, parameters) -> List.of(FakeDatabase.row("is_present", ++attempts[0] > 1)));
+        var queryProvider = new NotifiedQueryProvider();
+        var service = service(followerSettings(), queryProvider);
+
+        service.applyMigrationsFromGraph(graph("INSERT INTO a VALUES (1);"));
+        Assertions.assertEquals(2, attempts[0]);
+        Assertions.assertEquals(0, queryProvider.waits);
+        Assertions.assertEquals(1, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+    }
+
+    @Test
+    void testFollowerWokenByLeaderNotification() {
+        database.rows("pg_try_advisory_lock", FakeDatabase.row("is_present", false));
+        var queryProvider = new NotifiedQueryProvider();
+        var service = service(followerSettings(), queryProvider);
+        var graph = graph("INSERT INTO a VALUES (1);");
+        queryProvider.payloads = List.of(ChangelogFingerprint.of(graph.getOrderedNodes(), "test").getRoot());
+
+        service.applyMigrationsFromGraph(graph);
+        Assertions.assertEquals(1, queryProvider.waits);
+        Assertions.assertEquals(0, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(0, database.count("pg_advisory_lock"));
+    }
+
+    @Test
+    void testFollowerTakesOverAfterLeaderFailureNotification() {
+        int[] attempts = { 0 };
+        database.answer("pg_try_advisory_lock",
+                (sql, parameters) -> List.of(FakeDatabase.row("is_present", ++attempts[0] > 2)));
+        var queryProvider = new NotifiedQueryProvider();
+        var service = service(followerSettings(), queryProvider);
+        var graph = graph("INSERT INTO a VALUES (1);");
+        queryProvider.payloads = List.of(MigrationApplicationServiceImpl.FAILED_CHANGELOG_PAYLOAD_PREFIX
+                + ChangelogFingerprint.of(graph.getOrderedNodes(), "test").getRoot());
+
+        service.applyMigrationsFromGraph(graph);
+        Assertions.assertEquals(1, queryProvider.waits);
+        Assertions.assertEquals(1, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+    }
+
+    @Test
+    void testFollowerTakesLockReleasedWithoutNotification() {
+        int[] attempts = { 0 };
+        database.answer("pg_try_advisory_lock",
+                (sql, parameters) -> List.of(FakeDatabase.row("is_present", ++attempts[0] > 2)));
+        var queryProvider = new NotifiedQueryProvider();
+        var service = service(followerSettings(), queryProvider);
+
+        service.applyMigrationsFromGraph(graph("INSERT INTO a VALUES (1);"));
+        Assertions.assertEquals(3, attempts[0]);
+        Assertions.assertEquals(2, queryProvider.waits);
+        Assertions.assertEquals(1, database.count("INSERT INTO a VALUES"));
+        Assertions.assertEquals(1, database.count("pg_advisory_unlock"));
+    }
+
+    private static ApplicationSettings followerSettings() {
+        return ApplicationSettings.builder()
+                .lockMode(LockMode.ADVISORY)
+                .follower(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Delivers the given payloads instead of notifications of PostgreSQL driver
+     */
+    private static class NotifiedQueryProvider extends PostgresQueryProvider {
+
+        private List<String> payloads = List.of();
+        private int waits;
+
+        @Override
+        public List<String> awaitNotifications(Connection connection, Duration timeout) {
+            waits++;
+            return payloads;
+        }
+    }
+
+    private static Object await(CyclicBarrier barrier) throws SQLException {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+            return null;
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new SQLException("Statements of parallel units did not overlap", "57014", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MigrationApplicationServiceImpl service(ApplicationSettings settings) {
+        return service(settings, new PostgresQueryProvider());
+    }
+
+    private MigrationApplicationServiceImpl service(ApplicationSettings settings, PostgresQueryProvider queryProvider) {
+        return new MigrationApplicationServiceImpl(database.getDataSource(), null, "public",
+                queryProvider, "test", settings);
+    }
+
+    private Migration migration(String title, String path, String runAfter, String body) {
+        Map<MigrationParameter, ParameterValue> params = new HashMap<>(MigrationParameter.getDefaultValuesParametersMap());
+        if (runAfter != null) {
+            params.put(MigrationParameter.RUN_AFTER, new StringParameterValue(runAfter));
+        }
+        return new Migration.MigrationBuilder()
+                .header(title, "author", params, Map.of())
+                .build(Path.of(path), ++migrationCounter, body);
+    }
+
+    private Graph<Migration> graph(String... bodies) {
+        List<Migration> migrations = new ArrayList<>();
+        for (var body : bodies) {
+            migrationCounter++;
+            migrations.add(new Migration.MigrationBuilder()
+                    .header("title_" + migrationCounter, "author",
+                            MigrationParameter.getDefaultValuesParametersMap(), Map.of())
+                    .build(Path.of("/home/" + migrationCounter), migrationCounter, body));
+        }
+        return new Graph<>(migrations);
+    }
+}
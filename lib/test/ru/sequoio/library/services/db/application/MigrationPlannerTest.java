@@ -0,0 +1,139 @@
+package ru.sequoio.library.services.db.application;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.domain.graph.Graph;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.MigrationPlan;
+import ru.sequoio.library.domain.migration.RunStatus;
+import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
+import ru.sequoio.library.domain.migration.migration_paramters.RunParameterValue;
+import ru.sequoio.library.services.db.FakeDatabase;
+import ru.sequoio.library.services.db.query.PostgresQueryProvider;
+
+class MigrationPlannerTest {
+
+    private FakeDatabase database;
+    private MigrationPlanner planner;
+    private List<Migration> migrations;
+
+    @BeforeEach
+    void setUp() {
+        database = new FakeDatabase()
+                .rows("FROM pg_tables", FakeDatabase.row("is_present", true));
+        planner = new MigrationPlanner(database.getDataSource(), null, "public", new PostgresQueryProvider(), "test",
+                ApplicationSettings.defaults());
+        migrations = new ArrayList<>();
+    }
+
+    @Test
+    void testPlanReadsLogWithoutLock() {
+        var graph = graph(
+                migration(RunParameterValue.ONCE),
+                migration(RunParameterValue.ONCHANGE),
+                migration(RunParameterValue.ALWAYS),
+                migration(RunParameterValue.ONCE));
+        database.rows("SELECT name, hash",
+                logRow(migrations.get(0), migrations.get(0).getHash(), 0),
+                logRow(migrations.get(1), "changed", 1),
+                logRow(migrations.get(2), migrations.get(2).getHash(), 2));
+        database.rows("FROM migration_run",
+                FakeDatabase.row("name", migrations.get(1).getName(), "duration_ms", 1500L),
+                FakeDatabase.row("name", migrations.get(3).getName(), "duration_ms", 500L));
+
+        var plan = planner.plan(graph);
+        Assertions.assertEquals(
+                List.of(MigrationPlan.Action.UP_TO_DATE, MigrationPlan.Action.APPLY_CHANGED,
+                        MigrationPlan.Action.APPLY_ALWAYS, MigrationPlan.Action.APPLY_NEW),
+                plan.getMigrations().stream().map(MigrationPlan.PlannedMigration::getAction).collect(Collectors.toList()));
+        Assertions.assertEquals(MigrationPlan.Status.PENDING, plan.getStatus());
+        Assertions.assertEquals(Duration.ofMillis(2000), plan.getEstimatedDuration());
+        Assertions.assertTrue(plan.getOrderViolations().isEmpty());
+        Assertions.assertEquals(0, database.count("lock"));
+        Assertions.assertEquals(0, database.count("INSERT"));
+        Assertions.assertEquals(0, database.count("UPDATE"));
+        Assertions.assertEquals(database.getConnectionsOpened(), database.getConnectionsClosed());
+    }
+
+    @Test
+    void testPlanKeepsGraphUnchanged() {
+        var graph = graph(migration(RunParameterValue.ONCE), migration(RunParameterValue.ONCE));
+        database.rows("SELECT name, hash", logRow(migrations.get(0), migrations.get(0).getHash(), 0));
+
+        var plan = planner.plan(graph);
+        Assertions.assertEquals(1, plan.getPending().size());
+        for (var migration : graph.getOrderedNodes()) {
+            Assertions.assertEquals(RunStatus.UNKNOWN, migration.getRunStatus());
+            Assertions.assertNull(migration.getLoggedMigration());
+            Assertions.assertNull(migration.getActualOrder());
+        }
+    }
+
+    @Test
+    void testChangedOnceMigrationInvalid() {
+        var graph = graph(migration(RunParameterValue.ONCE));
+        database.rows("SELECT name, hash", logRow(migrations.get(0), "changed", 0));
+
+        var plan = planner.plan(graph);
+        Assertions.assertEquals(MigrationPlan.Status.INVALID, plan.getStatus());
+        Assertions.assertEquals(1, plan.getInvalid().size());
+        Assertions.assertNotNull(plan.getInvalid().get(0).getReason());
+    }
+
+    @Test
+    void testMissingLogTableMeansAllNew() {
+        database.rows("FROM pg_tables", FakeDatabase.row("is_present", false));
+        var graph = graph(migration(RunParameterValue.ONCE), migration(RunParameterValue.ONCE));
+
+        var plan = planner.plan(graph);
+        Assertions.assertEquals(2, plan.getPending().size());
+        Assertions.assertEquals(0, database.count("SELECT name, hash"));
+        Assertions.assertEquals(Duration.ZERO, plan.getEstimatedDuration());
+    }
+
+    @Test
+    void testOrderViolationsReported() {
+        var graph = graph(migration(RunParameterValue.ONCE), migration(RunParameterValue.ONCE));
+        database.rows("SELECT name, hash",
+                logRow(migrations.get(1), migrations.get(1).getHash(), 0),
+                logRow(migrations.get(0), migrations.get(0).getHash(), 1),
+                FakeDatabase.row("name", "deleted", "hash", "hash", "hash_algorithm", "md5",
+                        "run_order", 2L, "run_modifier", "once"));
+
+        var plan = planner.plan(graph);
+        Assertions.assertEquals(MigrationPlan.Status.INVALID, plan.getStatus());
+        Assertions.assertEquals(2, plan.getOrderViolations().size());
+    }
+
+    private Migration migration(RunParameterValue run) {
+        int order = migrations.size() + 1;
+        var params = MigrationParameter.getDefaultValuesParametersMap();
+        params.put(MigrationParameter.RUN, run);
+        var migration = new Migration.MigrationBuilder()
+                .header("title_" + order, "author", params, Map.of())
+                .build(Path.of("/home/" + order), order, "INSERT INTO a VALUES (" + order + ");");
+        migrations.add(migration);
+        return migration;
+    }
+
+    private static Graph<Migration> graph(Migration... migrations) {
+        return new Graph<>(List.of(migrations));
+    }
+
+    private static Map<String, Object> logRow(Migration migration, String hash, long runOrder) {
+        return FakeDatabase.row(
+                "name", migration.getName(),
+                "hash", hash,
+                "hash_algorithm", migration.getHashAlgorithm().getName(),
+                "run_order", runOrder,
+                "run_modifier", migration.getRunModifier().getValueAsString());
+    }
+}
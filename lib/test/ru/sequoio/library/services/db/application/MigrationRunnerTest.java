@@ -0,0 +1,295 @@
+package ru.sequoio.library.services.db.application;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.domain.migration.RunStatus;
+import ru.sequoio.library.domain.migration.migration_paramters.BooleanParameterValue;
+import ru.sequoio.library.domain.migration.migration_paramters.MigrationParameter;
+import ru.sequoio.library.domain.migration.migration_paramters.ParameterValue;
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.db.FakeDatabase;
+import ru.sequoio.library.services.db.application.execution.ConcurrentIndexExecutor;
+import ru.sequoio.library.services.db.application.sieve.SieveChain;
+import ru.sequoio.library.services.db.lock.LockStrategy;
+import ru.sequoio.library.services.db.query.PostgresQueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+import ru.sequoio.library.services.monitoring.MigrationListener;
+
+class MigrationRunnerTest {
+
+    private final PostgresQueryProvider queryProvider = new PostgresQueryProvider();
+
+    private FakeDatabase database;
+    private int migrationCounter;
+
+    @BeforeEach
+    void setUp() {
+        database = new FakeDatabase();
+        migrationCounter = 0;
+    }
+
+    @Test
+    void testInterruptFailsRunBeforeNextMigration() throws SQLException {
+        var migrations = List.of(
+                migration("INSERT INTO first VALUES (1);"),
+                migration("INSERT INTO second VALUES (1);"));
+        var interrupting = new MigrationListener() {
+            @Override
+            public void onMigrationFinished(Migration migration, boolean applied, long durationNanos) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            var runner = runner(session, ApplicationSettings.defaults(), interrupting);
+            Assertions.assertThrows(IllegalStateException.class, () -> runner.run(migrations));
+        } finally {
+            Assertions.assertTrue(Thread.interrupted());
+        }
+        Assertions.assertEquals(1, database.count("INSERT INTO first"));
+        Assertions.assertEquals(0, database.count("INSERT INTO second"));
+        Assertions.assertEquals(1, database.count("INSERT INTO migration_log"));
+        Assertions.assertEquals(1, database.getCommits());
+    }
+
+    @Test
+    void testEachMigrationCommittedWithoutGroupCommit() throws SQLException {
+        var migrations = List.of(
+                migration("INSERT INTO a VALUES (1);"),
+                migration("INSERT INTO a VALUES (2);"),
+                migration("INSERT INTO a VALUES (3);"));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, ApplicationSettings.defaults(), MigrationListener.NONE).run(migrations);
+        }
+        Assertions.assertEquals(3, database.getCommits());
+    }
+
+    @Test
+    void testGroupCommitMergesMigrations() throws SQLException {
+        var settings = ApplicationSettings.builder().groupCommit(100, Duration.ZERO).build();
+        var migrations = List.of(
+                migration("INSERT INTO a VALUES (1);"),
+                migration("INSERT INTO a VALUES (2);"),
+                migration("INSERT INTO a VALUES (3);"));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, settings, MigrationListener.NONE).run(migrations);
+        }
+        Assertions.assertEquals(1, database.getCommits());
+        Assertions.assertEquals(0, database.getSavepoints());
+        Assertions.assertTrue(database.getExecutions("INSERT INTO").stream()
+                .allMatch(FakeDatabase.Execution::isInTransaction));
+    }
+
+    @Test
+    void testGroupCommittedWhenFull() throws SQLException {
+        // each migration takes its statement and migration log record
+        var settings = ApplicationSettings.builder().groupCommit(4, Duration.ZERO).build();
+        var migrations = List.of(
+                migration("INSERT INTO a VALUES (1);"),
+                migration("INSERT INTO a VALUES (2);"),
+                migration("INSERT INTO a VALUES (3);"));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, settings, MigrationListener.NONE).run(migrations);
+        }
+        Assertions.assertEquals(2, database.getCommits());
+    }
+
+    @Test
+    void testFailedMigrationRolledBackToSavepoint() throws SQLException {
+        database.fail("INSERT INTO broken", "42P01");
+        var failSafe = Map.<MigrationParameter, ParameterValue>of(MigrationParameter.FAIL_FAST, BooleanParameterValue.FALSE);
+        var migrations = List.of(
+                migration("INSERT INTO a VALUES (1);\nINSERT INTO broken VALUES (1);", failSafe),
+                migration("INSERT INTO c VALUES (1);", failSafe));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, ApplicationSettings.defaults(), MigrationListener.NONE).run(migrations);
+        }
+        Assertions.assertEquals(2, database.getSavepoints());
+        Assertions.assertEquals(1, database.getSavepointRollbacks());
+        Assertions.assertEquals(2, database.getReleasedSavepoints());
+        Assertions.assertEquals(0, database.getRollbacks());
+        Assertions.assertEquals(1, database.count("INSERT INTO c"));
+        Assertions.assertEquals(2, database.count("INSERT INTO migration_log"));
+    }
+
+    @Test
+    void testConcurrentIndexMigrationAppliedOutsideOfTransaction() throws SQLException {
+        var migrations = List.of(
+                migration("INSERT INTO a VALUES (1);"),
+                migration("CREATE INDEX CONCURRENTLY idx ON a (b);"));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, ApplicationSettings.defaults(), MigrationListener.NONE).run(migrations);
+        }
+        Assertions.assertTrue(database.getExecutions("INSERT INTO a").get(0).isInTransaction());
+        Assertions.assertFalse(database.getExecutions("CREATE INDEX CONCURRENTLY").get(0).isInTransaction());
+    }
+
+    @Test
+    void testTransactionalMigrationMixingConcurrentIndexCommandsRejected() throws SQLException {
+        var mixed = migration("CREATE TABLE a (b int);\nCREATE INDEX CONCURRENTLY idx ON a (b);");
+        Assertions.assertThrows(IllegalStateException.class, mixed::hasConcurrentIndexCommands);
+
+        var nonTransactional = migration("CREATE TABLE a (b int);\nCREATE INDEX CONCURRENTLY idx ON a (b);",
+                Map.of(MigrationParameter.TRANSACTIONAL, BooleanParameterValue.FALSE));
+        Assertions.assertTrue(nonTransactional.hasConcurrentIndexCommands());
+    }
+
+    @Test
+    void testIgnoredMigrationMixingConcurrentIndexCommandsNotRejected() throws SQLException {
+        var migrations = List.of(
+                migration("CREATE TABLE a (b int);\nCREATE INDEX CONCURRENTLY idx ON a (b);",
+                        Map.of(MigrationParameter.IGNORE, BooleanParameterValue.TRUE)),
+                migration("INSERT INTO c VALUES (1);"));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, ApplicationSettings.defaults(), MigrationListener.NONE).run(migrations);
+        }
+        Assertions.assertEquals(0, database.count("CREATE INDEX CONCURRENTLY"));
+        Assertions.assertEquals(1, database.count("INSERT INTO c VALUES"));
+    }
+
+    @Test
+    void testFailedMaintenanceParameterReported() throws SQLException {
+        database.fail("set_config", "22023");
+        var settings = ApplicationSettings.builder().indexBuilds(1, "1GB", null).build();
+        var migrations = List.of(migration("CREATE INDEX CONCURRENTLY idx ON a (b);"));
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            var runner = runner(session, settings, MigrationListener.NONE);
+            var exception = Assertions.assertThrows(StatementExecutionException.class, () -> runner.run(migrations));
+            Assertions.assertEquals(0, exception.getStatementIndex());
+        }
+        Assertions.assertEquals(0, database.count("CREATE INDEX CONCURRENTLY"));
+    }
+
+    @Test
+    void testMigrationRunsRecorded() throws SQLException {
+        database.answer("INSERT INTO a", (sql, parameters) -> 3);
+        database.fail("INSERT INTO broken", "42P01");
+        var migrations = List.of(
+                migration("INSERT INTO a VALUES (1), (2), (3);\nINSERT INTO a VALUES (4), (5), (6);"),
+                migration("INSERT INTO broken VALUES (1);",
+                        Map.of(MigrationParameter.FAIL_FAST, BooleanParameterValue.FALSE)));
+        var history = new MigrationRunHistory("migration_run", "run-1", "host-1", Map.of(), ApplicationSettings.defaults());
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, ApplicationSettings.defaults(), history).run(migrations);
+        }
+        var runs = database.getExecutions("INSERT INTO migration_run");
+        Assertions.assertEquals(2, runs.size());
+        Assertions.assertEquals(List.of("run-1", migrations.get(0).getName()), runs.get(0).getParameters().subList(0, 2));
+        Assertions.assertEquals("[3, 3]", runs.get(0).getParameters().get(5));
+        Assertions.assertEquals("SUCCEEDED", runs.get(0).getParameters().get(6));
+        Assertions.assertEquals("host-1", runs.get(0).getParameters().get(8));
+        Assertions.assertEquals("FAILED", runs.get(1).getParameters().get(6));
+        // run is written with migration log, so they are committed together
+        Assertions.assertTrue(runs.stream().allMatch(FakeDatabase.Execution::isInTransaction));
+    }
+
+    @Test
+    void testFailedRunRecordedAfterRollback() throws SQLException {
+        database.fail("INSERT INTO broken", "42P01");
+        var migrations = List.of(migration("INSERT INTO broken VALUES (1);"));
+        var history = new MigrationRunHistory("migration_run", "run-1", "host-1", Map.of(), ApplicationSettings.defaults());
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            var runner = runner(session, ApplicationSettings.defaults(), history);
+            Assertions.assertThrows(StatementExecutionException.class, () -> runner.run(migrations));
+        }
+        var runs = database.getExecutions("INSERT INTO migration_run");
+        Assertions.assertEquals(1, runs.size());
+        Assertions.assertEquals("FAILED", runs.get(0).getParameters().get(6));
+        Assertions.assertFalse(runs.get(0).isInTransaction());
+        Assertions.assertEquals(0, database.count("INSERT INTO migration_log"));
+    }
+
+    @Test
+    void testSlowRunFlagged() throws SQLException {
+        database.answer("INSERT INTO a", (sql, parameters) -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        });
+        var settings = ApplicationSettings.builder().slowRun(2, Duration.ZERO).build();
+        var migrations = List.of(migration("INSERT INTO a VALUES (1);"), migration("INSERT INTO b VALUES (1);"));
+        var history = new MigrationRunHistory("migration_run", "run-1", "host-1",
+                Map.of(migrations.get(0).getName(), 1L, migrations.get(1).getName(), 1000L), settings);
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            runner(session, settings, history).run(migrations);
+        }
+        var runs = database.getExecutions("INSERT INTO migration_run");
+        Assertions.assertEquals(true, runs.get(0).getParameters().get(7));
+        Assertions.assertEquals(false, runs.get(1).getParameters().get(7));
+    }
+
+    private MigrationRunner runner(MigrationSession session, ApplicationSettings settings, MigrationListener listener) {
+        return runner(session, settings, listener, MigrationRunHistory.disabled());
+    }
+
+    private MigrationRunner runner(MigrationSession session, ApplicationSettings settings, MigrationRunHistory history) {
+        return runner(session, settings, MigrationListener.NONE, history);
+    }
+
+    private MigrationRunner runner(MigrationSession session,
+                                   ApplicationSettings settings,
+                                   MigrationListener listener,
+                                   MigrationRunHistory history) {
+        return new MigrationRunner(session, queryProvider, new SieveChain("test"), new NoLockStrategy(), settings,
+                MigrationApplicationServiceImpl.MIGRATION_LOG_TABLE_NAME, listener, history,
+                new ConcurrentIndexExecutor(queryProvider, null, settings));
+    }
+
+    private Migration migration(String body) {
+        return migration(body, Map.of());
+    }
+
+    private Migration migration(String body, Map<MigrationParameter, ParameterValue> params) {
+        migrationCounter++;
+        var allParams = MigrationParameter.getDefaultValuesParametersMap();
+        allParams.putAll(params);
+        var migration = new Migration.MigrationBuilder()
+                .header("title_" + migrationCounter, "author", allParams, Map.of())
+                .build(Path.of("/home/" + migrationCounter), migrationCounter, body);
+        migration.setRunStatus(RunStatus.NEW);
+        migration.setActualOrder((long) migrationCounter - 1);
+        return migration;
+    }
+
+    private static class NoLockStrategy implements LockStrategy {
+
+        @Override
+        public void acquire(MigrationSession session) {
+        }
+
+        @Override
+        public boolean tryAcquire(MigrationSession session) {
+            return true;
+        }
+
+        @Override
+        public void release(MigrationSession session) {
+        }
+
+        @Override
+        public boolean requiresLockTable() {
+            return false;
+        }
+    }
+}
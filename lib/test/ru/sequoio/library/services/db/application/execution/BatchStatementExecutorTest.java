@@ -0,0 +1,94 @@
+package ru.sequoio.library.services.db.application.execution;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.exception.StatementExecutionException;
+import ru.sequoio.library.services.db.FakeDatabase;
+
+class BatchStatementExecutorTest {
+
+    private final BatchStatementExecutor executor = new BatchStatementExecutor();
+    private final FakeDatabase database = new FakeDatabase();
+
+    @Test
+    void testStatementsSentAsOneBatch() {
+        database.answer("UPDATE", (sql, parameters) -> 2);
+        List<Integer> executed = new ArrayList<>();
+
+        var updateCounts = executor.execute(database.openConnection(), "migration",
+                List.of("INSERT INTO a VALUES (1);", "UPDATE a SET b = 1;", "DELETE FROM c;"),
+                (statement, rowsAffected, durationNanos) -> executed.add(statement));
+        Assertions.assertEquals(1, database.getBatches());
+        Assertions.assertEquals(3, updateCounts.length);
+        Assertions.assertEquals(2, updateCounts[1]);
+        Assertions.assertEquals(List.of(0, 1, 2), executed);
+    }
+
+    @Test
+    void testStatementsReturningResultsExecutedBetweenBatches() {
+        database.rows("setval", FakeDatabase.row("setval", 10L));
+        database.answer("UPDATE", (sql, parameters) -> 2);
+        List<Integer> executed = new ArrayList<>();
+
+        var updateCounts = executor.execute(database.openConnection(), "migration",
+                List.of("INSERT INTO a VALUES (1);", "SELECT setval('a_seq', 10);",
+                        "UPDATE a SET b = 1;", "DELETE FROM c;"),
+                (statement, rowsAffected, durationNanos) -> executed.add(statement));
+        Assertions.assertEquals(2, database.getBatches());
+        Assertions.assertEquals(1, database.count("setval"));
+        Assertions.assertEquals(4, updateCounts.length);
+        Assertions.assertEquals(2, updateCounts[2]);
+        Assertions.assertEquals(List.of(0, 1, 2, 3), executed);
+    }
+
+    @Test
+    void testFailedStatementOfLaterBatchReported() {
+        database.fail("DELETE", "42P01");
+
+        var exception = Assertions.assertThrows(StatementExecutionException.class,
+                () -> executor.execute(database.openConnection(), "migration",
+                        List.of("SELECT 1;", "UPDATE a SET b = 1;", "DELETE FROM c;")));
+        Assertions.assertEquals(2, exception.getStatementIndex());
+    }
+
+    @Test
+    void testStatementsReturningResultsDetected() {
+        Assertions.assertTrue(BatchStatementExecutor.mayReturnResults("SELECT setval('a_seq', 10);"));
+        Assertions.assertTrue(BatchStatementExecutor.mayReturnResults("-- reset\n  (select 1);"));
+        Assertions.assertTrue(BatchStatementExecutor.mayReturnResults("/* cte */ WITH x AS (SELECT 1) SELECT * FROM x;"));
+        Assertions.assertTrue(BatchStatementExecutor.mayReturnResults("INSERT INTO a VALUES (1) RETURNING id;"));
+        Assertions.assertFalse(BatchStatementExecutor.mayReturnResults("INSERT INTO a SELECT * FROM b;"));
+        Assertions.assertFalse(BatchStatementExecutor.mayReturnResults("CREATE TABLE selection (a int);"));
+    }
+
+    @Test
+    void testFailedStatementOfBatchReported() {
+        database.fail("UPDATE", "42P01");
+
+        var exception = Assertions.assertThrows(StatementExecutionException.class,
+                () -> executor.execute(database.openConnection(), "migration",
+                        List.of("INSERT INTO a VALUES (1);", "UPDATE a SET b = 1;", "DELETE FROM c;")));
+        Assertions.assertEquals(1, exception.getStatementIndex());
+        Assertions.assertEquals("migration", exception.getMigrationName());
+    }
+
+    @Test
+    void testFailureOutsideOfBatchReported() {
+        var brokenConnection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    throw new SQLException("Connection is closed", "08003");
+                });
+
+        var exception = Assertions.assertThrows(StatementExecutionException.class,
+                () -> executor.execute(brokenConnection, "migration", List.of("INSERT INTO a VALUES (1);")));
+        Assertions.assertEquals(0, exception.getStatementIndex());
+        Assertions.assertTrue(exception.getCause() instanceof SQLException);
+    }
+}
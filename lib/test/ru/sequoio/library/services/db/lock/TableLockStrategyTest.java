@@ -0,0 +1,65 @@
+package ru.sequoio.library.services.db.lock;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.services.db.FakeDatabase;
+import ru.sequoio.library.services.db.query.PostgresQueryProvider;
+import ru.sequoio.library.services.db.session.MigrationSession;
+
+class TableLockStrategyTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(1);
+
+    private FakeDatabase database;
+    private TableLockStrategy lockStrategy;
+
+    @BeforeEach
+    void setUp() {
+        database = new FakeDatabase()
+                .rows("RETURNING fencing_token", FakeDatabase.row("fencing_token", 7L));
+        lockStrategy = new TableLockStrategy(new PostgresQueryProvider(), "migration_log_lock", null,
+                Duration.ofMillis(10), Duration.ofMillis(10), LEASE);
+    }
+
+    @Test
+    void testVerificationExtendsLeaseOfFencingToken() throws SQLException {
+        database.answer("SET expires_at", (sql, parameters) -> 1);
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            Assertions.assertTrue(lockStrategy.tryAcquire(session));
+            lockStrategy.verify(session);
+            lockStrategy.release(session);
+        }
+        var extension = database.getExecutions("SET expires_at").get(0);
+        Assertions.assertEquals(LEASE.toMillis(), extension.getParameters().get(0));
+        Assertions.assertEquals(7L, extension.getParameters().get(1));
+        Assertions.assertEquals(7L, database.getExecutions("SET locked = false").get(0).getParameters().get(0));
+    }
+
+    @Test
+    void testLeaseTakenOverFailsVerification() throws SQLException {
+        database.answer("SET expires_at", (sql, parameters) -> 0);
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            Assertions.assertTrue(lockStrategy.tryAcquire(session));
+            Assertions.assertThrows(IllegalStateException.class, () -> lockStrategy.verify(session));
+            // lost lease is not extended anymore
+            Assertions.assertThrows(IllegalStateException.class, () -> lockStrategy.verify(session));
+        }
+        Assertions.assertEquals(1, database.count("SET expires_at"));
+    }
+
+    @Test
+    void testLeaseHeldByAnotherInstanceNotAcquired() throws SQLException {
+        database.rows("RETURNING fencing_token");
+
+        try (var session = MigrationSession.of(database.openConnection())) {
+            Assertions.assertFalse(lockStrategy.tryAcquire(session));
+            Assertions.assertThrows(IllegalStateException.class, () -> lockStrategy.acquire(session));
+        }
+    }
+}
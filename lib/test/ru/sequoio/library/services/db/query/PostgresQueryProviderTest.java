@@ -0,0 +1,28 @@
+package ru.sequoio.library.services.db.query;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PostgresQueryProviderTest {
+
+    private final PostgresQueryProvider queryProvider = new PostgresQueryProvider();
+
+    @Test
+    void testParseConcurrentIndexBuild() {
+        var build = queryProvider.parseConcurrentIndexBuild(
+                "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS idx_a ON ONLY public.Orders USING btree (a);");
+        Assertions.assertEquals("public.idx_a", build.getQualifiedIndexName());
+        Assertions.assertEquals("public.orders", build.getQualifiedTableName());
+
+        var quoted = queryProvider.parseConcurrentIndexBuild("CREATE INDEX CONCURRENTLY \"Idx\" ON \"Orders\" (a);");
+        Assertions.assertEquals("\"Idx\"", quoted.getQualifiedIndexName());
+        Assertions.assertEquals("\"Orders\"", quoted.getQualifiedTableName());
+
+        var unnamed = queryProvider.parseConcurrentIndexBuild("CREATE INDEX CONCURRENTLY ON orders (a);");
+        Assertions.assertFalse(unnamed.isNamed());
+        Assertions.assertEquals("orders", unnamed.getQualifiedTableName());
+
+        Assertions.assertNull(queryProvider.parseConcurrentIndexBuild("DROP INDEX CONCURRENTLY idx;"));
+        Assertions.assertNull(queryProvider.parseConcurrentIndexBuild("CREATE INDEX idx ON t (a);"));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.sequoio.library.services.db.session;
+
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.services.db.FakeDatabase;
+
+class MigrationSessionTest {
+
+    private final FakeDatabase database = new FakeDatabase();
+
+    @Test
+    void testPreparedStatementsReused() throws SQLException {
+        try (var session = MigrationSession.open(database.getDataSource())) {
+            var first = session.prepare("SELECT 1;");
+            var second = session.prepare("SELECT 1;");
+            var other = session.prepare("SELECT 2;");
+            Assertions.assertTrue(first == second);
+            Assertions.assertFalse(first == other);
+        }
+        Assertions.assertEquals(1, database.getConnectionsOpened());
+        Assertions.assertEquals(1, database.getConnectionsClosed());
+    }
+
+    @Test
+    void testCallerConnectionKeptOpen() throws SQLException {
+        var connection = database.openConnection();
+        try (var session = MigrationSession.of(connection)) {
+            Assertions.assertFalse(session.isInTransaction());
+            session.begin();
+            Assertions.assertTrue(session.isInTransaction());
+        }
+        Assertions.assertFalse(connection.isClosed());
+        Assertions.assertTrue(connection.getAutoCommit());
+        Assertions.assertEquals(1, database.getRollbacks());
+    }
+
+    @Test
+    void testCallerConnectionInTransactionRejected() throws SQLException {
+        var connection = database.openConnection();
+        connection.setAutoCommit(false);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MigrationSession.of(connection));
+        Assertions.assertFalse(connection.getAutoCommit());
+        Assertions.assertEquals(0, database.getCommits());
+    }
+}
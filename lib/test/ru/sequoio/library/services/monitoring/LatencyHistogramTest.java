@@ -0,0 +1,36 @@
+package ru.sequoio.library.services.monitoring;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketBounds() {
+        for (long value : new long[] {0, 1, 31, 32, 33, 63, 64, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.bucket(value));
+            Assertions.assertTrue(highest >= value, "Bucket of " + value + " ends at " + highest);
+            Assertions.assertTrue(highest - value <= value / 32, "Bucket of " + value + " ends at " + highest);
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        var histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        Assertions.assertEquals(1_000_000, histogram.getMax());
+        Assertions.assertEquals(500_500, histogram.getMean(), 0.001);
+        assertNear(500_000, histogram.getValueAtPercentile(50));
+        assertNear(990_000, histogram.getValueAtPercentile(99));
+        Assertions.assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    private void assertNear(long expected, long actual) {
+        Assertions.assertTrue(actual >= expected && actual - expected <= expected / 32,
+                "Expected about " + expected + ", but was " + actual);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.sequoio.library.services.parsing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.domain.migration.Migration;
+
+class ChangelogParsingServiceTest {
+
+    private static final int FILES_COUNT = 40;
+
+    private Path classpath;
+    private List<String> expectedTitles;
+
+    /**
+     * Files are listed in config in reverse order of their names and have different sizes,
+     * so parallel parsing finishes them in arbitrary order
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        classpath = Files.createTempDirectory("sequoio-changelog");
+        var directory = Files.createDirectories(classpath.resolve("sequoio"));
+        var config = new StringBuilder("--sequoio-configuration-file\n");
+        expectedTitles = new ArrayList<>();
+        for (int file = FILES_COUNT; file > 0; file--) {
+            var migrations = new StringBuilder("--sequoio-migration-file\n");
+            for (int migration = 0; migration <= file % 4; migration++) {
+                var title = "file_" + file + "_migration_" + migration;
+                migrations.append("\n--migration author:").append(title).append('\n')
+                        .append("INSERT INTO t VALUES ('").append("x".repeat(file * 100)).append("');\n");
+                expectedTitles.add(title);
+            }
+            Files.writeString(directory.resolve("migrations_" + file + ".sql"), migrations);
+            config.append("migrations_").append(file).append(".sql\n");
+        }
+        Files.writeString(directory.resolve("changelog.seq"), config);
+    }
+
+    @Test
+    void testNaturalOrderFollowsConfigListing() {
+        var migrations = parse(null);
+        Assertions.assertEquals(expectedTitles, titles(migrations));
+        Assertions.assertEquals(
+                IntStream.range(0, migrations.size()).boxed().collect(Collectors.toList()),
+                migrations.stream().map(Migration::getNaturalOrder).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testCachedChangelogParsedIdentically() {
+        var cacheFile = classpath.resolve("parse.cache");
+        var parsed = parse(cacheFile);
+        var cached = parse(cacheFile);
+        Assertions.assertEquals(titles(parsed), titles(cached));
+        Assertions.assertEquals(
+                parsed.stream().map(Migration::getHash).collect(Collectors.toList()),
+                cached.stream().map(Migration::getHash).collect(Collectors.toList()));
+        Assertions.assertEquals(
+                parsed.stream().map(Migration::getNaturalOrder).collect(Collectors.toList()),
+                cached.stream().map(Migration::getNaturalOrder).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testMigrationMixingConcurrentIndexCommandsParsed() throws IOException {
+        Files.writeString(classpath.resolve("sequoio").resolve("migrations_1.sql"),
+                "--sequoio-migration-file\n\n--migration author:mixed ignore:true\n" +
+                "CREATE TABLE a (b int);\nCREATE INDEX CONCURRENTLY idx ON a (b);\n");
+        var migrations = parse(null);
+        var mixed = migrations.stream().filter(migration -> "mixed".equals(migration.getTitle())).findFirst();
+        Assertions.assertTrue(mixed.isPresent());
+        Assertions.assertEquals(1, mixed.get().getStatementBoundaries().concurrentIndexCommandsCount());
+    }
+
+    private List<Migration> parse(Path cacheFile) {
+        var systemClasspath = System.getProperty("java.class.path");
+        ChangelogParsingService service;
+        try {
+            System.setProperty("java.class.path", classpath.toString());
+            service = new ChangelogParsingService(new MigrationParsingService(), "sequoio", cacheFile);
+        } finally {
+            System.setProperty("java.class.path", systemClasspath);
+        }
+        return service.parseChangelog().getOrderedNodes();
+    }
+
+    private static List<String> titles(List<Migration> migrations) {
+        return migrations.stream().map(Migration::getTitle).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,135 @@
+package ru.sequoio.library.services.parsing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.sequoio.library.domain.migration.Migration;
+import ru.sequoio.library.utils.HashAlgorithm;
+
+class ParseCacheTest {
+
+    private static final String MIGRATIONS =
+            "--sequoio-migration-file\n\n" +
+            "--migration author:create_a\n" +
+            "CREATE TABLE a (b int);\n" +
+            "INSERT INTO a VALUES (';');\n\n" +
+            "--migration author:create_a_idx transactional:false\n" +
+            "CREATE INDEX CONCURRENTLY a_idx ON a (b);\n";
+
+    private final MigrationParsingService parser = new MigrationParsingService();
+
+    private Path migrationFile;
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var directory = Files.createTempDirectory("sequoio-parse-cache");
+        migrationFile = directory.resolve("migrations.sql");
+        cacheFile = directory.resolve("cache").resolve("parse.cache");
+        Files.writeString(migrationFile, MIGRATIONS);
+    }
+
+    @Test
+    void testUnchangedFileReadFromCache() {
+        var scanned = parseAndSave();
+        Assertions.assertFalse(scanned.isCached());
+
+        var cached = load().read(migrationFile, parser);
+        Assertions.assertTrue(cached.isCached());
+        var expected = scanned.getMigrations(0);
+        var actual = cached.getMigrations(0);
+        Assertions.assertEquals(names(expected), names(actual));
+        Assertions.assertEquals(hashes(expected), hashes(actual));
+        Assertions.assertEquals(expected.get(0).getStatements(), actual.get(0).getStatements());
+        Assertions.assertFalse(actual.get(0).hasConcurrentIndexCommands());
+        Assertions.assertTrue(actual.get(1).getStatementBoundaries().isConcurrentIndexCommand(0));
+    }
+
+    @Test
+    void testNaturalOrderAssignedToCachedMigrations() {
+        parseAndSave();
+
+        var migrations = load().read(migrationFile, parser).getMigrations(10);
+        Assertions.assertEquals(List.of(10, 11), migrations.stream()
+                .map(Migration::getNaturalOrder)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testTouchedFileWithSameContentReadFromCache() throws IOException {
+        parseAndSave();
+        Files.setLastModifiedTime(migrationFile, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        Assertions.assertTrue(load().read(migrationFile, parser).isCached());
+    }
+
+    @Test
+    void testChangedFileScannedAgain() throws IOException {
+        parseAndSave();
+        Files.writeString(migrationFile, MIGRATIONS + "\n--migration author:create_c\nCREATE TABLE c (d int);\n");
+
+        var changed = load().read(migrationFile, parser);
+        Assertions.assertFalse(changed.isCached());
+        Assertions.assertEquals(3, changed.getMigrationsCount());
+    }
+
+    @Test
+    void testUpToDateCacheNotRewritten() throws IOException {
+        parseAndSave();
+        var savedAt = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(cacheFile, savedAt);
+
+        Assertions.assertTrue(parseAndSave().isCached());
+        Assertions.assertEquals(savedAt, Files.getLastModifiedTime(cacheFile));
+        try (var files = Files.list(cacheFile.getParent())) {
+            Assertions.assertEquals(List.of(cacheFile), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void testCacheOfAnotherHashAlgorithmIgnored() {
+        parseAndSave();
+
+        var otherAlgorithm = HashAlgorithm.MD5.equals(parser.getHashAlgorithm())
+                ? HashAlgorithm.MURMUR3_128
+                : HashAlgorithm.MD5;
+        Assertions.assertFalse(ParseCache.load(cacheFile, otherAlgorithm).read(migrationFile, parser).isCached());
+    }
+
+    @Test
+    void testCorruptedCacheIgnored() throws IOException {
+        parseAndSave();
+        var content = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(content, content.length / 2));
+
+        Assertions.assertFalse(load().read(migrationFile, parser).isCached());
+    }
+
+    private ParseCache.ParsedFile parseAndSave() {
+        var cache = load();
+        var file = cache.read(migrationFile, parser);
+        file.getMigrations(0);
+        cache.save(List.of(file));
+        return file;
+    }
+
+    private ParseCache load() {
+        return ParseCache.load(cacheFile, parser.getHashAlgorithm());
+    }
+
+    private static List<String> names(List<Migration> migrations) {
+        return migrations.stream().map(Migration::getName).collect(Collectors.toList());
+    }
+
+    private static List<String> hashes(List<Migration> migrations) {
+        return migrations.stream().map(Migration::getHash).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,109 @@
+package ru.sequoio.library.services.parsing;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SqlLexerTest {
+
+    @Test
+    void testSimpleStatements() {
+        validateStatements("create table a (id int);\ninsert into a values (1);",
+                "create table a (id int)", "insert into a values (1)");
+    }
+
+    @Test
+    void testLastStatementWithoutTerminator() {
+        validateStatements("select 1; select 2", "select 1", "select 2");
+    }
+
+    @Test
+    void testEmptyStatementsSkipped() {
+        validateStatements(" ;; select 1 ;\n-- only comment\n;", "select 1");
+    }
+
+    @Test
+    void testStringLiterals() {
+        validateStatements("insert into a values ('a;b', 'it''s;');select 2;",
+                "insert into a values ('a;b', 'it''s;')", "select 2");
+    }
+
+    @Test
+    void testEscapeStringLiterals() {
+        validateStatements("select E'\\';', e'x\\\\';select 2",
+                "select E'\\';', e'x\\\\'", "select 2");
+    }
+
+    @Test
+    void testQuotedIdentifiers() {
+        validateStatements("select \"a;\"\"b\" from t;select 2", "select \"a;\"\"b\" from t", "select 2");
+    }
+
+    @Test
+    void testDollarQuoting() {
+        var function = "create function f() returns int as $$ begin return 1; end; $$ language plpgsql";
+        var tagged = "do $body$ begin perform 'x;'; perform $$;$$; end $body$";
+        validateStatements(function + ";\n" + tagged + ";", function, tagged);
+    }
+
+    @Test
+    void testDollarSignsOutsideQuotes() {
+        validateStatements("prepare p as select $1 + a$b from t; select 2", "prepare p as select $1 + a$b from t", "select 2");
+    }
+
+    @Test
+    void testComments() {
+        validateStatements("select 1 -- comment; still comment\n;select /* a; /* nested; */ b; */ 2;",
+                "select 1 -- comment; still comment", "select /* a; /* nested; */ b; */ 2");
+    }
+
+    @Test
+    void testUnterminatedQuoteRunsToEnd() {
+        validateStatements("select 1; select 'abc; select 2", "select 1", "select 'abc; select 2");
+    }
+
+    @Test
+    void testOffsets() {
+        var sql = "  select 1 ;  select 2;";
+        var boundaries = SqlLexer.split(sql);
+        Assertions.assertEquals(2, boundaries.count());
+        Assertions.assertEquals(2, boundaries.start(0));
+        Assertions.assertEquals(10, boundaries.end(0));
+        Assertions.assertEquals(14, boundaries.start(1));
+        Assertions.assertEquals(22, boundaries.end(1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> boundaries.start(2));
+    }
+
+    @Test
+    void testConcurrentIndexCommands() {
+        Assertions.assertTrue(isConcurrentIndexCommand("CREATE INDEX CONCURRENTLY idx ON t (a)"));
+        Assertions.assertTrue(isConcurrentIndexCommand("create unique index concurrently idx on t (a)"));
+        Assertions.assertTrue(isConcurrentIndexCommand("DROP INDEX CONCURRENTLY IF EXISTS idx"));
+        Assertions.assertTrue(isConcurrentIndexCommand("REINDEX (VERBOSE) INDEX CONCURRENTLY idx"));
+        Assertions.assertTrue(isConcurrentIndexCommand(
+                "-- speeds up lookups\n/* hot table */\nCREATE /* inline */ INDEX CONCURRENTLY idx ON t (a)"));
+        Assertions.assertFalse(isConcurrentIndexCommand("CREATE INDEX idx ON t (a)"));
+        Assertions.assertFalse(isConcurrentIndexCommand("CREATE TABLE concurrently (a int)"));
+        Assertions.assertFalse(isConcurrentIndexCommand("INSERT INTO notes VALUES ('CREATE INDEX CONCURRENTLY idx ON t (a)')"));
+    }
+
+    @Test
+    void testConcurrentIndexCommandsMarkedPerStatement() {
+        var boundaries = SqlLexer.split("CREATE TABLE t (a int);\nCREATE INDEX CONCURRENTLY idx ON t (a);\nSELECT 1");
+        Assertions.assertFalse(boundaries.isConcurrentIndexCommand(0));
+        Assertions.assertTrue(boundaries.isConcurrentIndexCommand(1));
+        Assertions.assertFalse(boundaries.isConcurrentIndexCommand(2));
+        Assertions.assertEquals(1, boundaries.concurrentIndexCommandsCount());
+    }
+
+    private boolean isConcurrentIndexCommand(String statement) {
+        var boundaries = SqlLexer.split(statement + ";");
+        Assertions.assertEquals(1, boundaries.count());
+        return boundaries.isConcurrentIndexCommand(0);
+    }
+
+    private void validateStatements(String sql, String... expected) {
+        Assertions.assertIterableEquals(List.of(expected), SqlLexer.split(sql).statements(sql));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.sequoio.library.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HashingUtilsTest {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog";
+
+    @Test
+    void testKnownHashes() {
+        Assertions.assertEquals("9e107d9d372bb6826bd81d3542a419d6", hash(HashAlgorithm.MD5, TEXT));
+        Assertions.assertEquals("d7a8fbb307d7809469ca9abcb0082e4f8d5651e46d3cdb762d02d0bf37c9e592",
+                hash(HashAlgorithm.SHA_256, TEXT));
+        Assertions.assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", hash(HashAlgorithm.MURMUR3_128, TEXT));
+        Assertions.assertEquals("00000000000000000000000000000000", hash(HashAlgorithm.MURMUR3_128, ""));
+    }
+
+    @Test
+    void testMd5OfStringIsCompatible() {
+        Assertions.assertEquals("9e107d9d372bb6826bd81d3542a419d6", HashingUtils.md5(TEXT));
+        Assertions.assertEquals("d41d8cd98f00b204e9800998ecf8427e", HashingUtils.md5(""));
+    }
+
+    @Test
+    void testPartsAreHashedAsConcatenation() {
+        var bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        for (var algorithm : HashAlgorithm.values()) {
+            for (int partSize = 1; partSize <= 17; partSize++) {
+                List<ByteBuffer> parts = new ArrayList<>();
+                for (int offset = 0; offset < bytes.length; offset += partSize) {
+                    parts.add(ByteBuffer.wrap(bytes, offset, Math.min(partSize, bytes.length - offset)));
+                }
+                Assertions.assertEquals(hash(algorithm, TEXT), HashingUtils.hash(algorithm, parts));
+            }
+        }
+    }
+
+    @Test
+    void testAlgorithmByName() {
+        for (var algorithm : HashAlgorithm.values()) {
+            Assertions.assertEquals(algorithm, HashAlgorithm.byName(algorithm.getName()));
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> HashAlgorithm.byName("crc32"));
+    }
+
+    private String hash(HashAlgorithm algorithm, String text) {
+        return HashingUtils.hash(algorithm, List.of(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))));
+    }
+}
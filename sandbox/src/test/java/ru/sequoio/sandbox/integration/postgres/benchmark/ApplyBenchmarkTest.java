@@ -0,0 +1,121 @@
+package ru.sequoio.sandbox.integration.postgres.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import ru.sequoio.library.Sequoio;
+import ru.sequoio.library.services.db.query.SupportedDatabases;
+import ru.sequoio.sandbox.Migrator;
+import ru.sequoio.sandbox.integration.postgres.SequoioTest;
+
+/**
+ * End-to-end apply benchmark, run by 'benchmark' task and excluded from 'test' <br/>
+ * Measures wall time, round-trips and commits of a fresh apply of N migrations, a no-op re-run
+ * and a re-run with 1% of 'run:onchange' bodies changed. Results are written to a JSON file, set by
+ * 'sequoio.benchmark.output' property, number of migrations is set by 'sequoio.benchmark.migrations' property
+ */
+@Tag("benchmark")
+public class ApplyBenchmarkTest extends SequoioTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApplyBenchmarkTest.class);
+
+    private static final String CLASS_PATH_PROPERTY = "java.class.path";
+    private static final String RESOURCES_DIRECTORY = "apply_benchmark";
+    private static final int MIGRATIONS_PER_FILE = 100;
+    private static final int CHANGED_EVERY = 100;
+
+    private final int migrationsCount = Integer.getInteger("sequoio.benchmark.migrations", 1000);
+    private final Path output = Path.of(System.getProperty("sequoio.benchmark.output", "build/benchmarks/apply.json"));
+    private final CountingDataSource countingDataSource = new CountingDataSource();
+    private final List<String> results = new ArrayList<>();
+
+    private Path root;
+    private String classPath;
+
+    @BeforeEach
+    void setUpChangelog() throws IOException {
+        root = Files.createTempDirectory("sequoio-apply-benchmark");
+        Files.createDirectories(root.resolve(RESOURCES_DIRECTORY));
+        writeChangelog(false);
+        classPath = System.getProperty(CLASS_PATH_PROPERTY);
+        System.setProperty(CLASS_PATH_PROPERTY, classPath + ":" + root);
+    }
+
+    @AfterEach
+    void tearDownChangelog() throws IOException {
+        System.setProperty(CLASS_PATH_PROPERTY, classPath);
+        try (var walk = Files.walk(root)) {
+            walk.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        measure("fresh_apply");
+        measure("noop_rerun");
+        writeChangelog(true);
+        measure("onchange_rerun");
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.writeString(output, toJson());
+        LOGGER.info(() -> "Apply benchmark results are written to " + output.toAbsolutePath());
+    }
+
+    private void measure(String scenario) {
+        var sequoio = new Sequoio(
+                RESOURCES_DIRECTORY,
+                PRODUCTION_ENV,
+                PUBLIC_SCHEMA,
+                countingDataSource.wrap(dataSource),
+                SupportedDatabases.POSTGRES);
+        countingDataSource.reset();
+        long start = System.nanoTime();
+        Assertions.assertDoesNotThrow(() -> Migrator.doMigrate(sequoio));
+        long wallTimeMs = (System.nanoTime() - start) / 1_000_000;
+
+        results.add(String.format("{\"scenario\": \"%s\", \"wallTimeMs\": %d, \"roundTrips\": %d, \"commits\": %d}",
+                scenario, wallTimeMs, countingDataSource.getRoundTrips(), countingDataSource.getCommits()));
+        LOGGER.info(() -> String.format("%s: %d ms, %d round-trips, %d commits",
+                scenario, wallTimeMs, countingDataSource.getRoundTrips(), countingDataSource.getCommits()));
+    }
+
+    /**
+     * Every migration replaces its own view, so it can be re-run <br/>
+     * If 'changed', every hundredth migration gets a new body
+     */
+    private void writeChangelog(boolean changed) throws IOException {
+        var changelog = root.resolve(RESOURCES_DIRECTORY);
+        List<String> configuration = new ArrayList<>();
+        configuration.add("--sequoio-configuration-file");
+        for (int file = 0; file * MIGRATIONS_PER_FILE < migrationsCount; file++) {
+            var fileName = String.format("migrations_%05d.sql", file);
+            var content = new StringBuilder("--sequoio-migration-file\n\n");
+            for (int i = file * MIGRATIONS_PER_FILE; i < Math.min(migrationsCount, (file + 1) * MIGRATIONS_PER_FILE); i++) {
+                content.append("--migration benchmark:view_").append(i).append(" run:onchange\n")
+                        .append("CREATE OR REPLACE VIEW view_").append(i)
+                        .append(" AS SELECT ").append(i).append(" AS id, ")
+                        .append(changed && (i + 1) % CHANGED_EVERY == 0 ? 2 : 1).append(" AS version;\n\n");
+            }
+            Files.writeString(changelog.resolve(fileName), content);
+            configuration.add(fileName);
+        }
+        Files.write(changelog.resolve("configuration.seq"), configuration);
+    }
+
+    private String toJson() {
+        return String.format("{\n  \"timestamp\": \"%s\",\n  \"migrations\": %d,\n  \"scenarios\": [\n    %s\n  ]\n}\n",
+                Instant.now(), migrationsCount, results.stream().collect(Collectors.joining(",\n    ")));
+    }
+}
@@ -0,0 +1,103 @@
+package ru.sequoio.sandbox.integration.postgres.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Counts database round-trips and commits made through the wrapped data source <br/>
+ * Round-trip is a statement execution, a batch execution, a commit or a rollback.
+ * Commit is an explicit commit or a statement executed in auto-commit mode.
+ * Fetches of further rows of an open cursor are not counted
+ */
+public class CountingDataSource {
+
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    public DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args) -> {
+            var result = invoke(dataSource, method, args);
+            return result instanceof Connection
+                    ? wrap((Connection) result)
+                    : result;
+        });
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public void reset() {
+        roundTrips.set(0);
+        commits.set(0);
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            switch (method.getName()) {
+                case "commit":
+                    roundTrips.incrementAndGet();
+                    commits.incrementAndGet();
+                    break;
+                case "rollback":
+                    roundTrips.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+            var result = invoke(connection, method, args);
+            if (result instanceof CallableStatement) {
+                return wrap(CallableStatement.class, (Statement) result, connection);
+            } else if (result instanceof PreparedStatement) {
+                return wrap(PreparedStatement.class, (Statement) result, connection);
+            } else if (result instanceof Statement) {
+                return wrap(Statement.class, (Statement) result, connection);
+            }
+            return result;
+        });
+    }
+
+    private <T extends Statement> T wrap(Class<T> type, Statement statement, Connection connection) {
+        return proxy(type, statement, (method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                roundTrips.incrementAndGet();
+                if (connection.getAutoCommit()) {
+                    commits.incrementAndGet();
+                }
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, MethodHandler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> handler.handle(method, args);
+        return (T) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[] {type}, invocationHandler);
+    }
+
+    @FunctionalInterface
+    private interface MethodHandler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+}